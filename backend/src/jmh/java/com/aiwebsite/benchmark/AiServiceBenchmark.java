@@ -0,0 +1,29 @@
+package com.aiwebsite.benchmark;
+
+import com.aiwebsite.service.AiService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * AI功能分派全流程开销：处理器查找、积分预留与结算、提供商路由、审计入队，模型调用由桩实现立即返回
+ */
+@State(Scope.Benchmark)
+public class AiServiceBenchmark {
+    
+    private AiService aiService;
+    private Long userId;
+    
+    @Setup(Level.Trial)
+    public void setup(ApplicationState app) {
+        aiService = app.getBean(AiService.class);
+        userId = app.userId;
+    }
+    
+    @Benchmark
+    public String processChat() {
+        return aiService.processAiFunction(userId, "chat", "你好，请介绍一下你自己");
+    }
+}
@@ -0,0 +1,62 @@
+package com.aiwebsite.benchmark;
+
+import com.aiwebsite.AiWebsiteApplication;
+import com.aiwebsite.entity.User;
+import com.aiwebsite.mapper.UserMapper;
+import com.aiwebsite.security.JwtTokenProvider;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+/**
+ * 基准测试共享的应用上下文
+ * 以H2（MySQL模式）和桩ChatModel启动完整的Spring Boot应用，并准备一个积分充足的用户及其JWT
+ */
+@State(Scope.Benchmark)
+public class ApplicationState {
+    
+    public ConfigurableApplicationContext context;
+    public Long userId;
+    public String token;
+    
+    @Setup(Level.Trial)
+    public void start() {
+        // 以命令行参数传入，优先级高于application.yml
+        context = new SpringApplicationBuilder(AiWebsiteApplication.class, StubChatClientConfig.class)
+                .run("--server.port=0",
+                        "--spring.datasource.url=jdbc:h2:mem:benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.driver-class-name=org.h2.Driver",
+                        "--spring.datasource.username=sa",
+                        "--spring.datasource.password=",
+                        "--spring.sql.init.mode=always",
+                        "--spring.sql.init.schema-locations=classpath:db/schema-h2.sql",
+                        "--logging.level.root=WARN",
+                        "--logging.level.com.aiwebsite=WARN",
+                        "--logging.level.org.springframework.security=WARN");
+        
+        User user = new User();
+        user.setUsername("benchmark");
+        user.setPassword("benchmark");
+        user.setEmail("benchmark@example.com");
+        user.setPoints(Integer.MAX_VALUE / 2);
+        context.getBean(UserMapper.class).insert(user);
+        userId = user.getId();
+        
+        token = getBean(JwtTokenProvider.class)
+                .generateToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+    
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+    
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+}
@@ -0,0 +1,31 @@
+package com.aiwebsite.benchmark;
+
+import com.aiwebsite.service.AiFunctionConfigService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 功能配置查询开销
+ */
+@State(Scope.Benchmark)
+public class FunctionConfigBenchmark {
+    
+    @Param({"chat", "document-summary"})
+    private String functionName;
+    
+    private AiFunctionConfigService configService;
+    
+    @Setup(Level.Trial)
+    public void setup(ApplicationState app) {
+        configService = app.getBean(AiFunctionConfigService.class);
+    }
+    
+    @Benchmark
+    public AiFunctionConfigService.AiFunctionConfig getFunctionConfig() {
+        return configService.getFunctionConfig(functionName);
+    }
+}
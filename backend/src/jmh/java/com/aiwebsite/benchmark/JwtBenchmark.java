@@ -0,0 +1,50 @@
+package com.aiwebsite.benchmark;
+
+import com.aiwebsite.security.JwtTokenProvider;
+import com.aiwebsite.security.UserPrincipal;
+import com.aiwebsite.security.VerifiedTokenCache;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Optional;
+
+/**
+ * JWT验证开销：每次验签解析 与 命中已验证令牌缓存 的对比
+ */
+@State(Scope.Benchmark)
+public class JwtBenchmark {
+    
+    private JwtTokenProvider tokenProvider;
+    private VerifiedTokenCache tokenCache;
+    private String token;
+    
+    @Setup(Level.Trial)
+    public void setup(ApplicationState app) {
+        tokenProvider = app.getBean(JwtTokenProvider.class);
+        tokenCache = app.getBean(VerifiedTokenCache.class);
+        token = app.token;
+        
+        Claims claims = tokenProvider.parseToken(token).orElseThrow();
+        tokenCache.put(token, tokenProvider.getPrincipalFromClaims(claims).orElseThrow(),
+                claims.getExpiration().getTime());
+    }
+    
+    @Benchmark
+    public Optional<Claims> parseToken() {
+        return tokenProvider.parseToken(token);
+    }
+    
+    @Benchmark
+    public Optional<UserPrincipal> parseAndBuildPrincipal() {
+        return tokenProvider.parseToken(token).flatMap(tokenProvider::getPrincipalFromClaims);
+    }
+    
+    @Benchmark
+    public UserPrincipal cachedPrincipal() {
+        return tokenCache.get(token);
+    }
+}
@@ -0,0 +1,36 @@
+package com.aiwebsite.benchmark;
+
+import com.aiwebsite.entity.PointsReservation;
+import com.aiwebsite.service.PointsService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 积分扣除开销：一次性扣除 与 预留后确认 两条路径
+ */
+@State(Scope.Benchmark)
+public class PointsBenchmark {
+    
+    private PointsService pointsService;
+    private Long userId;
+    
+    @Setup(Level.Trial)
+    public void setup(ApplicationState app) {
+        pointsService = app.getBean(PointsService.class);
+        userId = app.userId;
+    }
+    
+    @Benchmark
+    public Integer deductPoints() {
+        return pointsService.deductPoints(userId, 1, "基准测试", "chat");
+    }
+    
+    @Benchmark
+    public boolean reserveAndConfirm() {
+        PointsReservation reservation = pointsService.reservePoints(userId, 1, "基准测试", "chat");
+        return pointsService.confirmReservation(reservation);
+    }
+}
@@ -0,0 +1,28 @@
+package com.aiwebsite.benchmark;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Set;
+
+/**
+ * 将OpenAI与Ollama的ChatClient替换为基于桩模型的实现，基准测试期间不发起任何网络请求
+ */
+@Configuration
+public class StubChatClientConfig {
+    
+    private static final Set<String> PROVIDER_CLIENTS = Set.of("openAiChatClient", "ollamaChatClient");
+    
+    @Bean
+    public static BeanPostProcessor stubChatClientPostProcessor() {
+        ChatClient stubClient = ChatClient.builder(new StubChatModel()).build();
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                return bean instanceof ChatClient && PROVIDER_CLIENTS.contains(beanName) ? stubClient : bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,43 @@
+package com.aiwebsite.benchmark;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.metadata.ChatResponseMetadata;
+import org.springframework.ai.chat.metadata.DefaultUsage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+/**
+ * 桩ChatModel
+ * 立即返回固定内容及token用量，使基准测试只衡量应用自身的开销
+ */
+public class StubChatModel implements ChatModel {
+    
+    private static final String CONTENT = "这是一段用于基准测试的固定模型回复。";
+    private static final int PROMPT_TOKENS = 32;
+    private static final int COMPLETION_TOKENS = 16;
+    
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        return response(CONTENT, true);
+    }
+    
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        String[] parts = CONTENT.split("(?<=，)|(?<=。)");
+        return Flux.range(0, parts.length)
+                .map(i -> response(parts[i], i == parts.length - 1));
+    }
+    
+    private ChatResponse response(String text, boolean withUsage) {
+        ChatResponseMetadata.Builder metadata = ChatResponseMetadata.builder().model("stub");
+        if (withUsage) {
+            metadata.usage(new DefaultUsage(PROMPT_TOKENS, COMPLETION_TOKENS));
+        }
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))), metadata.build());
+    }
+}
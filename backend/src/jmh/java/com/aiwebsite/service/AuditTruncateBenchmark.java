@@ -0,0 +1,32 @@
+package com.aiwebsite.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * 审计记录文本截断开销，与AuditService同包以访问包级方法
+ */
+@State(Scope.Benchmark)
+public class AuditTruncateBenchmark {
+    
+    @Param({"100", "5000"})
+    private int length;
+    
+    private AuditService auditService;
+    private String text;
+    
+    @Setup(Level.Trial)
+    public void setup() {
+        auditService = new AuditService(null, null, null, null);
+        text = "审计".repeat(length / 2);
+    }
+    
+    @Benchmark
+    public String truncateInput() {
+        return auditService.truncateText(text, 1000);
+    }
+}
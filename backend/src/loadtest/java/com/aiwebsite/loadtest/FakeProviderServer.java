@@ -0,0 +1,276 @@
+package com.aiwebsite.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地模拟AI提供商
+ * 实现OpenAI的/v1/chat/completions（含流式SSE）与Ollama的/api/chat（含NDJSON流），
+ * 按FakeProviderSettings模拟首token延迟、生成速率与错误，压测时不消耗真实API额度。
+ * 也可单独启动：java ... com.aiwebsite.loadtest.FakeProviderServer，端口由fake.port指定
+ */
+@Slf4j
+public class FakeProviderServer implements AutoCloseable {
+    
+    private static final String MODEL = "fake-model";
+    
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FakeProviderSettings settings;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong injectedErrorCount = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    
+    public FakeProviderServer(int port, FakeProviderSettings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.server.createContext("/v1/chat/completions", exchange -> handle(exchange, this::openAiChat));
+        this.server.createContext("/api/chat", exchange -> handle(exchange, this::ollamaChat));
+        this.server.setExecutor(executor);
+    }
+    
+    public static void main(String[] args) throws Exception {
+        int port = Integer.getInteger("fake.port", 18080);
+        FakeProviderServer server = new FakeProviderServer(port, FakeProviderSettings.fromSystemProperties());
+        server.start();
+        log.info("模拟AI提供商已启动: {}", server.getBaseUrl());
+        Thread.currentThread().join();
+    }
+    
+    public void start() {
+        server.start();
+    }
+    
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+    
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+    
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+    
+    public long getInjectedErrorCount() {
+        return injectedErrorCount.get();
+    }
+    
+    /**
+     * 当前正在处理的请求数，即应用实际同时发往提供商的请求数
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+    
+    private interface Handler {
+        void handle(HttpExchange exchange, JsonNode request) throws Exception;
+    }
+    
+    private void handle(HttpExchange exchange, Handler handler) {
+        requestCount.incrementAndGet();
+        inFlight.incrementAndGet();
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            JsonNode request = objectMapper.readTree(exchange.getRequestBody());
+            if (settings.shouldRateLimit()) {
+                injectedErrorCount.incrementAndGet();
+                exchange.getResponseHeaders().add("Retry-After", "1");
+                sendJson(exchange, 429, error("rate limit exceeded (injected)"));
+                return;
+            }
+            if (settings.shouldFail()) {
+                injectedErrorCount.incrementAndGet();
+                sendJson(exchange, 500, error("internal error (injected)"));
+                return;
+            }
+            Thread.sleep(settings.sampleFirstTokenLatencyMs());
+            handler.handle(exchange, request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.debug("模拟提供商处理请求失败: {}", e.getMessage());
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+    
+    /**
+     * OpenAI chat-completions：stream=true时以SSE逐token推送，stream_options.include_usage时最后推送用量
+     */
+    private void openAiChat(HttpExchange exchange, JsonNode request) throws Exception {
+        int promptTokens = estimatePromptTokens(request.path("messages"));
+        int completionTokens = settings.completionTokens();
+        String id = "chatcmpl-" + requestCount.get();
+        long created = Instant.now().getEpochSecond();
+        
+        if (!request.path("stream").asBoolean(false)) {
+            Thread.sleep(settings.interTokenDelayMs() * completionTokens);
+            ObjectNode response = objectMapper.createObjectNode()
+                    .put("id", id).put("object", "chat.completion").put("created", created).put("model", MODEL);
+            ObjectNode choice = response.putArray("choices").addObject().put("index", 0).put("finish_reason", "stop");
+            choice.putObject("message").put("role", "assistant").put("content", completion(completionTokens));
+            response.set("usage", openAiUsage(promptTokens, completionTokens));
+            sendJson(exchange, 200, response);
+            return;
+        }
+        
+        exchange.getResponseHeaders().add("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        boolean abort = settings.shouldAbortStream();
+        for (int i = 0; i < completionTokens; i++) {
+            if (abort && i == completionTokens / 2) {
+                injectedErrorCount.incrementAndGet();
+                return;
+            }
+            ObjectNode chunk = openAiChunk(id, created);
+            ObjectNode choice = ((ArrayNode) chunk.get("choices")).addObject().put("index", 0);
+            choice.putObject("delta").put("role", "assistant").put("content", token(i));
+            choice.putNull("finish_reason");
+            writeSse(out, chunk);
+            Thread.sleep(settings.interTokenDelayMs());
+        }
+        ObjectNode last = openAiChunk(id, created);
+        ObjectNode lastChoice = ((ArrayNode) last.get("choices")).addObject().put("index", 0).put("finish_reason", "stop");
+        lastChoice.putObject("delta");
+        writeSse(out, last);
+        if (request.path("stream_options").path("include_usage").asBoolean(false)) {
+            ObjectNode usage = openAiChunk(id, created);
+            usage.set("usage", openAiUsage(promptTokens, completionTokens));
+            writeSse(out, usage);
+        }
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    /**
+     * Ollama /api/chat：stream默认为true，以NDJSON逐token推送，最后一行done=true并携带计数
+     */
+    private void ollamaChat(HttpExchange exchange, JsonNode request) throws Exception {
+        int promptTokens = estimatePromptTokens(request.path("messages"));
+        int completionTokens = settings.completionTokens();
+        long startNanos = System.nanoTime();
+        
+        if (!request.path("stream").asBoolean(true)) {
+            Thread.sleep(settings.interTokenDelayMs() * completionTokens);
+            sendJson(exchange, 200, ollamaFinal(completion(completionTokens), promptTokens, completionTokens, startNanos));
+            return;
+        }
+        
+        exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        boolean abort = settings.shouldAbortStream();
+        for (int i = 0; i < completionTokens; i++) {
+            if (abort && i == completionTokens / 2) {
+                injectedErrorCount.incrementAndGet();
+                return;
+            }
+            ObjectNode chunk = ollamaChunk(token(i), false);
+            out.write(objectMapper.writeValueAsBytes(chunk));
+            out.write('\n');
+            out.flush();
+            Thread.sleep(settings.interTokenDelayMs());
+        }
+        out.write(objectMapper.writeValueAsBytes(ollamaFinal("", promptTokens, completionTokens, startNanos)));
+        out.write('\n');
+        out.flush();
+    }
+    
+    private ObjectNode openAiChunk(String id, long created) {
+        ObjectNode chunk = objectMapper.createObjectNode()
+                .put("id", id).put("object", "chat.completion.chunk").put("created", created).put("model", MODEL);
+        chunk.putArray("choices");
+        return chunk;
+    }
+    
+    private ObjectNode openAiUsage(int promptTokens, int completionTokens) {
+        return objectMapper.createObjectNode()
+                .put("prompt_tokens", promptTokens)
+                .put("completion_tokens", completionTokens)
+                .put("total_tokens", promptTokens + completionTokens);
+    }
+    
+    private ObjectNode ollamaChunk(String content, boolean done) {
+        ObjectNode chunk = objectMapper.createObjectNode()
+                .put("model", MODEL)
+                .put("created_at", Instant.now().toString());
+        chunk.putObject("message").put("role", "assistant").put("content", content);
+        chunk.put("done", done);
+        return chunk;
+    }
+    
+    private ObjectNode ollamaFinal(String content, int promptTokens, int completionTokens, long startNanos) {
+        return ollamaChunk(content, true)
+                .put("done_reason", "stop")
+                .put("total_duration", System.nanoTime() - startNanos)
+                .put("prompt_eval_count", promptTokens)
+                .put("eval_count", completionTokens);
+    }
+    
+    private ObjectNode error(String message) {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.putObject("error").put("message", message).put("type", "fake_provider_error");
+        return body;
+    }
+    
+    private void writeSse(OutputStream out, JsonNode data) throws IOException {
+        out.write("data: ".getBytes(StandardCharsets.UTF_8));
+        out.write(objectMapper.writeValueAsBytes(data));
+        out.write("\n\n".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+    
+    private void sendJson(HttpExchange exchange, int status, JsonNode body) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(body);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+    
+    /**
+     * 粗略按4个字符1个token估算输入token数
+     */
+    private int estimatePromptTokens(JsonNode messages) {
+        int chars = 0;
+        for (JsonNode message : messages) {
+            chars += message.path("content").asText("").length();
+        }
+        return Math.max(1, chars / 4);
+    }
+    
+    private String completion(int tokens) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < tokens; i++) {
+            builder.append(token(i));
+        }
+        return builder.toString();
+    }
+    
+    private String token(int index) {
+        return "tok" + index + " ";
+    }
+}
@@ -0,0 +1,83 @@
+package com.aiwebsite.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 模拟AI提供商的行为参数，均可通过系统属性覆盖
+ * <ul>
+ *   <li>fake.latency.distribution：首token延迟分布，fixed / uniform / lognormal</li>
+ *   <li>fake.latency.mean-ms、fake.latency.stddev-ms：首token延迟的均值与标准差</li>
+ *   <li>fake.tokens-per-second：生成速率，流式按此节奏逐个推送，非流式按此计算总耗时</li>
+ *   <li>fake.completion-tokens：每次回复的token数</li>
+ *   <li>fake.error-rate：返回500的概率</li>
+ *   <li>fake.rate-limit-rate：返回429的概率</li>
+ *   <li>fake.stream-abort-rate：流式响应中途断开的概率</li>
+ * </ul>
+ */
+public record FakeProviderSettings(
+        String latencyDistribution,
+        double latencyMeanMs,
+        double latencyStddevMs,
+        double tokensPerSecond,
+        int completionTokens,
+        double errorRate,
+        double rateLimitRate,
+        double streamAbortRate) {
+    
+    public static FakeProviderSettings fromSystemProperties() {
+        return new FakeProviderSettings(
+                System.getProperty("fake.latency.distribution", "lognormal"),
+                doubleProperty("fake.latency.mean-ms", 300),
+                doubleProperty("fake.latency.stddev-ms", 150),
+                doubleProperty("fake.tokens-per-second", 50),
+                (int) doubleProperty("fake.completion-tokens", 64),
+                doubleProperty("fake.error-rate", 0),
+                doubleProperty("fake.rate-limit-rate", 0),
+                doubleProperty("fake.stream-abort-rate", 0));
+    }
+    
+    /**
+     * 按配置的分布抽取一次首token延迟（毫秒）
+     */
+    public long sampleFirstTokenLatencyMs() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double value = switch (latencyDistribution) {
+            case "fixed" -> latencyMeanMs;
+            case "uniform" -> latencyMeanMs + (random.nextDouble() * 2 - 1) * latencyStddevMs * Math.sqrt(3);
+            case "lognormal" -> {
+                // 由目标均值与标准差换算对数正态分布参数
+                double variance = latencyStddevMs * latencyStddevMs;
+                double mean = Math.max(latencyMeanMs, 1);
+                double sigma2 = Math.log(1 + variance / (mean * mean));
+                double mu = Math.log(mean) - sigma2 / 2;
+                yield Math.exp(mu + Math.sqrt(sigma2) * random.nextGaussian());
+            }
+            default -> throw new IllegalArgumentException("未知的延迟分布: " + latencyDistribution);
+        };
+        return Math.max(0, Math.round(value));
+    }
+    
+    /**
+     * 相邻两个token之间的间隔（毫秒）
+     */
+    public long interTokenDelayMs() {
+        return tokensPerSecond <= 0 ? 0 : Math.round(1000 / tokensPerSecond);
+    }
+    
+    public boolean shouldFail() {
+        return ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+    
+    public boolean shouldRateLimit() {
+        return ThreadLocalRandom.current().nextDouble() < rateLimitRate;
+    }
+    
+    public boolean shouldAbortStream() {
+        return ThreadLocalRandom.current().nextDouble() < streamAbortRate;
+    }
+    
+    private static double doubleProperty(String name, double defaultValue) {
+        String value = System.getProperty(name);
+        return value != null ? Double.parseDouble(value) : defaultValue;
+    }
+}
@@ -0,0 +1,422 @@
+package com.aiwebsite.loadtest;
+
+import com.aiwebsite.AiWebsiteApplication;
+import com.aiwebsite.entity.User;
+import com.aiwebsite.mapper.UserMapper;
+import com.aiwebsite.security.JwtTokenProvider;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * 端到端压测场景
+ * 启动模拟AI提供商与完整应用（H2 MySQL模式），以固定并发闭环请求/api/ai/{functionName}，
+ * 结束后输出吞吐量、p50/p99延迟、状态码分布、数据库连接池饱和度与各处理阶段平均耗时。
+ * <p>
+ * 运行：mvn -Ploadtest compile exec:java -Dloadtest.concurrency=100 -Dloadtest.duration-seconds=60
+ * <ul>
+ *   <li>loadtest.function：压测的功能，默认chat</li>
+ *   <li>loadtest.concurrency：并发请求数，默认50</li>
+ *   <li>loadtest.users：参与压测的用户数，默认与并发数相同</li>
+ *   <li>loadtest.duration-seconds / loadtest.warmup-seconds：测量时长与预热时长</li>
+ *   <li>loadtest.stream：是否压测/stream流式接口</li>
+ *   <li>loadtest.limiter：是否启用请求限流，默认关闭以测量原始容量</li>
+ *   <li>loadtest.compare-threads：对比线程模型，分别以spring.threads.virtual.enabled=false与true启动应用，
+ *       各自逐级提高并发，输出每种模式下可持续的最大在途上游请求数</li>
+ *   <li>loadtest.ramp.start / loadtest.ramp.max / loadtest.ramp.factor：对比时的起始并发、最大并发与每级倍数，
+ *       默认50、3200、2</li>
+ *   <li>loadtest.ramp.step-seconds：对比时每级的测量时长，默认15</li>
+ *   <li>loadtest.ramp.min-success-rate：某级成功率低于该值即视为超出容量并停止加压，默认0.99</li>
+ * </ul>
+ * 模拟提供商参数见FakeProviderSettings，连接池大小可用-Dspring.datasource.hikari.maximum-pool-size调整。
+ * 在途上游请求数在模拟提供商处采样，反映应用实际能同时挂起等待模型的请求数
+ */
+public class LoadTestScenario {
+    
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    
+    // 功能名与兼容接口的同名路径优先匹配，这些接口按各自的字段名读取输入
+    private static final Map<String, String> LEGACY_INPUT_FIELDS = Map.of(
+            "chat", "message",
+            "code-generation", "requirements",
+            "text-generation", "prompt",
+            "document-summary", "document");
+    
+    public static void main(String[] args) throws Exception {
+        String function = System.getProperty("loadtest.function", "chat");
+        int concurrency = Integer.getInteger("loadtest.concurrency", 50);
+        int users = Integer.getInteger("loadtest.users", concurrency);
+        int durationSeconds = Integer.getInteger("loadtest.duration-seconds", 30);
+        int warmupSeconds = Integer.getInteger("loadtest.warmup-seconds", 5);
+        boolean stream = Boolean.getBoolean("loadtest.stream");
+        boolean limiter = Boolean.getBoolean("loadtest.limiter");
+        String input = System.getProperty("loadtest.input", "请用三句话介绍一下你自己");
+        String path = "/api/ai/" + function + (stream ? "/stream" : "");
+        String body = requestBody(function, input);
+        
+        try (FakeProviderServer provider = new FakeProviderServer(0, FakeProviderSettings.fromSystemProperties())) {
+            provider.start();
+            
+            if (Boolean.getBoolean("loadtest.compare-threads")) {
+                compareThreadModes(provider, path, body, stream, limiter, warmupSeconds);
+                return;
+            }
+            
+            ConfigurableApplicationContext context = startApplication(provider, "loadtest", limiter);
+            try {
+                String baseUrl = baseUrlOf(context);
+                List<String> tokens = createUsers(context, users);
+                
+                System.out.printf("压测开始: %s%s, 并发 %d, 用户 %d, 预热 %ds, 测量 %ds%n",
+                        baseUrl, path, concurrency, users, warmupSeconds, durationSeconds);
+                Result result = run(URI.create(baseUrl + path), body,
+                        tokens, concurrency, stream, context.getBean(HikariDataSource.class), provider::getInFlight,
+                        TimeUnit.SECONDS.toNanos(warmupSeconds), TimeUnit.SECONDS.toNanos(durationSeconds));
+                
+                result.print(durationSeconds);
+                System.out.printf("模拟提供商: 请求 %d, 注入错误 %d%n", provider.getRequestCount(), provider.getInjectedErrorCount());
+                printStageBreakdown(context.getBean(MeterRegistry.class));
+            } finally {
+                context.close();
+            }
+        }
+    }
+    
+    /**
+     * 线程模型对比：先以平台线程、再以虚拟线程各启动一次应用，逐级提高并发直到成功率下降或达到最大并发，
+     * 记录每级在模拟提供商处采样到的在途请求数中位数，取成功率达标各级中的最大值作为该模式的可持续在途上限。
+     * 压测请求内容相同，对比时关闭请求合并，否则并发请求会合并为一次上游调用
+     */
+    private static void compareThreadModes(FakeProviderServer provider, String path, String body, boolean stream,
+                                           boolean limiter, int warmupSeconds) throws Exception {
+        int rampStart = Integer.getInteger("loadtest.ramp.start", 50);
+        int rampMax = Integer.getInteger("loadtest.ramp.max", 3200);
+        double rampFactor = Double.parseDouble(System.getProperty("loadtest.ramp.factor", "2"));
+        int stepSeconds = Integer.getInteger("loadtest.ramp.step-seconds", 15);
+        double minSuccessRate = Double.parseDouble(System.getProperty("loadtest.ramp.min-success-rate", "0.99"));
+        int users = Integer.getInteger("loadtest.users", rampMax);
+        
+        Map<String, RampStep> peaks = new LinkedHashMap<>();
+        for (boolean virtual : new boolean[]{false, true}) {
+            String mode = virtual ? "虚拟线程" : "平台线程";
+            ConfigurableApplicationContext context = startApplication(provider, "loadtest-" + (virtual ? "virtual" : "platform"),
+                    limiter, "--spring.threads.virtual.enabled=" + virtual, "--ai.coalescing.enabled=false");
+            try {
+                List<String> tokens = createUsers(context, users);
+                URI uri = URI.create(baseUrlOf(context) + path);
+                System.out.printf("%n[%s] spring.threads.virtual.enabled=%s, 并发 %d → %d（×%.1f）, 每级预热 %ds, 测量 %ds%n",
+                        mode, virtual, rampStart, rampMax, rampFactor, warmupSeconds, stepSeconds);
+                System.out.printf("  %8s %14s %14s %12s %10s %8s%n", "并发", "在途中位数", "在途峰值", "成功 req/s", "p99 ms", "成功率");
+                
+                RampStep peak = null;
+                for (int concurrency = rampStart; concurrency <= rampMax;
+                     concurrency = Math.max(concurrency + 1, (int) Math.ceil(concurrency * rampFactor))) {
+                    Result result = run(uri, body, tokens, concurrency, stream, context.getBean(HikariDataSource.class),
+                            provider::getInFlight, TimeUnit.SECONDS.toNanos(warmupSeconds), TimeUnit.SECONDS.toNanos(stepSeconds));
+                    RampStep step = new RampStep(concurrency, result.sustainedInFlight(), result.peakInFlight(),
+                            result.succeeded() / (double) stepSeconds, result.p99Ms(), result.successRate());
+                    System.out.printf("  %8d %14d %14d %12.1f %10.1f %7.1f%%%n", step.concurrency(), step.sustainedInFlight(),
+                            step.peakInFlight(), step.successPerSecond(), step.p99Ms(), step.successRate() * 100);
+                    if (step.successRate() < minSuccessRate) {
+                        System.out.printf("  成功率低于 %.1f%%，停止加压，结果分布: %s%n", minSuccessRate * 100, result.outcomes());
+                        break;
+                    }
+                    if (peak == null || step.sustainedInFlight() > peak.sustainedInFlight()) {
+                        peak = step;
+                    }
+                }
+                peaks.put(mode, peak);
+            } finally {
+                context.close();
+            }
+        }
+        
+        System.out.println();
+        System.out.println("可持续在途上游请求数（成功率达标各级中在途中位数的最大值）:");
+        peaks.forEach((mode, peak) -> {
+            if (peak == null) {
+                System.out.printf("  %s: 起始并发即未达标%n", mode);
+            } else {
+                System.out.printf("  %s: %d（并发 %d, 成功 %.1f req/s, p99 %.1f ms）%n", mode, peak.sustainedInFlight(),
+                        peak.concurrency(), peak.successPerSecond(), peak.p99Ms());
+            }
+        });
+    }
+    
+    /**
+     * 以H2（MySQL模式）启动应用，AI提供商指向模拟服务器
+     */
+    private static ConfigurableApplicationContext startApplication(FakeProviderServer provider, String database,
+                                                                   boolean limiter, String... extraArgs) {
+        List<String> args = new ArrayList<>(List.of("--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.sql.init.mode=always",
+                "--spring.sql.init.schema-locations=classpath:db/schema-h2.sql",
+                "--spring.ai.openai.base-url=" + provider.getBaseUrl(),
+                "--spring.ai.openai.api-key=fake",
+                "--spring.ai.ollama.base-url=" + provider.getBaseUrl(),
+                "--ai.limiter.enabled=" + limiter,
+                "--logging.level.root=WARN",
+                "--logging.level.com.aiwebsite=WARN",
+                "--logging.level.org.springframework.security=WARN"));
+        args.addAll(List.of(extraArgs));
+        return new SpringApplicationBuilder(AiWebsiteApplication.class).run(args.toArray(String[]::new));
+    }
+    
+    private static String baseUrlOf(ConfigurableApplicationContext context) {
+        return "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port");
+    }
+    
+    private static String requestBody(String function, String input) throws Exception {
+        Map<String, String> body = new HashMap<>();
+        body.put("input", input);
+        if (LEGACY_INPUT_FIELDS.containsKey(function)) {
+            body.put(LEGACY_INPUT_FIELDS.get(function), input);
+        }
+        return OBJECT_MAPPER.writeValueAsString(body);
+    }
+    
+    /**
+     * 创建积分充足的压测用户并签发JWT
+     */
+    private static List<String> createUsers(ConfigurableApplicationContext context, int count) {
+        UserMapper userMapper = context.getBean(UserMapper.class);
+        JwtTokenProvider tokenProvider = context.getBean(JwtTokenProvider.class);
+        List<String> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.setUsername("loadtest" + i);
+            user.setPassword("loadtest");
+            user.setEmail("loadtest" + i + "@example.com");
+            user.setPoints(Integer.MAX_VALUE / 2);
+            userMapper.insert(user);
+            tokens.add(tokenProvider.generateToken(
+                    new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities())));
+        }
+        return tokens;
+    }
+    
+    /**
+     * 闭环压测：每个并发槽位在上一个请求完成后立即发出下一个请求，预热期间的结果不计入统计
+     */
+    private static Result run(URI uri, String body, List<String> tokens, int concurrency, boolean stream,
+                              HikariDataSource dataSource, IntSupplier upstreamInFlight,
+                              long warmupNanos, long durationNanos) throws Exception {
+        Result result = new Result(dataSource.getMaximumPoolSize());
+        long start = System.nanoTime();
+        long measureFrom = start + warmupNanos;
+        long end = measureFrom + durationNanos;
+        
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             ExecutorService clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .executor(clientExecutor)
+                     .connectTimeout(Duration.ofSeconds(5))
+                     .build()) {
+            
+            // 连接池与上游在途请求采样
+            HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+            executor.submit(() -> {
+                while (System.nanoTime() < end) {
+                    if (System.nanoTime() >= measureFrom) {
+                        result.samplePool(pool.getActiveConnections(), pool.getThreadsAwaitingConnection());
+                        result.sampleInFlight(upstreamInFlight.getAsInt());
+                    }
+                    Thread.sleep(50);
+                }
+                return null;
+            });
+            
+            for (int slot = 0; slot < concurrency; slot++) {
+                String token = tokens.get(slot % tokens.size());
+                executor.submit(() -> {
+                    List<Long> latencies = new ArrayList<>();
+                    while (System.nanoTime() < end) {
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .timeout(Duration.ofMinutes(2))
+                                .header("Authorization", "Bearer " + token)
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString(body))
+                                .build();
+                        long requestStart = System.nanoTime();
+                        String outcome;
+                        try {
+                            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                            outcome = classify(response, stream);
+                        } catch (Exception e) {
+                            outcome = "exception:" + e.getClass().getSimpleName();
+                        }
+                        long requestEnd = System.nanoTime();
+                        if (requestStart >= measureFrom && requestEnd <= end) {
+                            latencies.add(requestEnd - requestStart);
+                            result.count(outcome);
+                        }
+                    }
+                    result.addLatencies(latencies);
+                    return null;
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(durationNanos + warmupNanos + TimeUnit.MINUTES.toNanos(3), TimeUnit.NANOSECONDS);
+        }
+        return result;
+    }
+    
+    private static String classify(HttpResponse<String> response, boolean stream) {
+        if (response.statusCode() != 200) {
+            return String.valueOf(response.statusCode());
+        }
+        if (stream) {
+            return response.body().contains("event:error") ? "200-stream-error" : "200";
+        }
+        return response.body().contains("\"success\":true") ? "200" : "200-failed";
+    }
+    
+    /**
+     * 输出应用内各处理阶段的平均耗时（来自ai.stage.duration指标）
+     */
+    private static void printStageBreakdown(MeterRegistry registry) {
+        Map<String, double[]> stages = new TreeMap<>();
+        for (Timer timer : registry.find("ai.stage.duration").timers()) {
+            double[] totals = stages.computeIfAbsent(timer.getId().getTag("stage"), stage -> new double[2]);
+            totals[0] += timer.totalTime(TimeUnit.MILLISECONDS);
+            totals[1] += timer.count();
+        }
+        System.out.println("各阶段平均耗时（含预热）:");
+        stages.forEach((stage, totals) -> System.out.printf("  %-10s %10.3f ms  (%d 次)%n",
+                stage, totals[1] > 0 ? totals[0] / totals[1] : 0, (long) totals[1]));
+    }
+    
+    /**
+     * 线程模型对比中的一级加压结果
+     */
+    private record RampStep(int concurrency, int sustainedInFlight, int peakInFlight,
+                            double successPerSecond, double p99Ms, double successRate) {
+    }
+    
+    /**
+     * 压测结果汇总
+     */
+    private static class Result {
+        
+        private final int maxPoolSize;
+        private final List<Long> latencies = new ArrayList<>();
+        private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+        private final AtomicLong poolSamples = new AtomicLong();
+        private final AtomicLong saturatedSamples = new AtomicLong();
+        private final AtomicLong maxActive = new AtomicLong();
+        private final AtomicLong maxWaiting = new AtomicLong();
+        private final AtomicLong totalWaiting = new AtomicLong();
+        private final List<Integer> inFlightSamples = new ArrayList<>();
+        
+        Result(int maxPoolSize) {
+            this.maxPoolSize = maxPoolSize;
+        }
+        
+        void count(String outcome) {
+            outcomes.computeIfAbsent(outcome, key -> new LongAdder()).increment();
+        }
+        
+        synchronized void addLatencies(List<Long> values) {
+            latencies.addAll(values);
+        }
+        
+        void samplePool(int active, int waiting) {
+            poolSamples.incrementAndGet();
+            if (active >= maxPoolSize) {
+                saturatedSamples.incrementAndGet();
+            }
+            maxActive.accumulateAndGet(active, Math::max);
+            maxWaiting.accumulateAndGet(waiting, Math::max);
+            totalWaiting.addAndGet(waiting);
+        }
+        
+        synchronized void sampleInFlight(int inFlight) {
+            inFlightSamples.add(inFlight);
+        }
+        
+        /**
+         * 测量期间上游在途请求数的中位数
+         */
+        synchronized int sustainedInFlight() {
+            if (inFlightSamples.isEmpty()) {
+                return 0;
+            }
+            List<Integer> sorted = new ArrayList<>(inFlightSamples);
+            sorted.sort(null);
+            return sorted.get(sorted.size() / 2);
+        }
+        
+        synchronized int peakInFlight() {
+            return inFlightSamples.stream().mapToInt(Integer::intValue).max().orElse(0);
+        }
+        
+        Map<String, LongAdder> outcomes() {
+            return new TreeMap<>(outcomes);
+        }
+        
+        long succeeded() {
+            return outcomes.getOrDefault("200", new LongAdder()).sum();
+        }
+        
+        synchronized double successRate() {
+            return latencies.isEmpty() ? 0 : succeeded() / (double) latencies.size();
+        }
+        
+        synchronized double p99Ms() {
+            latencies.sort(null);
+            return percentile(0.99);
+        }
+        
+        synchronized void print(int durationSeconds) {
+            latencies.sort(null);
+            long ok = succeeded();
+            System.out.printf("完成请求 %d, 成功 %d, 吞吐量 %.1f req/s（成功 %.1f req/s）%n",
+                    latencies.size(), ok, latencies.size() / (double) durationSeconds, ok / (double) durationSeconds);
+            System.out.printf("延迟 p50 %.1f ms, p90 %.1f ms, p99 %.1f ms, max %.1f ms%n",
+                    percentile(0.50), percentile(0.90), percentile(0.99), percentile(1.0));
+            System.out.println("结果分布: " + outcomes());
+            long samples = Math.max(1, poolSamples.get());
+            System.out.printf("连接池: 上限 %d, 最大活跃 %d, 饱和采样占比 %.1f%%, 最大等待线程 %d, 平均等待线程 %.2f%n",
+                    maxPoolSize, maxActive.get(), saturatedSamples.get() * 100.0 / samples,
+                    maxWaiting.get(), totalWaiting.get() / (double) samples);
+            System.out.printf("上游在途请求: 中位数 %d, 峰值 %d%n", sustainedInFlight(), peakInFlight());
+        }
+        
+        private double percentile(double p) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(p * latencies.size()) - 1;
+            return latencies.get(Math.max(0, index)) / 1_000_000.0;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.aiwebsite.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * AI响应缓存配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai.cache")
+public class AiCacheProperties {
+    
+    /**
+     * 是否启用响应缓存
+     */
+    private boolean enabled = false;
+    
+    /**
+     * 堆内缓存层容量（字节）
+     */
+    private long heapMaxBytes = 64L * 1024 * 1024;
+    
+    /**
+     * 堆外缓存层容量（字节），启用缓存时按该容量一次性分配直接内存
+     */
+    private long offHeapMaxBytes = 256L * 1024 * 1024;
+    
+    /**
+     * 堆外缓存分片大小（字节），每个条目占用整数个分片
+     */
+    private int offHeapSlabBytes = 4 * 1024;
+    
+    /**
+     * 超过该大小（字节）的响应存入堆外缓存层
+     */
+    private int offHeapThresholdBytes = 8 * 1024;
+    
+    /**
+     * 各功能的缓存有效期（秒），未配置或为0的功能不缓存
+     */
+    private Map<String, Long> ttlSeconds = new HashMap<>();
+}
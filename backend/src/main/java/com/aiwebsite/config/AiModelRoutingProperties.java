@@ -0,0 +1,46 @@
+package com.aiwebsite.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按功能路由模型的配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai.model-routing")
+public class AiModelRoutingProperties {
+    
+    /**
+     * 各功能的路由，键为功能名称；未配置的功能使用全局首选提供商及其默认选项
+     */
+    private Map<String, FunctionRoute> functions = new HashMap<>();
+    
+    @Data
+    public static class FunctionRoute {
+        
+        /**
+         * 该功能的首选提供商，必填
+         */
+        private String provider;
+        
+        /**
+         * 模型名称，为空时使用提供商的默认模型
+         */
+        private String model;
+        
+        /**
+         * 最大输出token数，为空时使用提供商的默认值
+         */
+        private Integer maxTokens;
+        
+        /**
+         * 采样温度，为空时使用提供商的默认值
+         */
+        private Double temperature;
+    }
+}
@@ -2,6 +2,8 @@ package com.aiwebsite.config;
 
 import com.aiwebsite.security.JwtAuthenticationFilter;
 import com.aiwebsite.security.JwtTokenProvider;
+import com.aiwebsite.security.VerifiedTokenCache;
+import com.aiwebsite.service.AiMetrics;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -11,7 +13,9 @@ public class JwtConfig {
     
     @Bean
     public JwtAuthenticationFilter jwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, 
-                                                           UserDetailsService userDetailsService) {
-        return new JwtAuthenticationFilter(jwtTokenProvider, userDetailsService);
+                                                           UserDetailsService userDetailsService,
+                                                           VerifiedTokenCache verifiedTokenCache,
+                                                           AiMetrics aiMetrics) {
+        return new JwtAuthenticationFilter(jwtTokenProvider, userDetailsService, verifiedTokenCache, aiMetrics);
     }
 }
\ No newline at end of file
@@ -0,0 +1,56 @@
+package com.aiwebsite.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 读写分离路由数据源
+ * 只读事务路由到副本，其余（写事务、无事务的语句）路由到主库。
+ * 需包装在LazyConnectionDataSourceProxy中使用，使连接在事务的只读标记设置之后、首条语句执行时才获取
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    
+    static final String PRIMARY = "primary";
+    static final String REPLICA = "replica";
+    
+    private static final ThreadLocal<Boolean> FORCE_PRIMARY = new ThreadLocal<>();
+    
+    private final BooleanSupplier replicaUsable;
+    
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, BooleanSupplier replicaUsable) {
+        this.replicaUsable = replicaUsable;
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+    
+    /**
+     * 在主库上执行查询，即使处于只读事务中；只对尚未获取连接的事务生效，用于写后立即读
+     */
+    public static <T> T onPrimary(Supplier<T> query) {
+        if (FORCE_PRIMARY.get() != null) {
+            return query.get();
+        }
+        FORCE_PRIMARY.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            FORCE_PRIMARY.remove();
+        }
+    }
+    
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && FORCE_PRIMARY.get() == null
+                && replicaUsable.getAsBoolean()) {
+            return REPLICA;
+        }
+        return PRIMARY;
+    }
+}
@@ -0,0 +1,31 @@
+package com.aiwebsite.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 只读副本数据源配置，url为空时不启用读写分离
+ */
+@Data
+@ConfigurationProperties(prefix = "spring.datasource.replica")
+public class ReplicaDataSourceProperties {
+    
+    private String url;
+    
+    private String username;
+    
+    private String password;
+    
+    private String driverClassName;
+    
+    /**
+     * 查询副本延迟的SQL，返回延迟秒数；SHOW REPLICA STATUS等结果集中含Seconds_Behind_Source列时读取该列。
+     * 为空时不检测延迟，始终认为副本可用
+     */
+    private String lagQuery;
+    
+    /**
+     * 副本延迟超过该值（毫秒）或检测失败时，只读事务也改走主库
+     */
+    private long maxLagMs = 10000;
+}
@@ -0,0 +1,81 @@
+package com.aiwebsite.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 副本延迟监测
+ * 定期在副本上执行延迟查询，延迟超过上限或查询失败时暂停向副本路由，恢复后自动重新启用
+ */
+@Slf4j
+public class ReplicaLagMonitor {
+    
+    private static final String LAG_COLUMN = "Seconds_Behind_Source";
+    
+    private final JdbcTemplate replicaJdbcTemplate;
+    private final String lagQuery;
+    private final long maxLagMs;
+    
+    private volatile long lagMs;
+    private volatile boolean replicaUsable = true;
+    
+    public ReplicaLagMonitor(DataSource replica, ReplicaDataSourceProperties properties) {
+        this.replicaJdbcTemplate = new JdbcTemplate(replica);
+        this.lagQuery = properties.getLagQuery();
+        this.maxLagMs = properties.getMaxLagMs();
+    }
+    
+    @Scheduled(fixedDelayString = "${spring.datasource.replica.lag-check-interval-ms:5000}")
+    public void check() {
+        if (lagQuery == null || lagQuery.isBlank()) {
+            return;
+        }
+        boolean usable;
+        try {
+            Long seconds = replicaJdbcTemplate.query(lagQuery, this::extractLagSeconds);
+            // 没有返回延迟（例如复制已停止）视为不可用
+            lagMs = seconds != null ? seconds * 1000 : Long.MAX_VALUE;
+            usable = lagMs <= maxLagMs;
+        } catch (Exception e) {
+            lagMs = Long.MAX_VALUE;
+            usable = false;
+            log.warn("副本延迟检测失败: {}", e.getMessage());
+        }
+        if (usable != replicaUsable) {
+            log.warn(usable ? "副本延迟恢复正常，恢复只读路由" : "副本不可用或延迟超过{}ms，只读事务改走主库", maxLagMs);
+            replicaUsable = usable;
+        }
+    }
+    
+    public boolean isReplicaUsable() {
+        return replicaUsable;
+    }
+    
+    /**
+     * 最近一次检测到的副本延迟（毫秒），未配置检测时为0
+     */
+    public long getLagMs() {
+        return lagMs;
+    }
+    
+    private Long extractLagSeconds(ResultSet rs) throws SQLException {
+        if (!rs.next()) {
+            return null;
+        }
+        int column = 1;
+        var metaData = rs.getMetaData();
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (LAG_COLUMN.equalsIgnoreCase(metaData.getColumnLabel(i))) {
+                column = i;
+                break;
+            }
+        }
+        long seconds = rs.getLong(column);
+        return rs.wasNull() ? null : seconds;
+    }
+}
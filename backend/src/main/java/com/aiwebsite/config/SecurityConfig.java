@@ -1,7 +1,11 @@
 package com.aiwebsite.config;
 
+import com.aiwebsite.security.AiRateLimitFilter;
 import com.aiwebsite.security.JwtAuthenticationEntryPoint;
 import com.aiwebsite.security.JwtAuthenticationFilter;
+import com.aiwebsite.service.AiFunctionConfigService;
+import com.aiwebsite.service.AiRequestLimiter;
+import jakarta.servlet.DispatcherType;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -13,6 +17,7 @@ import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.access.intercept.AuthorizationFilter;
 import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.web.cors.CorsConfigurationSource;
 
@@ -25,7 +30,10 @@ public class SecurityConfig {
     private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
     
     @Bean
-    public SecurityFilterChain filterChain(HttpSecurity http, JwtAuthenticationFilter jwtAuthenticationFilter) throws Exception {
+    public SecurityFilterChain filterChain(HttpSecurity http, 
+                                          JwtAuthenticationFilter jwtAuthenticationFilter,
+                                          AiRequestLimiter aiRequestLimiter,
+                                          AiFunctionConfigService aiFunctionConfigService) throws Exception {
         http
             .csrf(csrf -> csrf.disable())
             .cors(cors -> cors.configurationSource(corsConfigurationSource))
@@ -34,11 +42,17 @@ public class SecurityConfig {
                 .authenticationEntryPoint(jwtAuthenticationEntryPoint)
             )
             .authorizeHttpRequests(auth -> auth
+                // 流式响应的异步分派沿用首次请求的认证结果
+                .dispatcherTypeMatchers(DispatcherType.ASYNC, DispatcherType.ERROR).permitAll()
                 .requestMatchers("/api/auth/register", "/api/auth/login").permitAll()
                 .requestMatchers("/api/ai/functions/**").permitAll()
+                // 健康检查与Prometheus抓取端点，生产环境应只在内网暴露管理端口
+                .requestMatchers("/actuator/health", "/actuator/prometheus").permitAll()
                 .anyRequest().authenticated()
             )
-            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class);
+            .addFilterBefore(jwtAuthenticationFilter, UsernamePasswordAuthenticationFilter.class)
+            // 限流放在授权之后，只对已认证的AI功能请求计数；不注册为Bean，避免被Servlet容器重复注册
+            .addFilterAfter(new AiRateLimitFilter(aiRequestLimiter, aiFunctionConfigService), AuthorizationFilter.class);
         
         return http.build();
     }
@@ -0,0 +1,47 @@
+package com.aiwebsite.config;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.client.RestClientCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 虚拟线程模式配置
+ * spring.threads.virtual.enabled=true 时Tomcat已由Spring Boot切换到虚拟线程，
+ * 这里让Spring AI使用的RestClient也基于虚拟线程执行HTTP I/O
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    /**
+     * AI提供商HTTP调用使用的虚拟线程执行器
+     * 不注册为Bean，避免替换Spring Boot自动配置的applicationTaskExecutor
+     */
+    private final ExecutorService aiHttpClientExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ai-http-", 0).factory());
+
+    /**
+     * OpenAI/Ollama的RestClient改用JDK HttpClient，其异步任务运行在虚拟线程上
+     */
+    @Bean
+    public RestClientCustomizer virtualThreadRestClientCustomizer() {
+        HttpClient httpClient = HttpClient.newBuilder()
+                .executor(aiHttpClientExecutor)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        return builder -> builder.requestFactory(new JdkClientHttpRequestFactory(httpClient));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        aiHttpClientExecutor.close();
+    }
+}
@@ -1,16 +1,38 @@
 package com.aiwebsite.controller;
 
+import com.aiwebsite.dto.AiBatchItemResult;
+import com.aiwebsite.dto.AiBatchRequest;
+import com.aiwebsite.dto.AiFunctionConfigUpdateRequest;
+import com.aiwebsite.dto.AiUsageHistoryItem;
 import com.aiwebsite.dto.ApiResponse;
+import com.aiwebsite.dto.CursorPage;
+import com.aiwebsite.entity.AiFunctionSetting;
+import com.aiwebsite.entity.AiJob;
 import com.aiwebsite.entity.User;
+import com.aiwebsite.exception.RateLimitExceededException;
+import com.aiwebsite.security.UserPrincipal;
+import com.aiwebsite.service.AiJobService;
 import com.aiwebsite.service.AiService;
 import com.aiwebsite.service.AiChatService;
-import com.aiwebsite.service.UserService;
+import com.aiwebsite.service.AiFunctionConfigService;
+import com.aiwebsite.service.AiRequestLimiter;
+import com.aiwebsite.service.AuditService;
+import com.aiwebsite.service.ConversationMemory;
+import com.aiwebsite.service.UsageRollupService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
 
+import java.time.LocalDate;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -20,13 +42,19 @@ import java.util.Map;
 public class AiController {
     
     private final AiService aiService;
-    private final UserService userService;
+    private final AiJobService aiJobService;
     private final AiChatService aiChatService;
+    private final AiFunctionConfigService functionConfigService;
+    private final AiRequestLimiter aiRequestLimiter;
+    private final AuditService auditService;
+    private final ConversationMemory conversationMemory;
+    private final UsageRollupService usageRollupService;
     
     @PostMapping("/{functionName}")
     public ResponseEntity<ApiResponse<String>> processAiFunction(
             @PathVariable String functionName,
-            @RequestBody Map<String, String> request) {
+            @RequestBody Map<String, String> request,
+            @AuthenticationPrincipal UserPrincipal principal) {
         try {
             String input = request.get("input");
             if (input == null || input.trim().isEmpty()) {
@@ -40,21 +68,101 @@ public class AiController {
                 );
             }
             
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userService.findByUsername(username).orElseThrow();
-            
-            String output = aiService.processAiFunction(user.getId(), functionName, input);
+            String output = aiService.processAiFunction(principal.getId(), functionName, input);
             return ResponseEntity.ok(ApiResponse.success("处理成功", output));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
     
+    /**
+     * 流式处理AI功能（SSE）
+     * 每个token片段作为一个message事件推送，结束时推送done事件，出错时推送error事件
+     */
+    @PostMapping(value = "/{functionName}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> processAiFunctionStream(
+            @PathVariable String functionName,
+            @RequestBody Map<String, String> request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            String input = request.get("input");
+            if (input == null || input.trim().isEmpty()) {
+                return errorEvent("输入内容不能为空");
+            }
+            
+            // 检查功能是否可用
+            if (!aiService.isFunctionAvailable(functionName)) {
+                return errorEvent("功能不可用: " + functionName);
+            }
+            
+            return aiService.processAiFunctionStream(principal.getId(), functionName, input)
+                    .map(token -> ServerSentEvent.builder(token).build())
+                    .concatWith(Flux.just(ServerSentEvent.<String>builder().event("done").data("").build()))
+                    .onErrorResume(e -> errorEvent(e.getMessage()));
+        } catch (Exception e) {
+            return errorEvent(e.getMessage());
+        }
+    }
+    
+    /**
+     * 批量处理AI功能，全部完成后按输入顺序返回各项结果
+     */
+    @PostMapping("/{functionName}/batch")
+    public ResponseEntity<ApiResponse<List<AiBatchItemResult>>> processAiFunctionBatch(
+            @PathVariable String functionName,
+            @RequestBody AiBatchRequest request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            // 检查功能是否可用
+            if (!aiService.isFunctionAvailable(functionName)) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("功能不可用: " + functionName));
+            }
+            
+            List<AiBatchItemResult> results = aiService.processBatch(principal.getId(), functionName, request.getInputs())
+                    .collectSortedList(Comparator.comparingInt(AiBatchItemResult::getIndex))
+                    .block();
+            return ResponseEntity.ok(ApiResponse.success("批量处理完成", results));
+        } catch (RateLimitExceededException e) {
+            // 交给全局异常处理返回429及Retry-After
+            throw e;
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 批量处理AI功能（NDJSON）
+     * 每完成一项推送一行结果，顺序为完成顺序；整个请求被拒绝时只推送一行index为-1的失败结果
+     */
+    @PostMapping(value = "/{functionName}/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<AiBatchItemResult>> processAiFunctionBatchStream(
+            @PathVariable String functionName,
+            @RequestBody AiBatchRequest request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            // 检查功能是否可用
+            if (!aiService.isFunctionAvailable(functionName)) {
+                return ResponseEntity.ok(Flux.just(AiBatchItemResult.failure(-1, "功能不可用: " + functionName)));
+            }
+            
+            return ResponseEntity.ok(aiService.processBatch(principal.getId(), functionName, request.getInputs())
+                    .onErrorResume(e -> Flux.just(AiBatchItemResult.failure(-1, e.getMessage()))));
+        } catch (RateLimitExceededException e) {
+            // 全局异常处理无法以NDJSON输出，这里直接返回429
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                    .body(Flux.just(AiBatchItemResult.failure(-1, e.getMessage())));
+        } catch (Exception e) {
+            return ResponseEntity.ok(Flux.just(AiBatchItemResult.failure(-1, e.getMessage())));
+        }
+    }
+    
     /**
      * 聊天功能 - 保留独立接口以保持兼容性
      */
     @PostMapping("/chat")
-    public ResponseEntity<ApiResponse<String>> chat(@RequestBody Map<String, String> request) {
+    public ResponseEntity<ApiResponse<String>> chat(@RequestBody Map<String, String> request,
+                                                    @AuthenticationPrincipal UserPrincipal principal) {
         String message = request.get("message");
         if (message == null || message.trim().isEmpty()) {
             return ResponseEntity.badRequest().body(ApiResponse.error("消息内容不能为空"));
@@ -62,14 +170,114 @@ public class AiController {
         
         // 转发到通用处理接口
         request.put("input", message);
-        return processAiFunction("chat", request);
+        return processAiFunction("chat", request, principal);
+    }
+    
+    /**
+     * 创建聊天会话，之后的消息带上返回的会话ID，服务端按token预算保留上下文
+     */
+    @PostMapping("/chat/conversations")
+    public ResponseEntity<ApiResponse<Map<String, String>>> createConversation(
+            @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            if (!aiService.isFunctionAvailable("chat")) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("功能不可用: chat"));
+            }
+            String conversationId = conversationMemory.create(principal.getId());
+            return ResponseEntity.ok(ApiResponse.success("会话已创建", Map.of("conversationId", conversationId)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 在会话中发送消息
+     */
+    @PostMapping("/chat/conversations/{conversationId}/messages")
+    public ResponseEntity<ApiResponse<String>> sendConversationMessage(
+            @PathVariable String conversationId,
+            @RequestBody Map<String, String> request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            if (!aiService.isFunctionAvailable("chat")) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("功能不可用: chat"));
+            }
+            String message = request.get("message");
+            if (message == null || message.trim().isEmpty()) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("消息内容不能为空"));
+            }
+            
+            String output = aiService.processConversation(principal.getId(), conversationId, message);
+            return ResponseEntity.ok(ApiResponse.success("处理成功", output));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 在会话中流式发送消息（SSE），事件格式与通用流式接口相同
+     */
+    @PostMapping(value = "/chat/conversations/{conversationId}/messages/stream", 
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<String>> streamConversationMessage(
+            @PathVariable String conversationId,
+            @RequestBody Map<String, String> request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            if (!aiService.isFunctionAvailable("chat")) {
+                return errorEvent("功能不可用: chat");
+            }
+            String message = request.get("message");
+            if (message == null || message.trim().isEmpty()) {
+                return errorEvent("消息内容不能为空");
+            }
+            
+            return aiService.processConversationStream(principal.getId(), conversationId, message)
+                    .map(token -> ServerSentEvent.builder(token).build())
+                    .concatWith(Flux.just(ServerSentEvent.<String>builder().event("done").data("").build()))
+                    .onErrorResume(e -> errorEvent(e.getMessage()));
+        } catch (Exception e) {
+            return errorEvent(e.getMessage());
+        }
+    }
+    
+    /**
+     * 结束聊天会话，释放服务端保存的上下文
+     */
+    @DeleteMapping("/chat/conversations/{conversationId}")
+    public ResponseEntity<ApiResponse<Void>> deleteConversation(
+            @PathVariable String conversationId,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            conversationMemory.delete(principal.getId(), conversationId);
+            return ResponseEntity.ok(ApiResponse.success("会话已结束", null));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 获取会话记忆统计（仅管理员）：内存中的会话数与摘要次数
+     */
+    @GetMapping("/chat/conversations/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getConversationStats(
+            @AuthenticationPrincipal UserPrincipal principal) {
+        if (principal.getRole() != User.Role.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("仅管理员可查看会话统计"));
+        }
+        try {
+            return ResponseEntity.ok(ApiResponse.success(conversationMemory.getStats()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
     }
     
     /**
      * 代码生成功能 - 保留独立接口以保持兼容性
      */
     @PostMapping("/code-generation")
-    public ResponseEntity<ApiResponse<String>> generateCode(@RequestBody Map<String, String> request) {
+    public ResponseEntity<ApiResponse<String>> generateCode(@RequestBody Map<String, String> request,
+                                                            @AuthenticationPrincipal UserPrincipal principal) {
         String requirements = request.get("requirements");
         if (requirements == null || requirements.trim().isEmpty()) {
             return ResponseEntity.badRequest().body(ApiResponse.error("需求描述不能为空"));
@@ -77,14 +285,15 @@ public class AiController {
         
         // 转发到通用处理接口
         request.put("input", requirements);
-        return processAiFunction("code-generation", request);
+        return processAiFunction("code-generation", request, principal);
     }
     
     /**
      * 文本生成功能 - 保留独立接口以保持兼容性
      */
     @PostMapping("/text-generation")
-    public ResponseEntity<ApiResponse<String>> generateText(@RequestBody Map<String, String> request) {
+    public ResponseEntity<ApiResponse<String>> generateText(@RequestBody Map<String, String> request,
+                                                            @AuthenticationPrincipal UserPrincipal principal) {
         String prompt = request.get("prompt");
         if (prompt == null || prompt.trim().isEmpty()) {
             return ResponseEntity.badRequest().body(ApiResponse.error("提示词不能为空"));
@@ -92,62 +301,82 @@ public class AiController {
         
         // 转发到通用处理接口
         request.put("input", prompt);
-        return processAiFunction("text-generation", request);
+        return processAiFunction("text-generation", request, principal);
     }
     
     /**
      * 文档摘要功能 - 保留独立接口以保持兼容性
+     * 长文档需分段摘要，耗时较长，以异步任务执行，返回任务ID
      */
     @PostMapping("/document-summary")
-    public ResponseEntity<ApiResponse<String>> summarizeDocument(@RequestBody Map<String, String> request) {
+    public ResponseEntity<ApiResponse<AiJob>> summarizeDocument(@RequestBody Map<String, String> request,
+                                                                @AuthenticationPrincipal UserPrincipal principal) {
         String document = request.get("document");
         if (document == null || document.trim().isEmpty()) {
             return ResponseEntity.badRequest().body(ApiResponse.error("文档内容不能为空"));
         }
         
-        // 转发到通用处理接口
+        // 转发到异步任务接口
         request.put("input", document);
-        return processAiFunction("document-summary", request);
+        return submitJob("document-summary", request, principal);
     }
     
+    /**
+     * 电影快剪功能，视频需先通过/api/uploads分块上传，这里只传uploadId
+     * 剪辑以异步任务执行，返回任务ID
+     */
     @PostMapping("/movie-clip")
-    public ResponseEntity<ApiResponse<String>> movieClip(
-            @RequestParam("videoFile") MultipartFile videoFile,
-            @RequestParam("description") String description,
-            @RequestParam("clipType") String clipType,
-            @RequestParam("style") String style,
-            @RequestParam("targetLength") int targetLength) {
-        try {
-            if (videoFile.isEmpty()) {
-                return ResponseEntity.badRequest().body(ApiResponse.error("视频文件不能为空"));
-            }
-            
-            if (description == null || description.trim().isEmpty()) {
-                return ResponseEntity.badRequest().body(ApiResponse.error("剪辑描述不能为空"));
-            }
-            
-            if (clipType == null || clipType.trim().isEmpty()) {
-                return ResponseEntity.badRequest().body(ApiResponse.error("剪辑类型不能为空"));
-            }
-            
-            if (style == null || style.trim().isEmpty()) {
-                return ResponseEntity.badRequest().body(ApiResponse.error("剪辑风格不能为空"));
-            }
-            
-            if (targetLength <= 0) {
-                return ResponseEntity.badRequest().body(ApiResponse.error("目标时长必须大于0"));
+    public ResponseEntity<ApiResponse<AiJob>> movieClip(@RequestBody Map<String, String> request,
+                                                        @AuthenticationPrincipal UserPrincipal principal) {
+        return submitJob("movie-clip", request, principal);
+    }
+    
+    /**
+     * 提交异步任务，立即返回任务ID，之后通过查询接口或SSE获取进度和结果
+     * 电影快剪的请求体与/movie-clip接口相同，其余功能使用input字段
+     */
+    @PostMapping("/jobs/{functionName}")
+    public ResponseEntity<ApiResponse<AiJob>> submitJob(@PathVariable String functionName,
+                                                        @RequestBody Map<String, String> request,
+                                                        @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            String input = "movie-clip".equals(functionName)
+                    ? buildMovieClipInput(request, principal.getId())
+                    : request.get("input");
+            if (input == null || input.trim().isEmpty()) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("输入内容不能为空"));
             }
             
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userService.findByUsername(username).orElseThrow();
-            
-            String clipPlan = aiService.movieClip(user.getId(), description, clipType, style, targetLength);
-            return ResponseEntity.ok(ApiResponse.success("电影快剪成功", clipPlan));
+            AiJob job = aiJobService.submit(principal.getId(), functionName, input);
+            return ResponseEntity.accepted().body(ApiResponse.success("任务已提交", job));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
     
+    @GetMapping("/jobs/{jobId:\\d+}")
+    public ResponseEntity<ApiResponse<AiJob>> getJob(@PathVariable Long jobId,
+                                                     @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiJobService.getJob(principal.getId(), jobId)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 以SSE推送任务状态，状态或进度变化时推送progress事件，任务结束时推送done事件后关闭
+     */
+    @GetMapping(value = "/jobs/{jobId:\\d+}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> jobEvents(@PathVariable Long jobId,
+                                                   @AuthenticationPrincipal UserPrincipal principal) {
+        return aiJobService.watch(principal.getId(), jobId)
+                .map(job -> ServerSentEvent.<Object>builder(job)
+                        .event(job.getStatus().isTerminal() ? "done" : "progress")
+                        .build())
+                .onErrorResume(e -> Flux.just(ServerSentEvent.<Object>builder(e.getMessage()).event("error").build()));
+    }
+    
     @GetMapping("/functions/points")
     public ResponseEntity<ApiResponse<Map<String, Integer>>> getFunctionPoints() {
         try {
@@ -169,6 +398,125 @@ public class AiController {
         }
     }
     
+    /**
+     * 游标分页查询当前用户的AI使用历史
+     */
+    @GetMapping("/usage/history")
+    public ResponseEntity<ApiResponse<CursorPage<AiUsageHistoryItem>>> getUsageHistory(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(auditService.getUsageHistory(principal.getId(), cursor, size)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 当前用户各功能的累计调用次数与消耗积分，读取日汇总表
+     */
+    @GetMapping("/usage/statistics")
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getUsageStatistics(
+            @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(usageRollupService.getUsageStatistics(principal.getId())));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 从原始记录回填使用量日汇总（仅管理员），任务在后台执行
+     */
+    @PostMapping("/usage/rollups/backfill")
+    public ResponseEntity<ApiResponse<String>> backfillUsageRollups(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        if (principal.getRole() != User.Role.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("仅管理员可执行回填"));
+        }
+        if (!usageRollupService.startBackfill(from, to)) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("已有回填任务正在执行"));
+        }
+        return ResponseEntity.ok(ApiResponse.success("回填任务已启动"));
+    }
+    
+    /**
+     * 修改AI功能配置（仅管理员），本实例立即生效，其他实例在下一次配置版本轮询时生效
+     */
+    @PutMapping("/function-configs/{functionName}")
+    public ResponseEntity<ApiResponse<AiFunctionConfigService.AiFunctionConfig>> updateFunctionConfig(
+            @PathVariable String functionName,
+            @RequestBody AiFunctionConfigUpdateRequest request,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        if (principal.getRole() != User.Role.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("仅管理员可修改功能配置"));
+        }
+        try {
+            AiFunctionSetting changes = new AiFunctionSetting();
+            changes.setDisplayName(request.getDisplayName());
+            changes.setDescription(request.getDescription());
+            changes.setPoints(request.getPoints());
+            changes.setEnabled(request.getEnabled());
+            changes.setCacheTtlSeconds(request.getCacheTtlSeconds());
+            return ResponseEntity.ok(ApiResponse.success("配置已更新", 
+                    functionConfigService.updateConfig(functionName, changes)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 从数据库重新加载AI功能配置（仅管理员），用于直接修改数据库之后
+     */
+    @PostMapping("/function-configs/reload")
+    public ResponseEntity<ApiResponse<String>> reloadFunctionConfigs(
+            @AuthenticationPrincipal UserPrincipal principal) {
+        if (principal.getRole() != User.Role.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("仅管理员可重新加载功能配置"));
+        }
+        try {
+            functionConfigService.reload();
+            return ResponseEntity.ok(ApiResponse.success("配置已重新加载", functionConfigService.getConfigVersion()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 获取响应缓存命中统计（仅管理员）
+     */
+    @GetMapping("/cache/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getCacheStats(
+            @AuthenticationPrincipal UserPrincipal principal) {
+        if (principal.getRole() != User.Role.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("仅管理员可查看缓存统计"));
+        }
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiService.getCacheStats()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 获取限流器状态（仅管理员）：全局与各功能的在途请求数及累计拒绝次数
+     */
+    @GetMapping("/limiter/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getLimiterStats(
+            @AuthenticationPrincipal UserPrincipal principal) {
+        if (principal.getRole() != User.Role.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("仅管理员可查看限流状态"));
+        }
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiRequestLimiter.getStats()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
     /**
      * 获取当前AI提供商
      */
@@ -183,10 +531,30 @@ public class AiController {
     }
     
     /**
-     * 切换AI提供商
+     * 获取提供商路由状态（仅管理员）：各提供商的熔断状态、滚动延迟、错误率、权重与最近的路由决策
+     */
+    @GetMapping("/provider/routing")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getRoutingState(
+            @AuthenticationPrincipal UserPrincipal principal) {
+        if (principal.getRole() != User.Role.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("仅管理员可查看路由状态"));
+        }
+        try {
+            return ResponseEntity.ok(ApiResponse.success(aiChatService.getRoutingState()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * 切换首选AI提供商（仅管理员），影响所有用户的路由，路由器仍会在其退化时自动故障转移
      */
     @PostMapping("/provider/switch")
-    public ResponseEntity<ApiResponse<String>> switchProvider(@RequestBody Map<String, String> request) {
+    public ResponseEntity<ApiResponse<String>> switchProvider(@RequestBody Map<String, String> request,
+                                                              @AuthenticationPrincipal UserPrincipal principal) {
+        if (principal.getRole() != User.Role.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("仅管理员可切换AI提供商"));
+        }
         try {
             String provider = request.get("provider");
             if (provider == null || provider.trim().isEmpty()) {
@@ -203,4 +571,45 @@ public class AiController {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
-} 
\ No newline at end of file
+    
+    /**
+     * 校验电影快剪请求参数并构建处理器输入，参数无效或上传未完成时抛出异常
+     */
+    private String buildMovieClipInput(Map<String, String> request, Long userId) {
+        String uploadId = request.get("uploadId");
+        String description = request.get("description");
+        String clipType = request.get("clipType");
+        String style = request.get("style");
+        String targetLength = request.get("targetLength");
+        
+        if (uploadId == null || uploadId.trim().isEmpty()) {
+            throw new IllegalArgumentException("视频文件不能为空");
+        }
+        
+        if (description == null || description.trim().isEmpty()) {
+            throw new IllegalArgumentException("剪辑描述不能为空");
+        }
+        
+        if (clipType == null || clipType.trim().isEmpty()) {
+            throw new IllegalArgumentException("剪辑类型不能为空");
+        }
+        
+        if (style == null || style.trim().isEmpty()) {
+            throw new IllegalArgumentException("剪辑风格不能为空");
+        }
+        
+        if (targetLength == null || Integer.parseInt(targetLength) <= 0) {
+            throw new IllegalArgumentException("目标时长必须大于0");
+        }
+        
+        return aiService.buildMovieClipInput(userId, uploadId, description, clipType, style, 
+                Integer.parseInt(targetLength));
+    }
+    
+    /**
+     * 构建SSE错误事件
+     */
+    private Flux<ServerSentEvent<String>> errorEvent(String message) {
+        return Flux.just(ServerSentEvent.<String>builder().event("error").data(message).build());
+    }
+}
@@ -5,12 +5,14 @@ import com.aiwebsite.dto.LoginRequest;
 import com.aiwebsite.dto.UserDto;
 import com.aiwebsite.entity.User;
 import com.aiwebsite.security.JwtTokenProvider;
+import com.aiwebsite.security.UserPrincipal;
 import com.aiwebsite.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.*;
 
@@ -48,7 +50,8 @@ public class AuthController {
             SecurityContextHolder.getContext().setAuthentication(authentication);
             String jwt = tokenProvider.generateToken(authentication);
             
-            User user = userService.findByUsername(loginRequest.getUsername()).orElseThrow();
+            // 认证过程已加载用户，直接复用认证结果中的用户实体
+            User user = (User) authentication.getPrincipal();
             
             Map<String, Object> response = new HashMap<>();
             response.put("token", jwt);
@@ -61,10 +64,9 @@ public class AuthController {
     }
     
     @GetMapping("/me")
-    public ResponseEntity<ApiResponse<User>> getCurrentUser() {
+    public ResponseEntity<ApiResponse<User>> getCurrentUser(@AuthenticationPrincipal UserPrincipal principal) {
         try {
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userService.findByUsername(username).orElseThrow();
+            User user = userService.findById(principal.getId()).orElseThrow();
             return ResponseEntity.ok(ApiResponse.success(user));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error("获取用户信息失败"));
@@ -0,0 +1,41 @@
+package com.aiwebsite.controller;
+
+import com.aiwebsite.dto.ApiResponse;
+import com.aiwebsite.dto.CursorPage;
+import com.aiwebsite.entity.Transaction;
+import com.aiwebsite.entity.User;
+import com.aiwebsite.security.UserPrincipal;
+import com.aiwebsite.service.PointsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/points")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class PointsController {
+    
+    private final PointsService pointsService;
+    
+    /**
+     * 游标分页查询积分流水，只能查询本人记录，管理员可查询任意用户
+     */
+    @GetMapping("/transactions/{userId}")
+    public ResponseEntity<ApiResponse<CursorPage<Transaction>>> getTransactionHistory(
+            @PathVariable Long userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer size,
+            @AuthenticationPrincipal UserPrincipal principal) {
+        if (!userId.equals(principal.getId()) && principal.getRole() != User.Role.ADMIN) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body(ApiResponse.error("无权查看其他用户的积分记录"));
+        }
+        try {
+            return ResponseEntity.ok(ApiResponse.success(pointsService.getTransactionHistory(userId, cursor, size)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
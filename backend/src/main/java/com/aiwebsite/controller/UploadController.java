@@ -0,0 +1,84 @@
+package com.aiwebsite.controller;
+
+import com.aiwebsite.dto.ApiResponse;
+import com.aiwebsite.dto.UploadStatus;
+import com.aiwebsite.security.UserPrincipal;
+import com.aiwebsite.service.UploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+/**
+ * 分块断点续传接口
+ * 先创建上传获得uploadId，再以原始字节逐块PUT并在X-Chunk-Checksum头中携带分块的SHA-256，
+ * 中断后查询状态只补传缺失的分块
+ */
+@RestController
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:3000")
+public class UploadController {
+    
+    private final UploadService uploadService;
+    
+    @PostMapping
+    public ResponseEntity<ApiResponse<UploadStatus>> createUpload(@RequestBody Map<String, Object> request,
+                                                                 @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            Object fileName = request.get("fileName");
+            Object totalSize = request.get("totalSize");
+            Object chunkSize = request.get("chunkSize");
+            if (!(totalSize instanceof Number size)) {
+                return ResponseEntity.badRequest().body(ApiResponse.error("文件大小不能为空"));
+            }
+            UploadStatus status = uploadService.create(principal.getId(), 
+                    fileName != null ? fileName.toString() : null, 
+                    size.longValue(), 
+                    chunkSize instanceof Number number ? number.longValue() : null);
+            return ResponseEntity.ok(ApiResponse.success(status));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @PutMapping(value = "/{uploadId}/chunks/{index}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<ApiResponse<UploadStatus>> uploadChunk(@PathVariable String uploadId,
+                                                                @PathVariable int index,
+                                                                @RequestHeader("X-Chunk-Checksum") String checksum,
+                                                                HttpServletRequest request,
+                                                                @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            UploadStatus status = uploadService.writeChunk(principal.getId(), uploadId, index, checksum, 
+                    request.getInputStream());
+            return ResponseEntity.ok(ApiResponse.success(status));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/{uploadId}")
+    public ResponseEntity<ApiResponse<UploadStatus>> getUploadStatus(@PathVariable String uploadId,
+                                                                    @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(uploadService.getStatus(principal.getId(), uploadId)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @DeleteMapping("/{uploadId}")
+    public ResponseEntity<ApiResponse<String>> abortUpload(@PathVariable String uploadId,
+                                                           @AuthenticationPrincipal UserPrincipal principal) {
+        try {
+            uploadService.abort(principal.getId(), uploadId);
+            return ResponseEntity.ok(ApiResponse.success("上传已取消", null));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
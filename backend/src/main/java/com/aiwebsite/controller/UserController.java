@@ -4,13 +4,20 @@ import com.aiwebsite.dto.ApiResponse;
 import com.aiwebsite.dto.UserDto;
 import com.aiwebsite.dto.UserUpdateDto;
 import com.aiwebsite.entity.User;
+import com.aiwebsite.security.UserPrincipal;
+import com.aiwebsite.service.PointsBalanceCache;
 import com.aiwebsite.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import jakarta.validation.Valid;
+import java.time.Duration;
 
 @RestController
 @RequestMapping("/api/user")
@@ -19,12 +26,20 @@ import jakarta.validation.Valid;
 public class UserController {
     
     private final UserService userService;
+    private final PointsBalanceCache pointsBalanceCache;
+    
+    // 空闲连接的心跳间隔，防止代理因长时间无数据断开
+    @Value("${ai.balance.push-heartbeat-seconds:25}")
+    private long heartbeatSeconds;
+    
+    // 单个连接的最长时间，需小于spring.mvc.async.request-timeout
+    @Value("${ai.balance.push-max-connection-seconds:100}")
+    private long maxConnectionSeconds;
     
     @GetMapping("/profile")
-    public ResponseEntity<ApiResponse<User>> getProfile() {
+    public ResponseEntity<ApiResponse<User>> getProfile(@AuthenticationPrincipal UserPrincipal principal) {
         try {
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userService.findByUsername(username).orElseThrow();
+            User user = userService.findById(principal.getId()).orElseThrow();
             return ResponseEntity.ok(ApiResponse.success(user));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
@@ -32,12 +47,10 @@ public class UserController {
     }
     
     @PutMapping("/profile")
-    public ResponseEntity<ApiResponse<User>> updateProfile(@Valid @RequestBody UserUpdateDto userUpdateDto) {
+    public ResponseEntity<ApiResponse<User>> updateProfile(@Valid @RequestBody UserUpdateDto userUpdateDto,
+                                                           @AuthenticationPrincipal UserPrincipal principal) {
         try {
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User currentUser = userService.findByUsername(username).orElseThrow();
-            
-            User updatedUser = userService.updateUser(currentUser.getId(), userUpdateDto);
+            User updatedUser = userService.updateUser(principal.getId(), userUpdateDto);
             return ResponseEntity.ok(ApiResponse.success("更新成功", updatedUser));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
@@ -45,14 +58,27 @@ public class UserController {
     }
     
     @GetMapping("/points")
-    public ResponseEntity<ApiResponse<Integer>> getPoints() {
+    public ResponseEntity<ApiResponse<Integer>> getPoints(@AuthenticationPrincipal UserPrincipal principal) {
         try {
-            String username = SecurityContextHolder.getContext().getAuthentication().getName();
-            User user = userService.findByUsername(username).orElseThrow();
-            Integer points = userService.getPoints(user.getId());
+            Integer points = pointsBalanceCache.getBalance(principal.getId());
             return ResponseEntity.ok(ApiResponse.success(points));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
+    
+    /**
+     * 以SSE推送积分余额：连接后立即推送当前余额，之后每次变化推送balance事件；
+     * 连接到达最长时间后正常结束，客户端重新连接即可
+     */
+    @GetMapping(value = "/points/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> pointsEvents(@AuthenticationPrincipal UserPrincipal principal) {
+        Flux<ServerSentEvent<Object>> balances = pointsBalanceCache.watch(principal.getId())
+                .map(points -> ServerSentEvent.<Object>builder(points).event("balance").build());
+        Flux<ServerSentEvent<Object>> heartbeats = Flux.interval(Duration.ofSeconds(heartbeatSeconds))
+                .map(tick -> ServerSentEvent.<Object>builder().comment("heartbeat").build());
+        return Flux.merge(balances, heartbeats)
+                .take(Duration.ofSeconds(maxConnectionSeconds))
+                .onErrorResume(e -> Flux.just(ServerSentEvent.<Object>builder(e.getMessage()).event("error").build()));
+    }
 } 
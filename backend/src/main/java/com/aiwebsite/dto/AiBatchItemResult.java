@@ -0,0 +1,28 @@
+package com.aiwebsite.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 批量AI请求中单项的处理结果，index为该项在请求inputs中的位置
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AiBatchItemResult {
+    
+    private int index;
+    private boolean success;
+    private String output;
+    private String error;
+    private int pointsConsumed;
+    
+    public static AiBatchItemResult success(int index, String output, int pointsConsumed) {
+        return new AiBatchItemResult(index, true, output, null, pointsConsumed);
+    }
+    
+    public static AiBatchItemResult failure(int index, String error) {
+        return new AiBatchItemResult(index, false, null, error, 0);
+    }
+}
@@ -0,0 +1,16 @@
+package com.aiwebsite.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 批量AI请求，inputs中每一项按单次请求的input处理
+ */
+@Data
+@NoArgsConstructor
+public class AiBatchRequest {
+    
+    private List<String> inputs;
+}
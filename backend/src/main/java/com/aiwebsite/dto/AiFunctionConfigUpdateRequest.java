@@ -0,0 +1,22 @@
+package com.aiwebsite.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 修改AI功能配置，未提供的字段保持不变
+ */
+@Data
+@NoArgsConstructor
+public class AiFunctionConfigUpdateRequest {
+    
+    private String displayName;
+    
+    private String description;
+    
+    private Integer points;
+    
+    private Boolean enabled;
+    
+    private Long cacheTtlSeconds;
+}
@@ -0,0 +1,22 @@
+package com.aiwebsite.dto;
+
+import com.aiwebsite.entity.AiUsage;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI使用历史条目，不含输入、输出等大字段
+ */
+@Data
+@NoArgsConstructor
+public class AiUsageHistoryItem {
+    
+    private Long id;
+    private String functionName;
+    private Integer pointsConsumed;
+    private Long executionTimeMs;
+    private AiUsage.Status status;
+    private LocalDateTime createdAt;
+}
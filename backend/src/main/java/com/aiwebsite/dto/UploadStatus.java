@@ -0,0 +1,32 @@
+package com.aiwebsite.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * 分块上传状态，客户端据missingChunks续传
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UploadStatus {
+    
+    private String uploadId;
+    
+    private String fileName;
+    
+    private long totalSize;
+    
+    private long chunkSize;
+    
+    private int totalChunks;
+    
+    private int receivedChunks;
+    
+    private List<Integer> missingChunks;
+    
+    private boolean complete;
+}
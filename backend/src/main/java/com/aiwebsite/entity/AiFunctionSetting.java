@@ -0,0 +1,44 @@
+package com.aiwebsite.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI功能配置记录
+ * 运行时以数据库中的配置为准，缺失的功能在启动时按默认值补齐；每次修改version加1，供各实例轮询热加载
+ */
+@TableName("ai_function_configs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AiFunctionSetting {
+    
+    @TableId(type = IdType.INPUT)
+    private String name;
+    
+    @TableField("display_name")
+    private String displayName;
+    
+    private String description;
+    
+    private String category;
+    
+    private Integer points;
+    
+    private Boolean enabled;
+    
+    @TableField("cache_ttl_seconds")
+    private Long cacheTtlSeconds;
+    
+    private Integer version;
+    
+    @TableField(value = "created_at", fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+    
+    @TableField(value = "updated_at", fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+}
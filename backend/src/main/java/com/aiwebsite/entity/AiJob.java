@@ -0,0 +1,78 @@
+package com.aiwebsite.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * AI异步任务
+ * 长耗时功能提交后先预留积分并入队，工作线程执行完成后确认或释放预留
+ */
+@TableName("ai_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AiJob {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    @TableField("user_id")
+    private Long userId;
+    
+    @TableField("function_name")
+    private String functionName;
+    
+    @JsonIgnore
+    @TableField("input_data")
+    private String inputData;
+    
+    @TableField("output_data")
+    private String outputData;
+    
+    private Status status = Status.QUEUED;
+    
+    private Integer progress = 0;
+    
+    @TableField("error_message")
+    private String errorMessage;
+    
+    private Integer points;
+    
+    @JsonIgnore
+    @TableField("reservation_id")
+    private Long reservationId;
+    
+    private Integer attempts = 0;
+    
+    @TableField(value = "created_at", fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+    
+    @TableField("started_at")
+    private LocalDateTime startedAt;
+    
+    @TableField("finished_at")
+    private LocalDateTime finishedAt;
+    
+    @JsonIgnore
+    @TableField("heartbeat_at")
+    private LocalDateTime heartbeatAt;
+    
+    @TableField(value = "updated_at", fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+    
+    public enum Status {
+        QUEUED,      // 排队中
+        RUNNING,     // 执行中
+        SUCCEEDED,   // 已成功
+        FAILED;      // 已失败
+        
+        public boolean isTerminal() {
+            return this == SUCCEEDED || this == FAILED;
+        }
+    }
+}
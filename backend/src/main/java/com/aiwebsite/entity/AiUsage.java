@@ -42,7 +42,10 @@ public class AiUsage {
     @TableField(value = "created_at", fill = FieldFill.INSERT)
     private LocalDateTime createdAt;
     
+    /**
+     * PROCESSING不再写入：调用结束后才记录使用，异步任务的进度记录在ai_jobs中；保留该值以兼容历史数据
+     */
     public enum Status {
-        SUCCESS, FAILED, PROCESSING
+        SUCCESS, FAILED, PROCESSING, CACHE_HIT
     }
 } 
\ No newline at end of file
@@ -0,0 +1,28 @@
+package com.aiwebsite.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * AI使用日汇总，按用户、功能、日期累计调用次数、消耗积分与执行耗时
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AiUsageDaily {
+    
+    private Long userId;
+    
+    private String functionName;
+    
+    private LocalDate usageDate;
+    
+    private Long usageCount;
+    
+    private Long pointsConsumed;
+    
+    private Long executionTimeMs;
+}
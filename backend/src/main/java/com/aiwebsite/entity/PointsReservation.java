@@ -0,0 +1,47 @@
+package com.aiwebsite.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 积分预留记录
+ * AI调用前先预留积分，调用结束后确认或释放，过期未结算的预留由定时任务自动释放
+ */
+@TableName("points_reservations")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PointsReservation {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    @TableField("user_id")
+    private Long userId;
+    
+    @TableField("function_name")
+    private String functionName;
+    
+    private Integer amount;
+    
+    private Status status = Status.RESERVED;
+    
+    @TableField("expires_at")
+    private LocalDateTime expiresAt;
+    
+    @TableField(value = "created_at", fill = FieldFill.INSERT)
+    private LocalDateTime createdAt;
+    
+    @TableField(value = "updated_at", fill = FieldFill.INSERT_UPDATE)
+    private LocalDateTime updatedAt;
+    
+    public enum Status {
+        RESERVED,    // 已预留
+        CONFIRMED,   // 已确认扣除
+        RELEASED     // 已释放退还
+    }
+}
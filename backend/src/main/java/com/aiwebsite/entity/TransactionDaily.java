@@ -0,0 +1,26 @@
+package com.aiwebsite.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * 积分流水日汇总，按用户、交易类型、日期累计笔数与金额
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionDaily {
+    
+    private Long userId;
+    
+    private Transaction.TransactionType type;
+    
+    private LocalDate transactionDate;
+    
+    private Long transactionCount;
+    
+    private Long totalAmount;
+}
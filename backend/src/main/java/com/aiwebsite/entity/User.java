@@ -33,7 +33,9 @@ public class User implements UserDetails {
     @TableField("phone_number")
     private String phoneNumber;
     
-    private Integer points = 100; // 新用户默认100积分
+    // 新用户默认100积分；updateById不写该列，余额只能经由UserMapper的原子增减修改
+    @TableField(updateStrategy = FieldStrategy.NEVER)
+    private Integer points = 100;
     
     @TableField("avatar_url")
     private String avatarUrl;
@@ -0,0 +1,30 @@
+package com.aiwebsite.mapper;
+
+import com.aiwebsite.entity.AiFunctionSetting;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+@Mapper
+public interface AiFunctionSettingMapper extends BaseMapper<AiFunctionSetting> {
+    
+    /**
+     * 配置版本：记录数与各行version之和，任何一行修改、新增都会改变该值
+     */
+    @Select("SELECT CONCAT(COUNT(*), ':', COALESCE(SUM(version), 0)) FROM ai_function_configs")
+    String selectConfigVersion();
+    
+    /**
+     * 只更新非空字段，同时递增version
+     */
+    @Update("<script>UPDATE ai_function_configs <set>" +
+            "<if test='displayName != null'>display_name = #{displayName}, </if>" +
+            "<if test='description != null'>description = #{description}, </if>" +
+            "<if test='points != null'>points = #{points}, </if>" +
+            "<if test='enabled != null'>enabled = #{enabled}, </if>" +
+            "<if test='cacheTtlSeconds != null'>cache_ttl_seconds = #{cacheTtlSeconds}, </if>" +
+            "version = version + 1, updated_at = NOW()" +
+            "</set> WHERE name = #{name}</script>")
+    int updateSetting(AiFunctionSetting setting);
+}
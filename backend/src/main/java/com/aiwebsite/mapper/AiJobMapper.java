@@ -0,0 +1,82 @@
+package com.aiwebsite.mapper;
+
+import com.aiwebsite.entity.AiJob;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 异步任务表
+ * 状态迁移都带有前置状态条件，多个节点同时调度时同一任务只会被一方认领或结算
+ */
+@Mapper
+public interface AiJobMapper extends BaseMapper<AiJob> {
+    
+    @Select("SELECT id FROM ai_jobs WHERE status = 'QUEUED' ORDER BY id LIMIT #{limit}")
+    List<Long> findQueuedIds(@Param("limit") int limit);
+    
+    /**
+     * 认领排队中的任务，返回1表示认领成功
+     */
+    @Update("UPDATE ai_jobs SET status = 'RUNNING', attempts = attempts + 1, started_at = NOW(), " +
+            "heartbeat_at = NOW(), updated_at = NOW() WHERE id = #{id} AND status = 'QUEUED'")
+    int claim(@Param("id") Long id);
+    
+    /**
+     * 并行子任务上报的进度可能乱序到达，只允许进度增加
+     */
+    @Update("UPDATE ai_jobs SET progress = GREATEST(progress, #{progress}), heartbeat_at = NOW(), updated_at = NOW() " +
+            "WHERE id = #{id} AND status = 'RUNNING'")
+    int updateProgress(@Param("id") Long id, @Param("progress") int progress);
+    
+    @Update("<script>" +
+            "UPDATE ai_jobs SET heartbeat_at = NOW() WHERE status = 'RUNNING' AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int heartbeat(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * 将执行中的任务标记为成功，返回1表示由本次调用完成结算
+     */
+    @Update("UPDATE ai_jobs SET status = 'SUCCEEDED', progress = 100, output_data = #{output}, " +
+            "finished_at = NOW(), updated_at = NOW() WHERE id = #{id} AND status = 'RUNNING'")
+    int succeed(@Param("id") Long id, @Param("output") String output);
+    
+    /**
+     * 将执行中的任务标记为失败，返回1表示由本次调用完成结算
+     */
+    @Update("UPDATE ai_jobs SET status = 'FAILED', error_message = #{error}, finished_at = NOW(), updated_at = NOW() " +
+            "WHERE id = #{id} AND status = 'RUNNING'")
+    int fail(@Param("id") Long id, @Param("error") String error);
+    
+    /**
+     * 心跳早于before的执行中任务，执行它的节点已崩溃或重启
+     */
+    @Select("SELECT id, user_id, function_name, status, points, reservation_id, attempts FROM ai_jobs " +
+            "WHERE status = 'RUNNING' AND heartbeat_at < #{before} ORDER BY id LIMIT #{limit}")
+    List<AiJob> findStale(@Param("before") LocalDateTime before, @Param("limit") int limit);
+    
+    @Update("UPDATE ai_jobs SET status = 'QUEUED', progress = 0, updated_at = NOW() " +
+            "WHERE id = #{id} AND status = 'RUNNING' AND heartbeat_at < #{before}")
+    int requeueStale(@Param("id") Long id, @Param("before") LocalDateTime before);
+    
+    @Update("UPDATE ai_jobs SET status = 'FAILED', error_message = #{error}, finished_at = NOW(), updated_at = NOW() " +
+            "WHERE id = #{id} AND status = 'RUNNING' AND heartbeat_at < #{before}")
+    int failStale(@Param("id") Long id, @Param("before") LocalDateTime before, @Param("error") String error);
+    
+    @Select("SELECT COUNT(*) FROM ai_jobs WHERE user_id = #{userId} AND status IN ('QUEUED', 'RUNNING')")
+    int countActiveByUserId(@Param("userId") Long userId);
+    
+    /**
+     * 查询任务状态，不读取可能很大的输入内容
+     */
+    @Select("SELECT id, user_id, function_name, output_data, status, progress, error_message, points, attempts, " +
+            "created_at, started_at, finished_at, updated_at FROM ai_jobs WHERE id = #{id}")
+    AiJob findStatusById(@Param("id") Long id);
+}
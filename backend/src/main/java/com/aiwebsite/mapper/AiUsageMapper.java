@@ -1,32 +1,50 @@
 package com.aiwebsite.mapper;
 
+import com.aiwebsite.dto.AiUsageHistoryItem;
 import com.aiwebsite.entity.AiUsage;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 
 @Mapper
 public interface AiUsageMapper extends BaseMapper<AiUsage> {
     
+    /**
+     * 多行INSERT批量写入审计记录
+     */
+    @Insert("<script>" +
+            "INSERT INTO ai_usage (user_id, function_name, input_data, output_data, points_consumed, " +
+            "execution_time_ms, status, error_message, created_at) VALUES " +
+            "<foreach collection='list' item='u' separator=','>" +
+            "(#{u.userId}, #{u.functionName}, #{u.inputData}, #{u.outputData}, #{u.pointsConsumed}, " +
+            "#{u.executionTimeMs}, #{u.status}, #{u.errorMessage}, #{u.createdAt})" +
+            "</foreach>" +
+            "</script>")
+    int insertBatch(@Param("list") List<AiUsage> usages);
+    
     @Select("SELECT * FROM ai_usage WHERE user_id = #{userId} ORDER BY created_at DESC")
     IPage<AiUsage> findByUserIdOrderByCreatedAtDesc(Page<AiUsage> page, @Param("userId") Long userId);
     
-    @Select("SELECT COUNT(*) FROM ai_usage WHERE user_id = #{userId} AND function_name = #{functionName}")
-    Long countByUserIdAndFunctionName(@Param("userId") Long userId, @Param("functionName") String functionName);
-    
-    @Select("SELECT SUM(points_consumed) FROM ai_usage WHERE user_id = #{userId} AND created_at BETWEEN #{startDate} AND #{endDate}")
-    Integer sumPointsConsumedByUserIdAndDateRange(@Param("userId") Long userId, 
-                                                 @Param("startDate") LocalDateTime startDate, 
-                                                 @Param("endDate") LocalDateTime endDate);
-    
-    @Select("SELECT function_name, COUNT(*) as usageCount, SUM(points_consumed) as totalPoints " +
-            "FROM ai_usage WHERE user_id = #{userId} GROUP BY function_name ORDER BY usageCount DESC")
-    List<Map<String, Object>> getUsageStatisticsByUserId(@Param("userId") Long userId);
+    /**
+     * 按(created_at, id)倒序的游标分页，只查询摘要列，不读取输入输出大字段
+     */
+    @Select("<script>" +
+            "SELECT id, function_name, points_consumed, execution_time_ms, status, created_at " +
+            "FROM ai_usage WHERE user_id = #{userId} " +
+            "<if test='cursorCreatedAt != null'>" +
+            "AND created_at &lt;= #{cursorCreatedAt} AND (created_at &lt; #{cursorCreatedAt} OR id &lt; #{cursorId}) " +
+            "</if>" +
+            "ORDER BY created_at DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<AiUsageHistoryItem> findHistoryPageByUserId(@Param("userId") Long userId, 
+                                                     @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt, 
+                                                     @Param("cursorId") Long cursorId, 
+                                                     @Param("limit") int limit);
 } 
\ No newline at end of file
@@ -0,0 +1,52 @@
+package com.aiwebsite.mapper;
+
+import com.aiwebsite.entity.PointsReservation;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface PointsReservationMapper extends BaseMapper<PointsReservation> {
+    
+    /**
+     * 仅当预留仍处于RESERVED状态时才迁移状态，保证确认与释放只有一方生效
+     */
+    @Update("UPDATE points_reservations SET status = #{status}, updated_at = NOW() " +
+            "WHERE id = #{id} AND status = 'RESERVED'")
+    int settle(@Param("id") Long id, @Param("status") String status);
+    
+    /**
+     * 仅当预留仍未结算且已过期时才释放，避免清理任务释放刚被心跳延长的预留
+     */
+    @Update("UPDATE points_reservations SET status = 'RELEASED', updated_at = NOW() " +
+            "WHERE id = #{id} AND status = 'RESERVED' AND expires_at < #{now}")
+    int releaseExpired(@Param("id") Long id, @Param("now") LocalDateTime now);
+    
+    /**
+     * 延长仍未结算的预留的有效期，供执行中的同步调用续期
+     */
+    @Update("<script>" +
+            "UPDATE points_reservations SET expires_at = #{expiresAt}, updated_at = NOW() " +
+            "WHERE status = 'RESERVED' AND id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int extend(@Param("ids") Collection<Long> ids, @Param("expiresAt") LocalDateTime expiresAt);
+    
+    /**
+     * 延长排队中与执行中异步任务的预留，任务结束或回收退款之前预留不会被清理任务释放
+     */
+    @Update("UPDATE points_reservations SET expires_at = #{expiresAt}, updated_at = NOW() " +
+            "WHERE status = 'RESERVED' AND id IN " +
+            "(SELECT reservation_id FROM ai_jobs WHERE status IN ('QUEUED', 'RUNNING'))")
+    int extendForActiveJobs(@Param("expiresAt") LocalDateTime expiresAt);
+    
+    @Select("SELECT * FROM points_reservations WHERE status = 'RESERVED' AND expires_at < #{now} " +
+            "ORDER BY expires_at LIMIT #{limit}")
+    List<PointsReservation> findExpired(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
@@ -17,8 +17,21 @@ public interface TransactionMapper extends BaseMapper<Transaction> {
     @Select("SELECT * FROM transactions WHERE user_id = #{userId} ORDER BY created_at DESC")
     IPage<Transaction> findByUserIdOrderByCreatedAtDesc(Page<Transaction> page, @Param("userId") Long userId);
     
-    @Select("SELECT SUM(amount) FROM transactions WHERE user_id = #{userId} AND type = #{type}")
-    Integer sumAmountByUserIdAndType(@Param("userId") Long userId, @Param("type") String type);
+    /**
+     * 按(created_at, id)倒序的游标分页，命中索引idx_transactions_user_created，翻页深度不影响耗时
+     */
+    @Select("<script>" +
+            "SELECT id, user_id, type, amount, balance_after, description, ai_function, created_at " +
+            "FROM transactions WHERE user_id = #{userId} " +
+            "<if test='cursorCreatedAt != null'>" +
+            "AND created_at &lt;= #{cursorCreatedAt} AND (created_at &lt; #{cursorCreatedAt} OR id &lt; #{cursorId}) " +
+            "</if>" +
+            "ORDER BY created_at DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<Transaction> findPageByUserId(@Param("userId") Long userId, 
+                                       @Param("cursorCreatedAt") LocalDateTime cursorCreatedAt, 
+                                       @Param("cursorId") Long cursorId, 
+                                       @Param("limit") int limit);
     
     @Select("SELECT * FROM transactions WHERE user_id = #{userId} AND created_at BETWEEN #{startDate} AND #{endDate} ORDER BY created_at DESC")
     List<Transaction> findByUserIdAndDateRange(@Param("userId") Long userId, 
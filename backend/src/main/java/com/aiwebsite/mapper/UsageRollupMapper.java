@@ -0,0 +1,103 @@
+package com.aiwebsite.mapper;
+
+import com.aiwebsite.entity.AiUsageDaily;
+import com.aiwebsite.entity.TransactionDaily;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 使用量日汇总表
+ * ai_usage_daily与transaction_daily随原始记录写入增量累加，统计查询只读汇总表，
+ * 扫描行数只与用户的功能数、天数有关，与原始记录量无关
+ */
+@Mapper
+public interface UsageRollupMapper {
+    
+    /**
+     * 累加AI使用日汇总，调用方需按主键排序传入，避免并发写入时互相死锁
+     */
+    @Insert("<script>" +
+            "INSERT INTO ai_usage_daily (user_id, function_name, usage_date, usage_count, points_consumed, " +
+            "execution_time_ms, updated_at) VALUES " +
+            "<foreach collection='list' item='d' separator=','>" +
+            "(#{d.userId}, #{d.functionName}, #{d.usageDate}, #{d.usageCount}, #{d.pointsConsumed}, " +
+            "#{d.executionTimeMs}, NOW())" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE usage_count = usage_count + VALUES(usage_count), " +
+            "points_consumed = points_consumed + VALUES(points_consumed), " +
+            "execution_time_ms = execution_time_ms + VALUES(execution_time_ms), updated_at = NOW()" +
+            "</script>")
+    int upsertUsageDaily(@Param("list") List<AiUsageDaily> deltas);
+    
+    /**
+     * 累加积分流水日汇总
+     */
+    @Insert("INSERT INTO transaction_daily (user_id, type, transaction_date, transaction_count, total_amount, updated_at) " +
+            "VALUES (#{d.userId}, #{d.type}, #{d.transactionDate}, #{d.transactionCount}, #{d.totalAmount}, NOW()) " +
+            "ON DUPLICATE KEY UPDATE transaction_count = transaction_count + VALUES(transaction_count), " +
+            "total_amount = total_amount + VALUES(total_amount), updated_at = NOW()")
+    int upsertTransactionDaily(@Param("d") TransactionDaily delta);
+    
+    @Select("SELECT function_name, SUM(usage_count) as usageCount, SUM(points_consumed) as totalPoints " +
+            "FROM ai_usage_daily WHERE user_id = #{userId} GROUP BY function_name ORDER BY usageCount DESC")
+    List<Map<String, Object>> getUsageStatisticsByUserId(@Param("userId") Long userId);
+    
+    /**
+     * 统计日期区间内（含首尾两天）消耗的积分
+     */
+    @Select("SELECT SUM(points_consumed) FROM ai_usage_daily " +
+            "WHERE user_id = #{userId} AND usage_date BETWEEN #{startDate} AND #{endDate}")
+    Integer sumPointsConsumedByUserIdAndDateRange(@Param("userId") Long userId,
+                                                 @Param("startDate") LocalDate startDate,
+                                                 @Param("endDate") LocalDate endDate);
+    
+    @Select("SELECT SUM(usage_count) FROM ai_usage_daily WHERE user_id = #{userId} AND function_name = #{functionName}")
+    Long countByUserIdAndFunctionName(@Param("userId") Long userId, @Param("functionName") String functionName);
+    
+    @Select("SELECT SUM(total_amount) FROM transaction_daily WHERE user_id = #{userId} AND type = #{type}")
+    Integer sumAmountByUserIdAndType(@Param("userId") Long userId, @Param("type") String type);
+    
+    @Select("SELECT MIN(created_at) FROM ai_usage")
+    LocalDateTime findEarliestUsageTime();
+    
+    @Select("SELECT MIN(created_at) FROM transactions")
+    LocalDateTime findEarliestTransactionTime();
+    
+    @Delete("DELETE FROM ai_usage_daily WHERE usage_date = #{day}")
+    int deleteUsageDaily(@Param("day") LocalDate day);
+    
+    /**
+     * 按原始记录重算某一天的AI使用汇总，start/end为当天零点与次日零点
+     */
+    @Insert("INSERT INTO ai_usage_daily (user_id, function_name, usage_date, usage_count, points_consumed, " +
+            "execution_time_ms, updated_at) " +
+            "SELECT user_id, function_name, #{day}, COUNT(*), COALESCE(SUM(points_consumed), 0), " +
+            "COALESCE(SUM(execution_time_ms), 0), NOW() " +
+            "FROM ai_usage WHERE created_at >= #{start} AND created_at < #{end} " +
+            "GROUP BY user_id, function_name")
+    int rebuildUsageDaily(@Param("day") LocalDate day,
+                          @Param("start") LocalDateTime start,
+                          @Param("end") LocalDateTime end);
+    
+    @Delete("DELETE FROM transaction_daily WHERE transaction_date = #{day}")
+    int deleteTransactionDaily(@Param("day") LocalDate day);
+    
+    /**
+     * 按原始记录重算某一天的积分流水汇总
+     */
+    @Insert("INSERT INTO transaction_daily (user_id, type, transaction_date, transaction_count, total_amount, updated_at) " +
+            "SELECT user_id, type, #{day}, COUNT(*), COALESCE(SUM(amount), 0), NOW() " +
+            "FROM transactions WHERE created_at >= #{start} AND created_at < #{end} " +
+            "GROUP BY user_id, type")
+    int rebuildTransactionDaily(@Param("day") LocalDate day,
+                                @Param("start") LocalDateTime start,
+                                @Param("end") LocalDateTime end);
+}
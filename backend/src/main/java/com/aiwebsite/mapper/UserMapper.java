@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
 
 import java.util.Optional;
 
@@ -25,4 +26,19 @@ public interface UserMapper extends BaseMapper<User> {
     
     @Select("SELECT points FROM users WHERE id = #{userId}")
     Optional<Integer> findPointsByUserId(@Param("userId") Long userId);
+    
+    /**
+     * 原子扣除积分，余额不足时不更新任何行
+     * @return 受影响行数，0表示用户不存在或积分不足
+     */
+    @Update("UPDATE users SET points = points - #{points}, updated_at = NOW() " +
+            "WHERE id = #{userId} AND points >= #{points}")
+    int deductPoints(@Param("userId") Long userId, @Param("points") int points);
+    
+    /**
+     * 原子增加积分
+     * @return 受影响行数，0表示用户不存在
+     */
+    @Update("UPDATE users SET points = points + #{points}, updated_at = NOW() WHERE id = #{userId}")
+    int addPoints(@Param("userId") Long userId, @Param("points") int points);
 } 
\ No newline at end of file
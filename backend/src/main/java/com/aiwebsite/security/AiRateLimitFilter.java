@@ -0,0 +1,146 @@
+package com.aiwebsite.security;
+
+import com.aiwebsite.dto.ApiResponse;
+import com.aiwebsite.exception.RateLimitExceededException;
+import com.aiwebsite.service.AiFunctionConfigService;
+import com.aiwebsite.service.AiRequestLimiter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * AI功能请求限流过滤器
+ * 在请求体解析和业务处理之前申请限流许可，超限时直接返回429及Retry-After；
+ * 流式响应在异步处理结束后才归还许可；异步任务提交与批量请求同样按功能申请许可，
+ * 批量请求在这里只占一个并发名额，令牌由AiService按项数扣除
+ */
+@RequiredArgsConstructor
+public class AiRateLimitFilter extends OncePerRequestFilter {
+    
+    private static final String AI_PATH_PREFIX = "/api/ai/";
+    private static final String STREAM_SUFFIX = "/stream";
+    private static final String BATCH_SUFFIX = "/batch";
+    private static final String JOBS_PREFIX = "jobs/";
+    private static final String CONVERSATIONS_PREFIX = "chat/conversations/";
+    private static final String MESSAGES_SEGMENT = "/messages";
+    
+    private final AiRequestLimiter limiter;
+    private final AiFunctionConfigService configService;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || resolveFunctionName(request) == null;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                  HttpServletResponse response,
+                                  FilterChain filterChain) throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !(authentication.getPrincipal() instanceof UserPrincipal principal)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        
+        AiRequestLimiter.Permit permit;
+        try {
+            String functionName = resolveFunctionName(request);
+            // 批量请求的令牌在解析出项数后按项数扣除，这里只占并发名额
+            permit = isBatch(request)
+                    ? limiter.acquireForBatch(principal.getId(), functionName)
+                    : limiter.acquire(principal.getId(), functionName);
+        } catch (RateLimitExceededException e) {
+            writeTooManyRequests(response, e);
+            return;
+        }
+        
+        boolean async = false;
+        try {
+            filterChain.doFilter(request, response);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new PermitReleasingListener(permit));
+                async = true;
+            }
+        } finally {
+            if (!async) {
+                permit.close();
+            }
+        }
+    }
+    
+    /**
+     * 从请求路径解析功能名，非AI功能请求返回null
+     */
+    private String resolveFunctionName(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        if (!path.startsWith(AI_PATH_PREFIX)) {
+            return null;
+        }
+        String functionName = path.substring(AI_PATH_PREFIX.length());
+        // 会话中发送消息按聊天功能限流，创建、删除会话不限流
+        if (functionName.startsWith(CONVERSATIONS_PREFIX)) {
+            return functionName.contains(MESSAGES_SEGMENT) ? "chat" : null;
+        }
+        if (functionName.startsWith(JOBS_PREFIX)) {
+            functionName = functionName.substring(JOBS_PREFIX.length());
+        }
+        if (functionName.endsWith(STREAM_SUFFIX)) {
+            functionName = functionName.substring(0, functionName.length() - STREAM_SUFFIX.length());
+        } else if (functionName.endsWith(BATCH_SUFFIX)) {
+            functionName = functionName.substring(0, functionName.length() - BATCH_SUFFIX.length());
+        }
+        return configService.isKnownFunction(functionName) ? functionName : null;
+    }
+    
+    private boolean isBatch(HttpServletRequest request) {
+        return request.getRequestURI().endsWith(BATCH_SUFFIX);
+    }
+    
+    private void writeTooManyRequests(HttpServletResponse response, RateLimitExceededException e) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(objectMapper.writeValueAsString(ApiResponse.error(e.getMessage())));
+    }
+    
+    /**
+     * 异步请求完成、超时或出错时归还许可
+     */
+    private record PermitReleasingListener(AiRequestLimiter.Permit permit) implements AsyncListener {
+        
+        @Override
+        public void onComplete(AsyncEvent event) {
+            permit.close();
+        }
+        
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            permit.close();
+        }
+        
+        @Override
+        public void onError(AsyncEvent event) {
+            permit.close();
+        }
+        
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -1,5 +1,8 @@
 package com.aiwebsite.security;
 
+import com.aiwebsite.entity.User;
+import com.aiwebsite.service.AiMetrics;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,7 +10,6 @@ import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.util.StringUtils;
@@ -20,6 +22,8 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     
     private final JwtTokenProvider tokenProvider;
     private final UserDetailsService userDetailsService;
+    private final VerifiedTokenCache tokenCache;
+    private final AiMetrics aiMetrics;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, 
@@ -28,12 +32,17 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         try {
             String jwt = getJwtFromRequest(request);
             
-            if (StringUtils.hasText(jwt) && tokenProvider.validateToken(jwt)) {
-                String username = tokenProvider.getUsernameFromToken(jwt);
-                UserDetails userDetails = userDetailsService.loadUserByUsername(username);
-                
+            UserPrincipal principal = null;
+            if (StringUtils.hasText(jwt)) {
+                long start = System.nanoTime();
+                principal = resolvePrincipal(jwt);
+                aiMetrics.recordStage(AiMetrics.STAGE_AUTH, AiMetrics.NONE, AiMetrics.NONE, 
+                        principal != null ? AiMetrics.OUTCOME_SUCCESS : AiMetrics.OUTCOME_FAILURE, System.nanoTime() - start);
+            }
+            
+            if (principal != null) {
                 UsernamePasswordAuthenticationToken authentication = 
-                    new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
+                    new UsernamePasswordAuthenticationToken(principal, null, principal.getAuthorities());
                 authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 
                 SecurityContextHolder.getContext().setAuthentication(authentication);
@@ -45,6 +54,27 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
     
+    /**
+     * 解析令牌对应的用户主体，优先使用已验证令牌缓存，未命中时验签一次并从声明构建主体，
+     * 仅缺少用户ID声明的旧令牌才会查询数据库
+     */
+    private UserPrincipal resolvePrincipal(String jwt) {
+        UserPrincipal cached = tokenCache.get(jwt);
+        if (cached != null) {
+            return cached;
+        }
+        
+        Claims claims = tokenProvider.parseToken(jwt).orElse(null);
+        if (claims == null) {
+            return null;
+        }
+        
+        UserPrincipal principal = tokenProvider.getPrincipalFromClaims(claims)
+                .orElseGet(() -> UserPrincipal.from((User) userDetailsService.loadUserByUsername(claims.getSubject())));
+        tokenCache.put(jwt, principal, claims.getExpiration().getTime());
+        return principal;
+    }
+    
     private String getJwtFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
         if (StringUtils.hasText(bearerToken) && bearerToken.startsWith("Bearer ")) {
@@ -0,0 +1,67 @@
+package com.aiwebsite.security;
+
+import com.aiwebsite.entity.User;
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 轻量认证主体
+ * 只携带用户ID、用户名和角色，由JWT声明直接构建，请求处理过程中无需再按用户名查询用户
+ */
+@Getter
+public class UserPrincipal implements UserDetails {
+    
+    private final Long id;
+    private final String username;
+    private final User.Role role;
+    private final List<GrantedAuthority> authorities;
+    
+    public UserPrincipal(Long id, String username, User.Role role) {
+        this.id = id;
+        this.username = username;
+        this.role = role;
+        this.authorities = List.of(new SimpleGrantedAuthority("ROLE_" + role.name()));
+    }
+    
+    /**
+     * 从用户实体构建认证主体
+     */
+    public static UserPrincipal from(User user) {
+        return new UserPrincipal(user.getId(), user.getUsername(), user.getRole());
+    }
+    
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+    
+    @Override
+    public String getPassword() {
+        return null;
+    }
+    
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+    
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+    
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+    
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+}
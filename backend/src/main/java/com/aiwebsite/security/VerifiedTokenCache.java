@@ -0,0 +1,75 @@
+package com.aiwebsite.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 已验证JWT缓存
+ * 令牌 -> 解析出的用户主体，命中时无需再次验签和查询数据库。
+ * 每个条目的存活时间取令牌剩余有效期与最大存活时间的较小值，不会超过令牌的exp
+ */
+@Component
+public class VerifiedTokenCache {
+    
+    private final Cache<String, Entry> cache;
+    private final long maxTtlNanos;
+    
+    public VerifiedTokenCache(@Value("${jwt.cache.max-size:10000}") long maxSize,
+                              @Value("${jwt.cache.max-ttl-seconds:300}") long maxTtlSeconds) {
+        this.maxTtlNanos = TimeUnit.SECONDS.toNanos(maxTtlSeconds);
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String token, Entry entry, long currentTime) {
+                        long untilExp = TimeUnit.MILLISECONDS.toNanos(entry.expiresAtMillis() - System.currentTimeMillis());
+                        return Math.max(0, Math.min(untilExp, maxTtlNanos));
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String token, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(token, entry, currentTime);
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String token, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+    }
+    
+    /**
+     * 获取已验证令牌对应的用户主体，未缓存或已过期时返回null
+     */
+    public UserPrincipal get(String token) {
+        Entry entry = cache.getIfPresent(token);
+        if (entry == null || entry.expiresAtMillis() <= System.currentTimeMillis()) {
+            return null;
+        }
+        return entry.principal();
+    }
+    
+    /**
+     * 缓存验证通过的令牌
+     * @param expiresAtMillis 令牌的exp时间戳
+     */
+    public void put(String token, UserPrincipal principal, long expiresAtMillis) {
+        cache.put(token, new Entry(principal, expiresAtMillis));
+    }
+    
+    /**
+     * 使令牌缓存失效
+     */
+    public void invalidate(String token) {
+        cache.invalidate(token);
+    }
+    
+    private record Entry(UserPrincipal principal, long expiresAtMillis) {
+    }
+}
@@ -4,6 +4,19 @@ import com.aiwebsite.exception.AiFunctionException;
 import com.aiwebsite.service.AiFunctionConfigService.AiFunctionConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * AI处理器抽象基类
@@ -36,11 +49,33 @@ public abstract class AbstractAiProcessor implements AiProcessor {
         }
     }
     
+    @Override
+    public final Flux<String> processStream(String input) {
+        return Flux.defer(() -> {
+            long startTime = System.currentTimeMillis();
+            log.debug("开始流式处理AI功能 [{}]: {}", getFunctionName(), input);
+            
+            return processStreamInternal(input)
+                    .doOnComplete(() -> log.info("AI功能 [{}] 流式处理成功，耗时: {}ms",
+                            getFunctionName(), System.currentTimeMillis() - startTime))
+                    .onErrorMap(e -> !(e instanceof AiFunctionException), e -> {
+                        log.error("AI功能 [{}] 流式处理失败，耗时: {}ms",
+                                getFunctionName(), System.currentTimeMillis() - startTime, e);
+                        return new AiFunctionException(getFunctionName(), "AI功能处理失败: " + e.getMessage(), e);
+                    });
+        });
+    }
+    
     @Override
     public final int getRequiredPoints() {
         return configService.getFunctionConfig(getFunctionName()).getPoints();
     }
     
+    @Override
+    public String getSystemPrompt() {
+        return buildSystemPrompt();
+    }
+    
     @Override
     public boolean validateInput(String input) {
         if (input == null || input.trim().isEmpty()) {
@@ -48,7 +83,7 @@ public abstract class AbstractAiProcessor implements AiProcessor {
         }
         
         // 基本长度限制
-        if (input.length() > 10000) {
+        if (input.length() > getMaxInputLength()) {
             return false;
         }
         
@@ -60,6 +95,13 @@ public abstract class AbstractAiProcessor implements AiProcessor {
      */
     protected abstract String processInternal(String input);
     
+    /**
+     * 子类可以重写此方法提供真正的流式输出，默认一次性返回完整结果，阻塞调用在弹性线程池上执行
+     */
+    protected Flux<String> processStreamInternal(String input) {
+        return callBlocking(() -> processInternal(input)).flux();
+    }
+    
     /**
      * 子类可以重写此方法进行特定的输入验证
      */
@@ -67,6 +109,71 @@ public abstract class AbstractAiProcessor implements AiProcessor {
         return true;
     }
     
+    /**
+     * 输入长度上限，子类可以重写
+     */
+    protected int getMaxInputLength() {
+        return 10000;
+    }
+    
+    /**
+     * 在虚拟线程上并行执行子任务，结果按输入顺序返回
+     * 同时运行的子任务数受permits限制；任一子任务失败时取消其余任务并抛出异常。
+     * 子任务沿用当前调用的上下文，提供商指标仍归属本功能
+     */
+    protected <T, R> List<R> mapInParallel(List<T> items, Semaphore permits, Function<T, R> task) {
+        AiCallContext context = AiCallContext.current();
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<R>> futures = new ArrayList<>(items.size());
+            for (T item : items) {
+                futures.add(executor.submit(() -> {
+                    permits.acquire();
+                    try {
+                        return context != null ? context.callBound(() -> task.apply(item)) : task.apply(item);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            
+            List<R> results = new ArrayList<>(items.size());
+            try {
+                for (Future<R> future : futures) {
+                    results.add(future.get());
+                }
+            } catch (ExecutionException e) {
+                futures.forEach(future -> future.cancel(true));
+                throw new AiFunctionException(getFunctionName(), "子任务处理失败: " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                futures.forEach(future -> future.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new AiFunctionException(getFunctionName(), "处理被中断", e);
+            }
+            return results;
+        }
+    }
+    
+    /**
+     * 在弹性线程池上执行阻塞调用，不占用订阅流的线程；
+     * 调用期间绑定Reactor Context中的调用上下文，提供商指标与实际提供商仍归属本次调用
+     */
+    protected <T> Mono<T> callBlocking(Supplier<T> task) {
+        return Mono.deferContextual(view -> {
+            AiCallContext context = view.getOrDefault(AiCallContext.class, null);
+            return Mono.fromCallable(() -> context != null ? context.callBound(task) : task.get());
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+    
+    /**
+     * 上报处理进度（0-100），仅在异步任务中执行时生效，可在并行子任务中调用
+     */
+    protected void reportProgress(int percent) {
+        AiCallContext context = AiCallContext.current();
+        if (context != null) {
+            context.reportProgress(percent);
+        }
+    }
+    
     /**
      * 获取功能配置
      */
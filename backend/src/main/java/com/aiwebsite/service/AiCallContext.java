@@ -0,0 +1,96 @@
+package com.aiwebsite.service;
+
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * 单次AI功能调用的上下文
+ * 同步调用通过线程变量传递，流式调用通过Reactor Context传递，
+ * 使提供商路由器能按功能打指标标签，并把实际选中的提供商回传给AiService；
+ * 异步任务还通过它接收处理器上报的进度
+ */
+final class AiCallContext implements AutoCloseable {
+    
+    private static final ThreadLocal<AiCallContext> CURRENT = new ThreadLocal<>();
+    
+    private final String functionName;
+    private volatile String provider = AiMetrics.NONE;
+    private volatile IntConsumer progressListener;
+    
+    private AiCallContext(String functionName) {
+        this.functionName = functionName;
+    }
+    
+    /**
+     * 创建上下文并绑定到当前线程，使用完毕后必须关闭
+     */
+    static AiCallContext open(String functionName) {
+        AiCallContext context = new AiCallContext(functionName);
+        CURRENT.set(context);
+        return context;
+    }
+    
+    /**
+     * 创建不绑定线程的上下文，供流式调用写入Reactor Context
+     */
+    static AiCallContext detached(String functionName) {
+        return new AiCallContext(functionName);
+    }
+    
+    /**
+     * 当前线程绑定的上下文，可能为null
+     */
+    static AiCallContext current() {
+        return CURRENT.get();
+    }
+    
+    /**
+     * 在当前线程临时绑定本上下文执行任务，供并行子任务沿用父调用的功能标签
+     */
+    <T> T callBound(Supplier<T> task) {
+        AiCallContext previous = CURRENT.get();
+        CURRENT.set(this);
+        try {
+            return task.get();
+        } finally {
+            if (previous != null) {
+                CURRENT.set(previous);
+            } else {
+                CURRENT.remove();
+            }
+        }
+    }
+    
+    String getFunctionName() {
+        return functionName;
+    }
+    
+    String getProvider() {
+        return provider;
+    }
+    
+    void setProvider(String provider) {
+        this.provider = provider;
+    }
+    
+    void setProgressListener(IntConsumer progressListener) {
+        this.progressListener = progressListener;
+    }
+    
+    /**
+     * 上报处理进度（0-100），未设置监听器时忽略
+     */
+    void reportProgress(int percent) {
+        IntConsumer listener = progressListener;
+        if (listener != null) {
+            listener.accept(Math.max(0, Math.min(100, percent)));
+        }
+    }
+    
+    @Override
+    public void close() {
+        if (CURRENT.get() == this) {
+            CURRENT.remove();
+        }
+    }
+}
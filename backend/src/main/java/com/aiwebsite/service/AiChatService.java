@@ -1,47 +1,34 @@
 package com.aiwebsite.service;
 
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.messages.Message;
 import org.springframework.ai.chat.messages.UserMessage;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
+import java.util.Map;
 
 @Service
 public class AiChatService {
     
-    @Autowired
-    @Qualifier("defaultChatClient")
-    private ChatClient chatClient;
+    /**
+     * 代码生成与文本生成的系统提示词，处理器以它们计算响应缓存键，须与实际发送的提示词一致
+     */
+    public static final String CODE_GENERATION_SYSTEM_PROMPT = "你是一个专业的程序员，请根据用户的需求生成高质量的代码。请只返回代码，不要包含解释。";
+    public static final String TEXT_GENERATION_SYSTEM_PROMPT = "你是一个专业的文本生成助手，请根据用户的需求生成高质量的文本内容。";
     
     @Autowired
-    @Qualifier("openAiChatClient")
-    private ChatClient openAiChatClient;
+    private AiProviderRouter providerRouter;
     
-    @Autowired
-    @Qualifier("ollamaChatClient")
-    private ChatClient ollamaChatClient;
+    @Value("${spring.ai.openai.chat.options.model:}")
+    private String openAiModel;
     
-    @Value("${ai.provider:openai}")
-    private String aiProvider;
-    
-    /**
-     * 获取当前使用的ChatClient
-     */
-    private ChatClient getCurrentChatClient() {
-        switch (aiProvider.toLowerCase()) {
-            case "ollama":
-                return ollamaChatClient;
-            case "openai":
-            default:
-                return openAiChatClient;
-        }
-    }
+    @Value("${spring.ai.ollama.chat.options.model:}")
+    private String ollamaModel;
     
     /**
      * 发送聊天消息
@@ -49,8 +36,21 @@ public class AiChatService {
     public String chat(String message) {
         UserMessage userMessage = new UserMessage(message);
         Prompt prompt = new Prompt(List.of(userMessage));
-        ChatClient.CallResponseSpec response = getCurrentChatClient().prompt(prompt).call();
-        return response.content();
+        return providerRouter.call(prompt);
+    }
+    
+    /**
+     * 发送已组装好的多轮对话提示
+     */
+    public String chat(Prompt prompt) {
+        return providerRouter.call(prompt);
+    }
+    
+    /**
+     * 流式发送已组装好的多轮对话提示
+     */
+    public Flux<String> streamChat(Prompt prompt) {
+        return providerRouter.stream(prompt);
     }
     
     /**
@@ -60,24 +60,52 @@ public class AiChatService {
         Message systemMessage = new org.springframework.ai.chat.messages.SystemMessage(systemPrompt);
         UserMessage userMsg = new UserMessage(userMessage);
         Prompt prompt = new Prompt(List.of(systemMessage, userMsg));
-        ChatClient.CallResponseSpec response = getCurrentChatClient().prompt(prompt).call();
-        return response.content();
+        return providerRouter.call(prompt);
+    }
+    
+    /**
+     * 流式发送聊天消息，按模型返回的token逐段推送
+     */
+    public Flux<String> streamChat(String message) {
+        Prompt prompt = new Prompt(List.of(new UserMessage(message)));
+        return providerRouter.stream(prompt);
+    }
+    
+    /**
+     * 流式发送带系统提示的聊天消息
+     */
+    public Flux<String> streamWithSystemPrompt(String systemPrompt, String userMessage) {
+        Message systemMessage = new org.springframework.ai.chat.messages.SystemMessage(systemPrompt);
+        Prompt prompt = new Prompt(List.of(systemMessage, new UserMessage(userMessage)));
+        return providerRouter.stream(prompt);
     }
     
     /**
      * 代码生成
      */
     public String generateCode(String requirements) {
-        String systemPrompt = "你是一个专业的程序员，请根据用户的需求生成高质量的代码。请只返回代码，不要包含解释。";
-        return chatWithSystemPrompt(systemPrompt, requirements);
+        return chatWithSystemPrompt(CODE_GENERATION_SYSTEM_PROMPT, requirements);
+    }
+    
+    /**
+     * 流式代码生成
+     */
+    public Flux<String> streamCode(String requirements) {
+        return streamWithSystemPrompt(CODE_GENERATION_SYSTEM_PROMPT, requirements);
     }
     
     /**
      * 文本生成
      */
     public String generateText(String prompt) {
-        String systemPrompt = "你是一个专业的文本生成助手，请根据用户的需求生成高质量的文本内容。";
-        return chatWithSystemPrompt(systemPrompt, prompt);
+        return chatWithSystemPrompt(TEXT_GENERATION_SYSTEM_PROMPT, prompt);
+    }
+    
+    /**
+     * 流式文本生成
+     */
+    public Flux<String> streamText(String prompt) {
+        return streamWithSystemPrompt(TEXT_GENERATION_SYSTEM_PROMPT, prompt);
     }
     
     /**
@@ -108,16 +136,49 @@ public class AiChatService {
     }
     
     /**
-     * 获取当前AI提供商
+     * 获取当前首选AI提供商，实际调用由路由器按健康度选择
      */
     public String getCurrentProvider() {
-        return aiProvider;
+        return providerRouter.getPreferredProvider();
     }
     
     /**
-     * 切换AI提供商
+     * 获取首选提供商使用的模型
+     */
+    public String getCurrentModel() {
+        return defaultModelOf(getCurrentProvider());
+    }
+    
+    /**
+     * 获取功能的首选提供商，按模型路由配置，未配置时为全局首选提供商
+     */
+    public String getProviderFor(String functionName) {
+        return providerRouter.getPreferredProvider(functionName);
+    }
+    
+    /**
+     * 获取功能在首选提供商上使用的模型
+     */
+    public String getModelFor(String functionName) {
+        String model = providerRouter.getRoutedModel(functionName);
+        return model != null ? model : defaultModelOf(getProviderFor(functionName));
+    }
+    
+    /**
+     * 切换首选AI提供商
      */
     public void switchProvider(String provider) {
-        this.aiProvider = provider.toLowerCase();
+        providerRouter.setPreferredProvider(provider);
+    }
+    
+    /**
+     * 获取提供商路由状态
+     */
+    public Map<String, Object> getRoutingState() {
+        return providerRouter.getRoutingState();
+    }
+    
+    private String defaultModelOf(String provider) {
+        return "ollama".equals(provider) ? ollamaModel : openAiModel;
     }
 } 
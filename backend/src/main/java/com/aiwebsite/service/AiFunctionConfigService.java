@@ -1,151 +1,308 @@
 package com.aiwebsite.service;
 
+import com.aiwebsite.config.AiCacheProperties;
+import com.aiwebsite.entity.AiFunctionSetting;
+import com.aiwebsite.mapper.AiFunctionSettingMapper;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
 
 /**
  * AI功能配置服务
- * 负责管理AI功能的配置信息，包括积分消耗、描述等
+ * 负责管理AI功能的配置信息，包括积分消耗、描述等。
+ * 配置存放在ai_function_configs表中，缺失的功能在启动时按默认值补齐；
+ * 加载后构建为不可变快照并整体替换，读取方只做一次volatile读，不复制、不加锁。
+ * 修改配置后通过管理接口立即重新加载，其他实例轮询配置版本发现变化后重新加载
  */
 @Slf4j
 @Service
 public class AiFunctionConfigService {
 
-    // AI功能配置映射
-    private final Map<String, AiFunctionConfig> functionConfigs;
+    private final AiFunctionSettingMapper settingMapper;
+
+    // 默认配置，只用于补齐数据库中缺失的功能，以及数据库不可用时的启动兜底
+    private final Map<String, AiFunctionConfig> defaultConfigs;
+
+    private final ReentrantLock reloadLock = new ReentrantLock();
+
+    private volatile Snapshot snapshot;
 
     public AiFunctionConfigService(
+            AiFunctionSettingMapper settingMapper,
             @Value("${ai.functions.chat.points:10}") int chatPoints,
             @Value("${ai.functions.text-generation.points:20}") int textGenPoints,
             @Value("${ai.functions.code-generation.points:40}") int codeGenPoints,
             @Value("${ai.functions.document-summary.points:35}") int docSummaryPoints,
             @Value("${ai.functions.movie-clip.points:50}") int movieClipPoints,
-            @Value("${ai.functions.image-recognition.points:30}") int imageRecPoints
+            @Value("${ai.functions.image-recognition.points:30}") int imageRecPoints,
+            AiCacheProperties cacheProperties
     ) {
-        this.functionConfigs = new HashMap<>();
+        this.settingMapper = settingMapper;
+        this.defaultConfigs = new LinkedHashMap<>();
         initFunctionConfigs(chatPoints, textGenPoints, codeGenPoints, 
-                           docSummaryPoints, movieClipPoints, imageRecPoints);
+                           docSummaryPoints, movieClipPoints, imageRecPoints,
+                           cacheProperties.getTtlSeconds());
+        this.snapshot = Snapshot.of(defaultConfigs.values(), null);
+    }
+
+    /**
+     * 补齐数据库中缺失的功能配置并加载快照；数据库暂时不可用时沿用默认配置，由版本轮询稍后重试
+     */
+    @PostConstruct
+    public void init() {
+        try {
+            seedMissingConfigs();
+            reload();
+        } catch (Exception e) {
+            log.warn("加载AI功能配置失败，暂时使用默认配置", e);
+        }
     }
 
     private void initFunctionConfigs(int chatPoints, int textGenPoints, int codeGenPoints,
-                                   int docSummaryPoints, int movieClipPoints, int imageRecPoints) {
-        functionConfigs.put("chat", AiFunctionConfig.builder()
+                                   int docSummaryPoints, int movieClipPoints, int imageRecPoints,
+                                   Map<String, Long> cacheTtlSeconds) {
+        defaultConfigs.put("chat", AiFunctionConfig.builder()
             .name("chat")
             .displayName("智能对话")
             .description("与AI助手进行智能对话，获取专业建议和帮助")
             .points(chatPoints)
             .enabled(true)
             .category("communication")
+            .cacheTtlSeconds(cacheTtlSeconds.getOrDefault("chat", 0L))
             .build());
 
-        functionConfigs.put("text-generation", AiFunctionConfig.builder()
+        defaultConfigs.put("text-generation", AiFunctionConfig.builder()
             .name("text-generation")
             .displayName("文本生成")
             .description("基于您的输入，AI将生成创意文本内容")
             .points(textGenPoints)
             .enabled(true)
             .category("generation")
+            .cacheTtlSeconds(cacheTtlSeconds.getOrDefault("text-generation", 0L))
             .build());
 
-        functionConfigs.put("code-generation", AiFunctionConfig.builder()
+        defaultConfigs.put("code-generation", AiFunctionConfig.builder()
             .name("code-generation")
             .displayName("代码生成")
             .description("描述您的需求，AI将为您生成相应的代码")
             .points(codeGenPoints)
             .enabled(true)
             .category("generation")
+            .cacheTtlSeconds(cacheTtlSeconds.getOrDefault("code-generation", 0L))
             .build());
 
-        functionConfigs.put("document-summary", AiFunctionConfig.builder()
+        defaultConfigs.put("document-summary", AiFunctionConfig.builder()
             .name("document-summary")
             .displayName("文档总结")
             .description("智能总结文档内容，提取关键信息")
             .points(docSummaryPoints)
             .enabled(true)
             .category("analysis")
+            .cacheTtlSeconds(cacheTtlSeconds.getOrDefault("document-summary", 0L))
             .build());
 
-        functionConfigs.put("movie-clip", AiFunctionConfig.builder()
+        defaultConfigs.put("movie-clip", AiFunctionConfig.builder()
             .name("movie-clip")
             .displayName("电影快剪")
             .description("使用AI智能剪辑您的视频，快速生成精彩片段")
             .points(movieClipPoints)
             .enabled(true)
             .category("media")
+            .cacheTtlSeconds(cacheTtlSeconds.getOrDefault("movie-clip", 0L))
             .build());
 
-        functionConfigs.put("image-recognition", AiFunctionConfig.builder()
+        defaultConfigs.put("image-recognition", AiFunctionConfig.builder()
             .name("image-recognition")
             .displayName("图像识别")
             .description("上传图片，AI将识别图像中的内容并为您提供详细描述")
             .points(imageRecPoints)
             .enabled(true)
             .category("analysis")
+            .cacheTtlSeconds(cacheTtlSeconds.getOrDefault("image-recognition", 0L))
             .build());
     }
 
     /**
      * 获取功能配置
      */
-    @Cacheable("functionConfig")
     public AiFunctionConfig getFunctionConfig(String functionName) {
-        AiFunctionConfig config = functionConfigs.get(functionName);
+        AiFunctionConfig config = snapshot.configs().get(functionName);
         if (config == null) {
             throw new IllegalArgumentException("未知的AI功能: " + functionName);
         }
         return config;
     }
 
+    /**
+     * 是否为已配置的功能
+     */
+    public boolean isKnownFunction(String functionName) {
+        return snapshot.configs().containsKey(functionName);
+    }
+
+    /**
+     * 功能是否已配置且启用
+     */
+    public boolean isFunctionEnabled(String functionName) {
+        return snapshot.enabledFunctions().contains(functionName);
+    }
+
     /**
      * 获取所有功能的积分配置
      */
-    @Cacheable("functionPoints")
     public Map<String, Integer> getFunctionPoints() {
-        Map<String, Integer> points = new HashMap<>();
-        functionConfigs.forEach((name, config) -> points.put(name, config.getPoints()));
-        return points;
+        return snapshot.points();
     }
 
     /**
      * 获取所有功能配置
      */
-    @Cacheable("allFunctionConfigs")
     public Map<String, AiFunctionConfig> getAllFunctionConfigs() {
-        return new HashMap<>(functionConfigs);
+        return snapshot.configs();
     }
 
     /**
      * 获取启用的功能
      */
-    @Cacheable("enabledFunctions")
     public Set<String> getEnabledFunctions() {
-        return functionConfigs.entrySet().stream()
-            .filter(entry -> entry.getValue().isEnabled())
-            .map(Map.Entry::getKey)
-            .collect(java.util.stream.Collectors.toSet());
+        return snapshot.enabledFunctions();
     }
 
     /**
      * 按分类获取功能
      */
-    @Cacheable("functionsByCategory")
-    public Map<String, java.util.List<AiFunctionConfig>> getFunctionsByCategory() {
-        return functionConfigs.values().stream()
-            .filter(AiFunctionConfig::isEnabled)
-            .collect(java.util.stream.Collectors.groupingBy(AiFunctionConfig::getCategory));
+    public Map<String, List<AiFunctionConfig>> getFunctionsByCategory() {
+        return snapshot.byCategory();
+    }
+
+    /**
+     * 当前快照对应的配置版本，未从数据库加载成功时为null
+     */
+    public String getConfigVersion() {
+        return snapshot.version();
+    }
+
+    /**
+     * 从数据库重新加载配置，构建新快照后整体替换
+     */
+    public void reload() {
+        reloadLock.lock();
+        try {
+            // 先读版本再读数据，读取期间发生的修改最多导致下一次轮询多加载一次
+            String version = settingMapper.selectConfigVersion();
+            List<AiFunctionConfig> configs = settingMapper.selectList(null).stream()
+                .map(AiFunctionConfigService::toConfig)
+                .toList();
+            snapshot = Snapshot.of(configs, version);
+            log.info("已加载AI功能配置，版本 {}，共 {} 个功能", version, configs.size());
+        } finally {
+            reloadLock.unlock();
+        }
+    }
+
+    /**
+     * 修改功能配置并立即重新加载，其他实例在下一次版本轮询时生效
+     */
+    public AiFunctionConfig updateConfig(String functionName, AiFunctionSetting changes) {
+        if (changes.getPoints() != null && changes.getPoints() < 0) {
+            throw new IllegalArgumentException("积分不能为负数");
+        }
+        if (changes.getCacheTtlSeconds() != null && changes.getCacheTtlSeconds() < 0) {
+            throw new IllegalArgumentException("缓存有效期不能为负数");
+        }
+        changes.setName(functionName);
+        if (settingMapper.updateSetting(changes) == 0) {
+            throw new IllegalArgumentException("未知的AI功能: " + functionName);
+        }
+        reload();
+        return getFunctionConfig(functionName);
+    }
+
+    /**
+     * 轮询配置版本，发生变化时重新加载
+     */
+    @Scheduled(fixedDelayString = "${ai.function-config.poll-interval-ms:30000}")
+    public void pollConfigVersion() {
+        try {
+            String version = settingMapper.selectConfigVersion();
+            if (!version.equals(snapshot.version())) {
+                seedMissingConfigs();
+                reload();
+            }
+        } catch (Exception e) {
+            log.warn("轮询AI功能配置版本失败", e);
+        }
+    }
+
+    private void seedMissingConfigs() {
+        Set<String> existing = settingMapper.selectList(null).stream()
+            .map(AiFunctionSetting::getName)
+            .collect(Collectors.toSet());
+        for (AiFunctionConfig config : defaultConfigs.values()) {
+            if (existing.contains(config.getName())) {
+                continue;
+            }
+            try {
+                settingMapper.insert(new AiFunctionSetting(config.getName(), config.getDisplayName(), 
+                        config.getDescription(), config.getCategory(), config.getPoints(), config.isEnabled(), 
+                        config.getCacheTtlSeconds(), 1, null, null));
+                log.info("已按默认值补齐AI功能配置: {}", config.getName());
+            } catch (DuplicateKeyException e) {
+                // 其他实例已同时补齐
+            }
+        }
+    }
+
+    private static AiFunctionConfig toConfig(AiFunctionSetting setting) {
+        return AiFunctionConfig.builder()
+            .name(setting.getName())
+            .displayName(setting.getDisplayName())
+            .description(setting.getDescription())
+            .points(setting.getPoints())
+            .enabled(Boolean.TRUE.equals(setting.getEnabled()))
+            .category(setting.getCategory())
+            .cacheTtlSeconds(setting.getCacheTtlSeconds() != null ? setting.getCacheTtlSeconds() : 0L)
+            .build();
+    }
+
+    /**
+     * 配置快照，所有视图在构建时一次算好且不可变
+     */
+    private record Snapshot(Map<String, AiFunctionConfig> configs,
+                            Map<String, Integer> points,
+                            Set<String> enabledFunctions,
+                            Map<String, List<AiFunctionConfig>> byCategory,
+                            String version) {
+
+        static Snapshot of(Collection<AiFunctionConfig> configs, String version) {
+            return new Snapshot(
+                configs.stream().collect(Collectors.toUnmodifiableMap(AiFunctionConfig::getName, config -> config)),
+                configs.stream().collect(Collectors.toUnmodifiableMap(AiFunctionConfig::getName, AiFunctionConfig::getPoints)),
+                configs.stream().filter(AiFunctionConfig::isEnabled)
+                    .map(AiFunctionConfig::getName)
+                    .collect(Collectors.toUnmodifiableSet()),
+                Map.copyOf(configs.stream().filter(AiFunctionConfig::isEnabled)
+                    .collect(Collectors.groupingBy(AiFunctionConfig::getCategory, Collectors.toUnmodifiableList()))),
+                version);
+        }
     }
 
     /**
      * AI功能配置类
      */
     @lombok.Builder
-    @lombok.Data
+    @lombok.Value
     public static class AiFunctionConfig {
         private String name;           // 功能名称
         private String displayName;    // 显示名称
@@ -153,5 +310,13 @@ public class AiFunctionConfigService {
         private int points;           // 积分消耗
         private boolean enabled;      // 是否启用
         private String category;      // 功能分类
+        private long cacheTtlSeconds; // 响应缓存有效期（秒），0表示不缓存
+        
+        /**
+         * 是否允许缓存响应
+         */
+        public boolean isCacheable() {
+            return cacheTtlSeconds > 0;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,366 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.entity.AiJob;
+import com.aiwebsite.entity.PointsReservation;
+import com.aiwebsite.mapper.AiJobMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * AI异步任务服务
+ * 提交时校验输入、预留积分并写入任务表后立即返回任务ID；调度线程从表中认领排队任务，
+ * 在有界数量的虚拟线程上执行，结束时按结果确认或释放预留。
+ * 执行中的任务定期写心跳，心跳超时的任务（节点崩溃或重启）会被重新排队，超过最大尝试次数则失败并退还积分
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiJobService {
+    
+    private static final int RECOVERY_BATCH_SIZE = 100;
+    private static final int MAX_ERROR_LENGTH = 1000;
+    
+    private final AiJobMapper jobMapper;
+    private final PointsService pointsService;
+    private final AuditService auditService;
+    private final AiFunctionConfigService configService;
+    private final AiService aiService;
+    private final AiMetrics aiMetrics;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${ai.jobs.workers:4}")
+    private int workers;
+    
+    @Value("${ai.jobs.poll-interval-ms:2000}")
+    private long pollIntervalMs;
+    
+    @Value("${ai.jobs.stale-after-ms:120000}")
+    private long staleAfterMs;
+    
+    @Value("${ai.jobs.max-attempts:3}")
+    private int maxAttempts;
+    
+    @Value("${ai.jobs.max-active-per-user:5}")
+    private int maxActivePerUser;
+    
+    @Value("${ai.jobs.reservation-ttl-seconds:600}")
+    private long reservationTtlSeconds;
+    
+    @Value("${ai.jobs.progress-interval-ms:1000}")
+    private long progressIntervalMs;
+    
+    @Value("${ai.jobs.event-interval-ms:1000}")
+    private long eventIntervalMs;
+    
+    private Semaphore workerPermits;
+    private Thread dispatcher;
+    private volatile boolean running;
+    
+    // 有新任务或工作线程空出时唤醒调度线程，避免只靠轮询间隔
+    private final ReentrantLock wakeupLock = new ReentrantLock();
+    private final Condition wakeup = wakeupLock.newCondition();
+    private boolean signalled;
+    
+    // 本节点正在执行的任务及其最近一次写入进度的时间
+    private final Set<Long> runningJobs = ConcurrentHashMap.newKeySet();
+    private final Map<Long, Long> progressWrittenAt = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void start() {
+        workerPermits = new Semaphore(workers);
+        running = true;
+        dispatcher = Thread.ofPlatform().daemon().name("ai-job-dispatcher").start(this::dispatchLoop);
+        aiMetrics.registerGauge("ai.jobs.running", "本节点正在执行的异步任务数", runningJobs, Set::size);
+        log.info("AI异步任务调度已启动，工作线程数: {}", workers);
+    }
+    
+    /**
+     * 停止认领新任务；执行中的任务随进程退出中断，心跳超时后由其他节点或重启后的本节点重新排队
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        dispatcher.interrupt();
+    }
+    
+    /**
+     * 提交异步任务，预留积分与写入任务在同一事务内完成
+     */
+    public AiJob submit(Long userId, String functionName, String input) {
+        if (!aiService.isFunctionAvailable(functionName)) {
+            throw new IllegalArgumentException("功能不可用: " + functionName);
+        }
+        AiProcessor processor = aiService.getProcessor(functionName);
+        if (!processor.validateInput(input)) {
+            throw new IllegalArgumentException("输入数据无效");
+        }
+        if (jobMapper.countActiveByUserId(userId) >= maxActivePerUser) {
+            throw new IllegalStateException("进行中的任务过多，请等待已有任务完成后再提交");
+        }
+        int requiredPoints = processor.getRequiredPoints(input);
+        
+        AiJob job = transactionTemplate.execute(status -> {
+            PointsReservation reservation = pointsService.reservePoints(userId, requiredPoints,
+                    "使用" + configService.getFunctionConfig(functionName).getDisplayName() + "功能",
+                    functionName, reservationTtlSeconds);
+            AiJob created = new AiJob();
+            created.setUserId(userId);
+            created.setFunctionName(functionName);
+            created.setInputData(input);
+            created.setStatus(AiJob.Status.QUEUED);
+            created.setProgress(0);
+            created.setPoints(requiredPoints);
+            created.setReservationId(reservation.getId());
+            created.setAttempts(0);
+            jobMapper.insert(created);
+            return created;
+        });
+        
+        log.info("用户{}提交异步任务{}, 功能: {}, 预留积分: {}", userId, job.getId(), functionName, requiredPoints);
+        signal();
+        return job;
+    }
+    
+    /**
+     * 查询任务状态，只能查询自己的任务
+     */
+    public AiJob getJob(Long userId, Long jobId) {
+        AiJob job = jobMapper.findStatusById(jobId);
+        if (job == null || !job.getUserId().equals(userId)) {
+            throw new IllegalArgumentException("任务不存在");
+        }
+        return job;
+    }
+    
+    /**
+     * 按固定间隔查询任务状态，状态或进度变化时推送，任务结束后完成
+     */
+    public Flux<AiJob> watch(Long userId, Long jobId) {
+        return Flux.interval(Duration.ZERO, Duration.ofMillis(eventIntervalMs))
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromCallable(() -> getJob(userId, jobId))
+                        .subscribeOn(Schedulers.boundedElastic()))
+                .distinctUntilChanged(job -> job.getStatus() + ":" + job.getProgress())
+                .takeUntil(job -> job.getStatus().isTerminal());
+    }
+    
+    /**
+     * 刷新本节点执行中任务的心跳，并为未结束任务的积分预留续期
+     * 排队中的任务不属于任何节点，由各节点的心跳共同续期；节点宕机时其执行中的任务由回收重新排队，预留随之继续续期
+     */
+    @Scheduled(fixedDelayString = "${ai.jobs.heartbeat-interval-ms:30000}")
+    public void heartbeat() {
+        if (!runningJobs.isEmpty()) {
+            jobMapper.heartbeat(List.copyOf(runningJobs));
+        }
+        pointsService.extendJobReservations(reservationTtlSeconds);
+    }
+    
+    /**
+     * 回收心跳超时的任务：未超过最大尝试次数的重新排队，否则标记失败并退还积分
+     */
+    @Scheduled(fixedDelayString = "${ai.jobs.recovery-interval-ms:60000}")
+    public void recoverStaleJobs() {
+        LocalDateTime before = LocalDateTime.now().minus(Duration.ofMillis(staleAfterMs));
+        int requeued = 0;
+        for (AiJob job : jobMapper.findStale(before, RECOVERY_BATCH_SIZE)) {
+            if (runningJobs.contains(job.getId())) {
+                continue;
+            }
+            try {
+                if (job.getAttempts() < maxAttempts) {
+                    if (jobMapper.requeueStale(job.getId(), before) == 1) {
+                        log.warn("异步任务{}心跳超时，重新排队（已尝试{}次）", job.getId(), job.getAttempts());
+                        requeued++;
+                    }
+                } else if (jobMapper.failStale(job.getId(), before, "任务多次中断，已终止") == 1) {
+                    log.warn("异步任务{}多次中断，标记失败并退还积分", job.getId());
+                    releaseReservation(job, "异步任务中断，退还积分");
+                    auditService.recordFailure(job.getUserId(), job.getFunctionName(), null, 0, 0L, "任务多次中断，已终止");
+                }
+            } catch (Exception e) {
+                log.error("回收异步任务{}失败", job.getId(), e);
+            }
+        }
+        if (requeued > 0) {
+            signal();
+        }
+    }
+    
+    public int getRunningCount() {
+        return runningJobs.size();
+    }
+    
+    // 私有辅助方法
+    
+    /**
+     * 调度循环：先占用工作许可再认领任务，没有可认领的任务时等待唤醒或轮询间隔
+     */
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                workerPermits.acquire();
+            } catch (InterruptedException e) {
+                return;
+            }
+            AiJob job = null;
+            try {
+                job = claimNext();
+            } catch (Exception e) {
+                log.error("认领异步任务失败", e);
+            }
+            if (job == null) {
+                workerPermits.release();
+                if (!awaitWork()) {
+                    return;
+                }
+                continue;
+            }
+            AiJob claimed = job;
+            Thread.ofVirtual().name("ai-job-" + claimed.getId()).start(() -> run(claimed));
+        }
+    }
+    
+    /**
+     * 按提交顺序认领一个排队任务，其他节点抢先认领时尝试下一个
+     */
+    private AiJob claimNext() {
+        for (Long jobId : jobMapper.findQueuedIds(workers * 2)) {
+            if (jobMapper.claim(jobId) == 1) {
+                return jobMapper.selectById(jobId);
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * 等待唤醒信号或轮询间隔，被中断时返回false
+     */
+    private boolean awaitWork() {
+        wakeupLock.lock();
+        try {
+            if (!signalled) {
+                wakeup.await(pollIntervalMs, TimeUnit.MILLISECONDS);
+            }
+            signalled = false;
+            return true;
+        } catch (InterruptedException e) {
+            return false;
+        } finally {
+            wakeupLock.unlock();
+        }
+    }
+    
+    private void signal() {
+        wakeupLock.lock();
+        try {
+            signalled = true;
+            wakeup.signal();
+        } finally {
+            wakeupLock.unlock();
+        }
+    }
+    
+    private void run(AiJob job) {
+        runningJobs.add(job.getId());
+        try {
+            execute(job);
+        } catch (Exception e) {
+            log.error("异步任务{}结算失败", job.getId(), e);
+        } finally {
+            runningJobs.remove(job.getId());
+            progressWrittenAt.remove(job.getId());
+            workerPermits.release();
+            signal();
+        }
+    }
+    
+    /**
+     * 执行任务并结算；结束状态的迁移带有RUNNING前置条件，只有迁移成功的一方确认或释放积分
+     */
+    private void execute(AiJob job) {
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        String functionName = job.getFunctionName();
+        
+        AiCallContext context = AiCallContext.open(functionName);
+        context.setProgressListener(percent -> saveProgress(job.getId(), percent));
+        try {
+            String output = aiService.getProcessor(functionName).process(job.getInputData());
+            long executionTime = System.currentTimeMillis() - startTime;
+            
+            if (jobMapper.succeed(job.getId(), output) == 1) {
+                confirmReservation(job);
+                auditService.recordSuccess(job.getUserId(), functionName, job.getInputData(), output,
+                        job.getPoints(), executionTime);
+            } else {
+                log.warn("异步任务{}已被回收，丢弃本次结果", job.getId());
+            }
+            aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, context.getProvider(),
+                    AiMetrics.OUTCOME_SUCCESS, System.nanoTime() - startNanos);
+        } catch (Exception e) {
+            long executionTime = System.currentTimeMillis() - startTime;
+            String error = auditService.truncateText(e.getMessage(), MAX_ERROR_LENGTH);
+            
+            if (jobMapper.fail(job.getId(), error) == 1) {
+                releaseReservation(job, "AI功能处理失败，退还积分");
+                auditService.recordFailure(job.getUserId(), functionName, job.getInputData(), 0, executionTime, error);
+            }
+            aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, context.getProvider(),
+                    AiMetrics.OUTCOME_FAILURE, System.nanoTime() - startNanos);
+        } finally {
+            context.close();
+        }
+    }
+    
+    /**
+     * 写入进度，同一任务的写入间隔不小于progressIntervalMs，写入同时刷新心跳
+     */
+    private void saveProgress(Long jobId, int percent) {
+        long now = System.currentTimeMillis();
+        Long last = progressWrittenAt.get(jobId);
+        if (last != null && now - last < progressIntervalMs) {
+            return;
+        }
+        progressWrittenAt.put(jobId, now);
+        try {
+            jobMapper.updateProgress(jobId, percent);
+        } catch (Exception e) {
+            log.warn("更新异步任务{}进度失败", jobId, e);
+        }
+    }
+    
+    private void confirmReservation(AiJob job) {
+        PointsReservation reservation = pointsService.findReservation(job.getReservationId());
+        if (reservation != null) {
+            pointsService.confirmReservation(reservation);
+        }
+    }
+    
+    private void releaseReservation(AiJob job, String reason) {
+        PointsReservation reservation = pointsService.findReservation(job.getReservationId());
+        if (reservation != null) {
+            pointsService.releaseReservation(reservation, reason);
+        }
+    }
+}
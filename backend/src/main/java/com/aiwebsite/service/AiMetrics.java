@@ -0,0 +1,100 @@
+package com.aiwebsite.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * AI处理链路指标
+ * 各阶段（认证、积分扣除、提供商调用、审计写入、总耗时）的延迟直方图按功能与提供商打标签，
+ * 提供商返回的prompt/completion token数记为计数器，通过/actuator/prometheus暴露
+ */
+@Component
+@RequiredArgsConstructor
+public class AiMetrics {
+    
+    public static final String STAGE_AUTH = "auth";
+    public static final String STAGE_POINTS = "points";
+    public static final String STAGE_PROVIDER = "provider";
+    public static final String STAGE_AUDIT = "audit";
+    public static final String STAGE_TOTAL = "total";
+    
+    public static final String OUTCOME_SUCCESS = "success";
+    public static final String OUTCOME_FAILURE = "failure";
+    public static final String OUTCOME_CACHE_HIT = "cache_hit";
+    public static final String OUTCOME_CANCELLED = "cancelled";
+    public static final String OUTCOME_COALESCED = "coalesced";
+    
+    // 阶段与功能或提供商无关时使用的标签值
+    public static final String NONE = "none";
+    public static final String PROVIDER_CACHE = "cache";
+    
+    private final MeterRegistry meterRegistry;
+    
+    /**
+     * 记录一个阶段的耗时
+     */
+    public void recordStage(String stage, String functionName, String provider, String outcome, long elapsedNanos) {
+        Timer.builder("ai.stage.duration")
+                .description("AI处理链路各阶段耗时")
+                .tag("stage", stage)
+                .tag("function", tagValue(functionName))
+                .tag("provider", tagValue(provider))
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofMinutes(2))
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    /**
+     * 记录模型响应中的token用量，提供商未返回用量时忽略
+     */
+    public void recordTokens(String functionName, String provider, ChatResponse response) {
+        if (response == null || response.getMetadata() == null) {
+            return;
+        }
+        Usage usage = response.getMetadata().getUsage();
+        if (usage == null) {
+            return;
+        }
+        incrementTokens(functionName, provider, "prompt", usage.getPromptTokens());
+        incrementTokens(functionName, provider, "completion", usage.getCompletionTokens());
+    }
+    
+    /**
+     * 注册一个按需取值的仪表
+     */
+    public <T> void registerGauge(String name, String description, T target, ToDoubleFunction<T> valueFunction) {
+        Gauge.builder(name, target, valueFunction)
+                .description(description)
+                .register(meterRegistry);
+    }
+    
+    private void incrementTokens(String functionName, String provider, String type, Integer tokens) {
+        if (tokens == null || tokens <= 0) {
+            return;
+        }
+        Counter.builder("ai.tokens")
+                .description("AI提供商返回的token用量")
+                .tag("function", tagValue(functionName))
+                .tag("provider", tagValue(provider))
+                .tag("type", type)
+                .register(meterRegistry)
+                .increment(tokens);
+    }
+    
+    private String tagValue(String value) {
+        return value != null ? value : NONE;
+    }
+}
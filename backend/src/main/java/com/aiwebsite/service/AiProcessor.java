@@ -1,5 +1,9 @@
 package com.aiwebsite.service;
 
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
 /**
  * AI处理器接口
  * 定义AI功能的标准处理流程
@@ -13,18 +17,46 @@ public interface AiProcessor {
      */
     String process(String input);
     
+    /**
+     * 流式处理AI功能，默认退化为一次性返回完整结果，处理在弹性线程池上执行，不占用订阅流的线程
+     * @param input 输入数据
+     * @return 按生成顺序推送的结果片段
+     */
+    default Flux<String> processStream(String input) {
+        return Mono.fromCallable(() -> process(input))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flux();
+    }
+    
     /**
      * 获取功能名称
      * @return 功能名称
      */
     String getFunctionName();
     
+    /**
+     * 获取系统提示词，参与响应缓存键的计算
+     * @return 系统提示词
+     */
+    default String getSystemPrompt() {
+        return "";
+    }
+    
     /**
      * 获取消耗积分
      * @return 消耗的积分数量
      */
     int getRequiredPoints();
     
+    /**
+     * 按输入计算消耗积分，默认与输入无关
+     * @param input 已通过验证的输入数据
+     * @return 消耗的积分数量
+     */
+    default int getRequiredPoints(String input) {
+        return getRequiredPoints();
+    }
+    
     /**
      * 验证输入数据
      * @param input 输入数据
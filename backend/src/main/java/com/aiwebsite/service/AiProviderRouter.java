@@ -0,0 +1,664 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.config.AiModelRoutingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.ollama.api.OllamaOptions;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * AI提供商路由器
+ * 为每个提供商维护滚动窗口内的延迟与错误率，按健康度加权选择提供商，
+ * 调用失败时自动切换到其他提供商，提供商退化时熔断，冷却后半开试探恢复。
+ * 配置了模型路由的功能以路由中的提供商为首选，落到该提供商时使用路由指定的模型与选项，
+ * 每种提供商与选项组合的ChatClient只构建一次
+ */
+@Slf4j
+@Service
+public class AiProviderRouter {
+    
+    private static final int MAX_DECISIONS = 50;
+    private static final Pattern STATUS_PREFIX = Pattern.compile("(\\d{3}) - ");
+    // 鉴权失败、模型不存在、超时与限流换一个提供商可能成功，仍计为提供商失败
+    private static final Set<Integer> PROVIDER_SIDE_4XX = Set.of(401, 403, 404, 408, 429);
+    
+    private final Map<String, ProviderState> providers = new LinkedHashMap<>();
+    private final Map<String, ModelRoute> routes;
+    private final Deque<Map<String, Object>> recentDecisions = new ArrayDeque<>();
+    private final ReentrantLock decisionLock = new ReentrantLock();
+    private final AiMetrics aiMetrics;
+    
+    @Value("${ai.router.window-size:50}")
+    private int windowSize;
+    
+    @Value("${ai.router.min-calls:5}")
+    private int minCalls;
+    
+    @Value("${ai.router.failure-rate-threshold:0.5}")
+    private double failureRateThreshold;
+    
+    @Value("${ai.router.slow-call-ms:30000}")
+    private long slowCallMs;
+    
+    @Value("${ai.router.slow-call-rate-threshold:0.8}")
+    private double slowCallRateThreshold;
+    
+    @Value("${ai.router.open-duration-ms:30000}")
+    private long openDurationMs;
+    
+    @Value("${ai.router.preferred-weight:3.0}")
+    private double preferredWeight;
+    
+    // 没有任何提供商积累到min-calls次成功调用时使用的先验延迟
+    @Value("${ai.router.default-latency-ms:2000}")
+    private double defaultLatencyMs;
+    
+    // 首选提供商，只提高其选择权重，不再是全局强制开关
+    private volatile String preferredProvider;
+    
+    public AiProviderRouter(@Qualifier("openAiChatClient") ChatClient openAiChatClient,
+                            @Qualifier("ollamaChatClient") ChatClient ollamaChatClient,
+                            OpenAiChatModel openAiChatModel,
+                            @Value("${ai.provider:openai}") String preferredProvider,
+                            AiModelRoutingProperties routingProperties,
+                            AiMetrics aiMetrics) {
+        // OpenAI只在流式请求中附带stream_options，使最后一个分片返回token用量；
+        // 请求级选项会整体替换默认选项，流式选项因此以模型的默认选项为基础，保留配置的模型与maxTokens
+        OpenAiChatOptions streamOptions = OpenAiChatOptions.fromOptions((OpenAiChatOptions) openAiChatModel.getDefaultOptions());
+        streamOptions.setStreamUsage(true);
+        providers.put("openai", new ProviderState("openai", openAiChatClient, streamOptions));
+        providers.put("ollama", new ProviderState("ollama", ollamaChatClient, null));
+        this.preferredProvider = preferredProvider.toLowerCase();
+        this.routes = buildRoutes(routingProperties);
+        this.aiMetrics = aiMetrics;
+    }
+    
+    /**
+     * 同步调用，失败时依次切换到其他可用提供商
+     */
+    public String call(Prompt prompt) {
+        AiCallContext context = AiCallContext.current();
+        ModelRoute route = routes.get(functionOf(context));
+        RuntimeException lastError = null;
+        for (ProviderState provider : rankProviders(context, route)) {
+            if (!provider.tryAcquire()) {
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                ChatResponse response = provider.clientFor(route).client().prompt(prompt).call().chatResponse();
+                long elapsed = System.nanoTime() - start;
+                provider.record(TimeUnit.NANOSECONDS.toMillis(elapsed), true);
+                recordCall(context, provider.name, AiMetrics.OUTCOME_SUCCESS, elapsed);
+                aiMetrics.recordTokens(functionOf(context), provider.name, response);
+                return textOf(response);
+            } catch (RuntimeException e) {
+                long elapsed = System.nanoTime() - start;
+                recordCall(context, provider.name, AiMetrics.OUTCOME_FAILURE, elapsed);
+                if (isCallerError(e)) {
+                    // 请求本身无效，换提供商也不会成功，不计入提供商健康度
+                    provider.releaseTrial();
+                    throw e;
+                }
+                provider.record(TimeUnit.NANOSECONDS.toMillis(elapsed), false);
+                log.warn("AI提供商 [{}] 调用失败，尝试切换: {}", provider.name, e.getMessage());
+                lastError = e;
+            }
+        }
+        throw lastError != null ? lastError : new IllegalStateException("没有可用的AI提供商");
+    }
+    
+    /**
+     * 流式调用，尚未推送任何内容前失败时切换到其他可用提供商
+     */
+    public Flux<String> stream(Prompt prompt) {
+        return Flux.deferContextual(view -> {
+            AiCallContext context = view.getOrDefault(AiCallContext.class, AiCallContext.current());
+            ModelRoute route = routes.get(functionOf(context));
+            return streamFrom(rankProviders(context, route), 0, prompt, context, route);
+        });
+    }
+    
+    private Flux<String> streamFrom(List<ProviderState> candidates, int index, Prompt prompt, 
+                                    AiCallContext context, ModelRoute route) {
+        if (index >= candidates.size()) {
+            return Flux.error(new IllegalStateException("没有可用的AI提供商"));
+        }
+        ProviderState provider = candidates.get(index);
+        if (!provider.tryAcquire()) {
+            return streamFrom(candidates, index + 1, prompt, context, route);
+        }
+        
+        long start = System.nanoTime();
+        AtomicBoolean emitted = new AtomicBoolean();
+        // token用量通常只出现在最后一个分片中
+        AtomicReference<ChatResponse> lastWithUsage = new AtomicReference<>();
+        RoutedClient routed = provider.clientFor(route);
+        ChatClient.ChatClientRequestSpec request = routed.client().prompt(prompt);
+        if (routed.streamOptions() != null) {
+            request = request.options(routed.streamOptions());
+        }
+        return request.stream().chatResponse()
+                .doOnNext(response -> {
+                    if (hasUsage(response)) {
+                        lastWithUsage.set(response);
+                    }
+                })
+                .mapNotNull(this::textOf)
+                .doOnNext(token -> emitted.set(true))
+                .doOnComplete(() -> {
+                    long elapsed = System.nanoTime() - start;
+                    provider.record(TimeUnit.NANOSECONDS.toMillis(elapsed), true);
+                    recordCall(context, provider.name, AiMetrics.OUTCOME_SUCCESS, elapsed);
+                    aiMetrics.recordTokens(functionOf(context), provider.name, lastWithUsage.get());
+                })
+                .doOnCancel(() -> {
+                    provider.releaseTrial();
+                    recordCall(context, provider.name, AiMetrics.OUTCOME_CANCELLED, System.nanoTime() - start);
+                })
+                .onErrorResume(e -> {
+                    long elapsed = System.nanoTime() - start;
+                    recordCall(context, provider.name, AiMetrics.OUTCOME_FAILURE, elapsed);
+                    if (isCallerError(e)) {
+                        provider.releaseTrial();
+                        return Flux.error(e);
+                    }
+                    provider.record(TimeUnit.NANOSECONDS.toMillis(elapsed), false);
+                    if (emitted.get()) {
+                        return Flux.error(e);
+                    }
+                    log.warn("AI提供商 [{}] 流式调用失败，尝试切换: {}", provider.name, e.getMessage());
+                    return streamFrom(candidates, index + 1, prompt, context, route);
+                });
+    }
+    
+    /**
+     * 设置首选提供商
+     */
+    public void setPreferredProvider(String provider) {
+        String name = provider.toLowerCase();
+        if (!providers.containsKey(name)) {
+            throw new IllegalArgumentException("不支持的AI提供商: " + provider);
+        }
+        this.preferredProvider = name;
+    }
+    
+    public String getPreferredProvider() {
+        return preferredProvider;
+    }
+    
+    /**
+     * 功能的首选提供商：配置了模型路由时为路由中的提供商，否则为全局首选提供商
+     */
+    public String getPreferredProvider(String functionName) {
+        ModelRoute route = routes.get(functionName);
+        return route != null ? route.provider() : preferredProvider;
+    }
+    
+    /**
+     * 功能路由指定的模型，未配置时返回null，表示使用提供商的默认模型
+     */
+    public String getRoutedModel(String functionName) {
+        ModelRoute route = routes.get(functionName);
+        return route != null ? route.model() : null;
+    }
+    
+    /**
+     * 路由状态快照：各提供商的熔断状态、滚动延迟、错误率、当前权重及最近的路由决策
+     */
+    public Map<String, Object> getRoutingState() {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("preferredProvider", preferredProvider);
+        
+        double priorLatencyMs = priorLatencyMs();
+        state.put("priorLatencyMs", Math.round(priorLatencyMs));
+        List<Map<String, Object>> providerStates = new ArrayList<>();
+        providers.values().forEach(provider -> providerStates.add(provider.snapshot(priorLatencyMs)));
+        state.put("providers", providerStates);
+        state.put("functionRoutes", routes);
+        
+        decisionLock.lock();
+        try {
+            state.put("recentDecisions", new ArrayList<>(recentDecisions));
+        } finally {
+            decisionLock.unlock();
+        }
+        return state;
+    }
+    
+    private Map<String, ModelRoute> buildRoutes(AiModelRoutingProperties properties) {
+        Map<String, ModelRoute> built = new LinkedHashMap<>();
+        properties.getFunctions().forEach((functionName, route) -> {
+            String provider = route.getProvider() != null ? route.getProvider().toLowerCase() : null;
+            if (provider == null || !providers.containsKey(provider)) {
+                throw new IllegalStateException("功能 [" + functionName + "] 的模型路由提供商无效: " + route.getProvider());
+            }
+            built.put(functionName, new ModelRoute(provider, route.getModel(), route.getMaxTokens(), route.getTemperature()));
+        });
+        log.info("已加载 {} 个功能的模型路由: {}", built.size(), built);
+        return Map.copyOf(built);
+    }
+    
+    /**
+     * 记录提供商调用耗时，成功时把选中的提供商回传给调用上下文
+     */
+    private void recordCall(AiCallContext context, String provider, String outcome, long elapsedNanos) {
+        if (context != null && AiMetrics.OUTCOME_SUCCESS.equals(outcome)) {
+            context.setProvider(provider);
+        }
+        aiMetrics.recordStage(AiMetrics.STAGE_PROVIDER, functionOf(context), provider, outcome, elapsedNanos);
+    }
+    
+    private String functionOf(AiCallContext context) {
+        return context != null ? context.getFunctionName() : AiMetrics.NONE;
+    }
+    
+    private String textOf(ChatResponse response) {
+        if (response == null || response.getResult() == null || response.getResult().getOutput() == null) {
+            return null;
+        }
+        return response.getResult().getOutput().getText();
+    }
+    
+    private boolean hasUsage(ChatResponse response) {
+        if (response == null || response.getMetadata() == null || response.getMetadata().getUsage() == null) {
+            return false;
+        }
+        Integer total = response.getMetadata().getUsage().getTotalTokens();
+        return total != null && total > 0;
+    }
+    
+    /**
+     * 是否为调用方导致的错误（请求无效、内容过长等4xx）；鉴权、模型不存在、超时与限流属于提供商一侧的问题
+     */
+    private boolean isCallerError(Throwable e) {
+        if (e instanceof IllegalArgumentException) {
+            return true;
+        }
+        Integer status = null;
+        if (e instanceof WebClientResponseException response) {
+            status = response.getStatusCode().value();
+        } else if (e instanceof RestClientResponseException response) {
+            status = response.getStatusCode().value();
+        } else if (e instanceof NonTransientAiException && e.getMessage() != null) {
+            // Spring AI的默认错误处理器把消息格式化为"状态码 - 响应体"
+            Matcher matcher = STATUS_PREFIX.matcher(e.getMessage());
+            if (matcher.lookingAt()) {
+                status = Integer.parseInt(matcher.group(1));
+            }
+        }
+        return status != null && status >= 400 && status < 500 && !PROVIDER_SIDE_4XX.contains(status);
+    }
+    
+    /**
+     * 先验延迟：已积累足够成功调用的提供商的平均延迟，都没有时取配置的默认值
+     */
+    private double priorLatencyMs() {
+        double total = 0;
+        int sampled = 0;
+        for (ProviderState provider : providers.values()) {
+            Stats stats = provider.stats();
+            if (stats.successes() >= minCalls) {
+                total += stats.avgLatencyMs();
+                sampled++;
+            }
+        }
+        return sampled > 0 ? total / sampled : defaultLatencyMs;
+    }
+    
+    /**
+     * 按健康度对提供商排序：首个通过加权随机选出，其余按权重降序作为故障转移候选
+     */
+    private List<ProviderState> rankProviders(AiCallContext context, ModelRoute route) {
+        String preferred = route != null ? route.provider() : preferredProvider;
+        List<ProviderState> available = new ArrayList<>();
+        List<ProviderState> unavailable = new ArrayList<>();
+        for (ProviderState provider : providers.values()) {
+            (provider.isAvailable() ? available : unavailable).add(provider);
+        }
+        
+        List<ProviderState> ranked = new ArrayList<>(available.size() + unavailable.size());
+        if (!available.isEmpty()) {
+            double priorLatencyMs = priorLatencyMs();
+            Map<ProviderState, Double> weights = new LinkedHashMap<>();
+            available.forEach(provider -> weights.put(provider, provider.weight(preferred, priorLatencyMs)));
+            
+            double total = weights.values().stream().mapToDouble(Double::doubleValue).sum();
+            double pick = ThreadLocalRandom.current().nextDouble() * total;
+            ProviderState selected = available.get(available.size() - 1);
+            for (ProviderState provider : available) {
+                pick -= weights.get(provider);
+                if (pick <= 0) {
+                    selected = provider;
+                    break;
+                }
+            }
+            ranked.add(selected);
+            available.remove(selected);
+            available.sort(Comparator.comparingDouble(weights::get).reversed());
+            ranked.addAll(available);
+        }
+        // 全部熔断时仍按顺序尝试，由tryAcquire决定是否放行
+        ranked.addAll(unavailable);
+        
+        recordDecision(functionOf(context), ranked);
+        return ranked;
+    }
+    
+    private void recordDecision(String functionName, List<ProviderState> ranked) {
+        Map<String, Object> decision = new LinkedHashMap<>();
+        decision.put("time", LocalDateTime.now().toString());
+        decision.put("function", functionName);
+        decision.put("order", ranked.stream().map(provider -> provider.name).toList());
+        
+        decisionLock.lock();
+        try {
+            if (recentDecisions.size() >= MAX_DECISIONS) {
+                recentDecisions.removeFirst();
+            }
+            recentDecisions.addLast(decision);
+        } finally {
+            decisionLock.unlock();
+        }
+    }
+    
+    /**
+     * 单个提供商的滚动统计与熔断状态
+     */
+    private class ProviderState {
+        
+        private final String name;
+        private final ChatClient client;
+        private final RoutedClient defaultClient;
+        // 按路由缓存已构建的ChatClient，相同选项的功能共用一个
+        private final Map<ModelRoute, RoutedClient> routedClients = new ConcurrentHashMap<>();
+        private final ReentrantLock lock = new ReentrantLock();
+        
+        // 滚动窗口：最近windowSize次调用的延迟与结果
+        private long[] latencies;
+        private boolean[] outcomes;
+        private int count;
+        private int next;
+        // 熔断关闭以来的调用数，熔断只依据这段时间内的调用判断，窗口中更早的记录只影响权重
+        private int callsSinceClose;
+        
+        private CircuitState circuitState = CircuitState.CLOSED;
+        private long openedAt;
+        private boolean trialInFlight;
+        
+        ProviderState(String name, ChatClient client, ChatOptions streamOptions) {
+            this.name = name;
+            this.client = client;
+            this.defaultClient = new RoutedClient(client, streamOptions);
+        }
+        
+        /**
+         * 路由指定了本提供商时返回按路由选项构建的ChatClient，否则返回默认ChatClient
+         */
+        RoutedClient clientFor(ModelRoute route) {
+            if (route == null || !route.provider().equals(name)) {
+                return defaultClient;
+            }
+            return routedClients.computeIfAbsent(route, this::buildRoutedClient);
+        }
+        
+        /**
+         * 请求级选项会整体替换ChatClient的默认选项，流式选项因此需要同时包含路由选项
+         */
+        private RoutedClient buildRoutedClient(ModelRoute route) {
+            log.info("为AI提供商 [{}] 构建ChatClient: 模型={}, maxTokens={}, temperature={}", 
+                    name, route.model(), route.maxTokens(), route.temperature());
+            if ("openai".equals(name)) {
+                OpenAiChatOptions options = OpenAiChatOptions.builder()
+                        .model(route.model())
+                        .maxTokens(route.maxTokens())
+                        .temperature(route.temperature())
+                        .build();
+                OpenAiChatOptions routedStreamOptions = OpenAiChatOptions.fromOptions(options);
+                routedStreamOptions.setStreamUsage(true);
+                return new RoutedClient(client.mutate().defaultOptions(options).build(), routedStreamOptions);
+            }
+            OllamaOptions options = OllamaOptions.builder()
+                    .model(route.model())
+                    .numPredict(route.maxTokens())
+                    .temperature(route.temperature())
+                    .build();
+            return new RoutedClient(client.mutate().defaultOptions(options).build(), null);
+        }
+        
+        /**
+         * 是否可参与加权选择：熔断关闭，或已过冷却期可半开试探
+         */
+        boolean isAvailable() {
+            lock.lock();
+            try {
+                return circuitState == CircuitState.CLOSED
+                        || (circuitState == CircuitState.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs)
+                        || (circuitState == CircuitState.HALF_OPEN && !trialInFlight);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * 获取调用许可，半开状态只放行一个试探请求
+         */
+        boolean tryAcquire() {
+            lock.lock();
+            try {
+                switch (circuitState) {
+                    case CLOSED:
+                        return true;
+                    case OPEN:
+                        if (System.currentTimeMillis() - openedAt < openDurationMs) {
+                            return false;
+                        }
+                        circuitState = CircuitState.HALF_OPEN;
+                        log.info("AI提供商 [{}] 熔断冷却结束，进入半开状态", name);
+                        // fall through
+                    case HALF_OPEN:
+                        if (trialInFlight) {
+                            return false;
+                        }
+                        trialInFlight = true;
+                        return true;
+                    default:
+                        return false;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * 记录一次调用结果，并根据窗口内错误率和慢调用比例更新熔断状态
+         */
+        void record(long latencyMs, boolean success) {
+            lock.lock();
+            try {
+                if (latencies == null) {
+                    latencies = new long[windowSize];
+                    outcomes = new boolean[windowSize];
+                }
+                latencies[next] = latencyMs;
+                outcomes[next] = success;
+                next = (next + 1) % windowSize;
+                count = Math.min(count + 1, windowSize);
+                
+                if (circuitState == CircuitState.HALF_OPEN) {
+                    trialInFlight = false;
+                    if (success && latencyMs < slowCallMs) {
+                        // 保留窗口：熔断前的失败仍压低权重，恢复的提供商随成功调用逐步增加流量
+                        circuitState = CircuitState.CLOSED;
+                        callsSinceClose = 0;
+                        log.info("AI提供商 [{}] 试探成功，熔断关闭", name);
+                    } else {
+                        open();
+                    }
+                    return;
+                }
+                
+                if (circuitState == CircuitState.CLOSED) {
+                    callsSinceClose = Math.min(callsSinceClose + 1, windowSize);
+                }
+                if (circuitState == CircuitState.CLOSED && callsSinceClose >= minCalls) {
+                    Stats stats = computeStats(Math.min(count, callsSinceClose));
+                    if (stats.errorRate() >= failureRateThreshold || stats.slowRate() >= slowCallRateThreshold) {
+                        open();
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * 释放半开试探许可（流式调用被客户端取消，未产生结果时）
+         */
+        void releaseTrial() {
+            lock.lock();
+            try {
+                trialInFlight = false;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        double weight(String preferred, double priorLatencyMs) {
+            lock.lock();
+            try {
+                return weightOf(computeStats(count), preferred, priorLatencyMs);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        Stats stats() {
+            lock.lock();
+            try {
+                return computeStats(count);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        Map<String, Object> snapshot(double priorLatencyMs) {
+            lock.lock();
+            try {
+                Stats stats = computeStats(count);
+                Map<String, Object> snapshot = new LinkedHashMap<>();
+                snapshot.put("name", name);
+                snapshot.put("circuitState", circuitState.name());
+                snapshot.put("calls", count);
+                snapshot.put("avgLatencyMs", Math.round(stats.avgLatencyMs()));
+                snapshot.put("errorRate", stats.errorRate());
+                snapshot.put("slowCallRate", stats.slowRate());
+                snapshot.put("preferred", name.equals(preferredProvider));
+                snapshot.put("weight", weightOf(stats, preferredProvider, priorLatencyMs));
+                return snapshot;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        /**
+         * 选择权重：基础权重 / 平均延迟 × 成功率。
+         * 样本不足min-calls次时按先验补足：缺少的成功调用按先验延迟计入平均延迟，缺少的调用按成功计入成功率，
+         * 新提供商不会因为没有样本而拿到远超其他提供商的权重
+         */
+        private double weightOf(Stats stats, String preferred, double priorLatencyMs) {
+            double base = name.equals(preferred) ? preferredWeight : 1.0;
+            int missingSuccesses = Math.max(minCalls - stats.successes(), 0);
+            double latencyMs = (stats.successLatencyMs() + missingSuccesses * priorLatencyMs)
+                    / Math.max(stats.successes(), minCalls);
+            double errorRate = (double) stats.failures() / Math.max(stats.calls(), minCalls);
+            return base / Math.max(latencyMs, 1.0) * Math.max(1.0 - errorRate, 0.01) * 1000;
+        }
+        
+        private void open() {
+            circuitState = CircuitState.OPEN;
+            openedAt = System.currentTimeMillis();
+            log.warn("AI提供商 [{}] 已退化，熔断打开 {}ms", name, openDurationMs);
+        }
+        
+        /**
+         * 统计窗口中最近calls次调用，延迟只取成功调用，快速失败的调用不会拉低平均延迟
+         */
+        private Stats computeStats(int calls) {
+            long successLatency = 0;
+            int successes = 0;
+            int failures = 0;
+            int slow = 0;
+            for (int k = 0; k < calls; k++) {
+                int i = (next - 1 - k + windowSize) % windowSize;
+                if (outcomes[i]) {
+                    successLatency += latencies[i];
+                    successes++;
+                } else {
+                    failures++;
+                }
+                if (latencies[i] >= slowCallMs) {
+                    slow++;
+                }
+            }
+            return new Stats(calls, successes, failures, slow, successLatency);
+        }
+    }
+    
+    private record Stats(int calls, int successes, int failures, int slow, long successLatencyMs) {
+        
+        double avgLatencyMs() {
+            return successes > 0 ? (double) successLatencyMs / successes : 0;
+        }
+        
+        double errorRate() {
+            return calls > 0 ? (double) failures / calls : 0;
+        }
+        
+        double slowRate() {
+            return calls > 0 ? (double) slow / calls : 0;
+        }
+    }
+    
+    private enum CircuitState {
+        CLOSED, OPEN, HALF_OPEN
+    }
+    
+    /**
+     * 单个功能的模型路由，作为ChatClient缓存的键
+     */
+    private record ModelRoute(String provider, String model, Integer maxTokens, Double temperature) {
+    }
+    
+    private record RoutedClient(ChatClient client, ChatOptions streamOptions) {
+    }
+}
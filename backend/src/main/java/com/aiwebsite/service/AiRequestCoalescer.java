@@ -0,0 +1,206 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.exception.AiFunctionException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 相同请求合并（single-flight）
+ * 功能、提供商、模型与归一化输入都相同的并发请求共享一次上游调用，调用结束即移除，不缓存结果。
+ * 加入与发起只依赖ConcurrentHashMap的原子操作和CAS，不持有锁；
+ * 上游调用在至少一个参与者预留积分成功后才开始，所有参与者都放弃等待时取消上游调用
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiRequestCoalescer {
+    
+    private final AiMetrics aiMetrics;
+    
+    @Value("${ai.coalescing.enabled:true}")
+    private boolean enabled;
+    
+    // 加入他人发起的调用时的积分折扣百分比，0表示照常计费
+    @Value("${ai.coalescing.joined-discount-percent:0}")
+    private int joinedDiscountPercent;
+    
+    private final Map<String, InFlight> inFlight = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void registerMetrics() {
+        aiMetrics.registerGauge("ai.coalescing.inflight", "正在进行的共享上游调用数", inFlight, Map::size);
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * 参与者应付的积分，加入他人发起的调用时按配置打折
+     */
+    public int pointsFor(Call call, int requiredPoints) {
+        if (!call.isJoined()) {
+            return requiredPoints;
+        }
+        return requiredPoints * (100 - Math.max(0, Math.min(100, joinedDiscountPercent))) / 100;
+    }
+    
+    /**
+     * 加入相同键的进行中调用，没有时登记一个新的调用；key为null或未启用合并时返回在当前线程执行的独占调用。
+     * 返回的调用必须以await()或leave()结束
+     */
+    public Call join(String key, String functionName, Supplier<String> upstream) {
+        if (!enabled || key == null) {
+            return new Call(null, upstream, false);
+        }
+        InFlight created = new InFlight(key, functionName, upstream);
+        while (true) {
+            InFlight existing = inFlight.putIfAbsent(key, created);
+            if (existing == null) {
+                return new Call(created, null, false);
+            }
+            if (existing.tryJoin()) {
+                return new Call(existing, null, true);
+            }
+            // 已有调用已结束或参与者都已离开，替换为新调用
+            if (inFlight.replace(key, existing, created)) {
+                return new Call(created, null, false);
+            }
+        }
+    }
+    
+    private void remove(InFlight call) {
+        inFlight.remove(call.key, call);
+    }
+    
+    /**
+     * 一次共享的上游调用
+     * 在独立的虚拟线程上执行，并绑定独立的调用上下文，任何一个参与者断开都不会中断其他参与者
+     */
+    private final class InFlight {
+        
+        private final String key;
+        private final AiCallContext context;
+        private final FutureTask<String> task;
+        private final AtomicInteger participants = new AtomicInteger(1);
+        private final AtomicBoolean started = new AtomicBoolean();
+        
+        InFlight(String key, String functionName, Supplier<String> upstream) {
+            this.key = key;
+            this.context = AiCallContext.detached(functionName);
+            this.task = new FutureTask<>(() -> context.callBound(upstream)) {
+                @Override
+                protected void done() {
+                    remove(InFlight.this);
+                }
+            };
+        }
+        
+        /**
+         * 参与者数为0表示调用已被放弃，不能再加入
+         */
+        boolean tryJoin() {
+            int current;
+            do {
+                current = participants.get();
+                if (current == 0 || task.isDone()) {
+                    return false;
+                }
+            } while (!participants.compareAndSet(current, current + 1));
+            return true;
+        }
+        
+        void start() {
+            if (started.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("ai-coalesced-" + context.getFunctionName()).start(task);
+            }
+        }
+        
+        void leave() {
+            if (participants.decrementAndGet() == 0) {
+                task.cancel(true);
+                remove(this);
+            }
+        }
+    }
+    
+    /**
+     * 参与者持有的调用句柄
+     */
+    public static final class Call {
+        
+        private final InFlight inFlight;
+        private final Supplier<String> inline;
+        private final boolean joined;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        
+        private Call(InFlight inFlight, Supplier<String> inline, boolean joined) {
+            this.inFlight = inFlight;
+            this.inline = inline;
+            this.joined = joined;
+        }
+        
+        /**
+         * 是否加入了其他请求发起的调用
+         */
+        public boolean isJoined() {
+            return joined;
+        }
+        
+        /**
+         * 等待上游调用结果，尚未开始时由本参与者发起，并把实际使用的提供商写回当前线程的调用上下文。
+         * 等待被中断时离开调用，上游调用在仍有其他参与者时继续
+         */
+        public String await() {
+            if (inline != null) {
+                return inline.get();
+            }
+            String functionName = inFlight.context.getFunctionName();
+            inFlight.start();
+            try {
+                String output = inFlight.task.get();
+                finished.set(true);
+                return output;
+            } catch (ExecutionException e) {
+                finished.set(true);
+                if (e.getCause() instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                throw new AiFunctionException(functionName, "AI功能处理失败: " + e.getCause().getMessage(), e.getCause());
+            } catch (CancellationException e) {
+                finished.set(true);
+                throw new AiFunctionException(functionName, "AI功能处理已取消", e);
+            } catch (InterruptedException e) {
+                leave();
+                Thread.currentThread().interrupt();
+                throw new AiFunctionException(functionName, "处理被中断", e);
+            } finally {
+                AiCallContext current = AiCallContext.current();
+                if (current != null) {
+                    current.setProvider(inFlight.context.getProvider());
+                }
+            }
+        }
+        
+        /**
+         * 不再等待结果，例如预留积分失败时；最后一个参与者离开时取消上游调用
+         */
+        public void leave() {
+            if (inFlight != null && finished.compareAndSet(false, true)) {
+                inFlight.leave();
+            }
+        }
+    }
+}
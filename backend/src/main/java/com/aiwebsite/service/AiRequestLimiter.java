@@ -0,0 +1,358 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.exception.RateLimitExceededException;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AI请求限流器
+ * 按用户令牌桶限制请求速率（每次消耗该功能的积分数作为令牌），
+ * 并对单用户、单功能和全局的并发请求数设上限；功能并发上限按积分成本折算，成本越高允许的并发越少。
+ * 所有状态均为CAS更新的原子计数器，全局并发计数按分片存放，避免限流器本身成为竞争热点
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AiRequestLimiter {
+    
+    private final AiFunctionConfigService configService;
+    
+    @Value("${ai.limiter.enabled:true}")
+    private boolean enabled;
+    
+    @Value("${ai.limiter.user.bucket-capacity:200}")
+    private long bucketCapacity;
+    
+    @Value("${ai.limiter.user.refill-per-second:5}")
+    private double refillPerSecond;
+    
+    @Value("${ai.limiter.user.max-concurrent:4}")
+    private int userMaxConcurrent;
+    
+    @Value("${ai.limiter.global.max-concurrent:200}")
+    private int globalMaxConcurrent;
+    
+    @Value("${ai.limiter.global.stripes:16}")
+    private int globalStripes;
+    
+    @Value("${ai.limiter.function.cost-budget:2000}")
+    private int functionCostBudget;
+    
+    @Value("${ai.limiter.idle-evict-ms:600000}")
+    private long idleEvictMs;
+    
+    private final Map<Long, UserState> users = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> functionInFlight = new ConcurrentHashMap<>();
+    private final LongAdder rejectedCount = new LongAdder();
+    private StripedCounter globalInFlight;
+    
+    @PostConstruct
+    public void init() {
+        this.globalInFlight = new StripedCounter(globalMaxConcurrent, globalStripes);
+        log.info("AI请求限流器已初始化，启用: {}, 全局并发: {}, 单用户并发: {}, 令牌桶容量: {}, 补充速率: {}/s",
+                enabled, globalMaxConcurrent, userMaxConcurrent, bucketCapacity, refillPerSecond);
+    }
+    
+    /**
+     * 为一次AI请求申请许可，超出任一限制时抛出带重试秒数的异常
+     * 返回的许可必须在请求结束（包括流式响应结束）时关闭
+     */
+    public Permit acquire(Long userId, String functionName) {
+        if (!enabled) {
+            return Permit.NOOP;
+        }
+        return acquire(userId, functionName, configService.getFunctionConfig(functionName).getPoints());
+    }
+    
+    /**
+     * 为批量请求申请并发许可，此时尚未解析请求体，令牌在得知项数后由chargeBatch按项数扣除
+     */
+    public Permit acquireForBatch(Long userId, String functionName) {
+        if (!enabled) {
+            return Permit.NOOP;
+        }
+        return acquire(userId, functionName, 0);
+    }
+    
+    /**
+     * 按批量项数从用户令牌桶扣除令牌（单项成本 × 项数），总成本超过桶容量时永远无法满足，同样拒绝
+     */
+    public void chargeBatch(Long userId, String functionName, int items) {
+        if (!enabled || items <= 0) {
+            return;
+        }
+        long cost = (long) configService.getFunctionConfig(functionName).getPoints() * items;
+        if (cost > bucketCapacity) {
+            throw reject(userId, functionName, "批量请求的总成本超过限流上限，请减少单次批量的项数",
+                    (long) Math.ceil(bucketCapacity / refillPerSecond));
+        }
+        // 调用方持有acquireForBatch的许可，用户状态不会在此期间被清理
+        TokenBucket bucket = users.computeIfAbsent(userId, id -> new UserState(bucketCapacity)).bucket;
+        long waitMs = bucket.tryConsume(cost, bucketCapacity, refillPerSecond);
+        if (waitMs > 0) {
+            throw reject(userId, functionName, "请求过于频繁，请稍后再试", (waitMs + 999) / 1000);
+        }
+    }
+    
+    private Permit acquire(Long userId, String functionName, int cost) {
+        UserState user = acquireUser(userId, functionName);
+        AtomicInteger userCounter = user.inFlight;
+        
+        AtomicInteger functionCounter = functionInFlight.computeIfAbsent(functionName, name -> new AtomicInteger());
+        if (!tryIncrement(functionCounter, getFunctionMaxConcurrent(cost))) {
+            userCounter.decrementAndGet();
+            throw reject(userId, functionName, "该功能当前繁忙，请稍后再试", 1);
+        }
+        
+        StripedCounter global = globalInFlight;
+        int stripe = global.tryAcquire();
+        if (stripe < 0) {
+            functionCounter.decrementAndGet();
+            userCounter.decrementAndGet();
+            throw reject(userId, functionName, "服务繁忙，请稍后再试", 1);
+        }
+        
+        long waitMs = cost > 0 ? user.bucket.tryConsume(cost, bucketCapacity, refillPerSecond) : 0;
+        if (waitMs > 0) {
+            global.release(stripe);
+            functionCounter.decrementAndGet();
+            userCounter.decrementAndGet();
+            throw reject(userId, functionName, "请求过于频繁，请稍后再试", (waitMs + 999) / 1000);
+        }
+        
+        return new Permit(() -> {
+            global.release(stripe);
+            functionCounter.decrementAndGet();
+            userCounter.decrementAndGet();
+        });
+    }
+    
+    /**
+     * 获取限流器运行状态
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("globalInFlight", globalInFlight.sum());
+        stats.put("globalMaxConcurrent", globalMaxConcurrent);
+        Map<String, Integer> functions = new LinkedHashMap<>();
+        functionInFlight.forEach((name, counter) -> functions.put(name, counter.get()));
+        stats.put("functionInFlight", functions);
+        stats.put("trackedUsers", users.size());
+        stats.put("rejectedCount", rejectedCount.sum());
+        return stats;
+    }
+    
+    /**
+     * 清理长时间空闲、没有进行中的请求且令牌已回满的用户状态
+     * 先把进行中计数从0置为RETIRED，此后申请许可的请求不会再使用该状态，再确认令牌已回满后按原值移除；
+     * 令牌未回满时恢复计数，保留状态，清理不会让用户的令牌提前回满
+     */
+    @Scheduled(fixedDelayString = "${ai.limiter.idle-evict-ms:600000}")
+    public void evictIdleUsers() {
+        long now = System.nanoTime();
+        long idleNanos = idleEvictMs * 1_000_000L;
+        for (Map.Entry<Long, UserState> entry : users.entrySet()) {
+            UserState user = entry.getValue();
+            if (now - user.bucket.lastAccessNanos() <= idleNanos
+                    || !user.inFlight.compareAndSet(0, UserState.RETIRED)) {
+                continue;
+            }
+            if (user.bucket.isFull(bucketCapacity, refillPerSecond)) {
+                users.remove(entry.getKey(), user);
+            } else {
+                user.inFlight.set(0);
+            }
+        }
+    }
+    
+    /**
+     * 占用一个用户并发名额，返回占用名额的用户状态；
+     * 状态正被清理（RETIRED）时等待其移除或恢复后重新获取
+     */
+    private UserState acquireUser(Long userId, String functionName) {
+        while (true) {
+            UserState user = users.computeIfAbsent(userId, id -> new UserState(bucketCapacity));
+            int current = user.inFlight.get();
+            if (current == UserState.RETIRED) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (current >= userMaxConcurrent) {
+                throw reject(userId, functionName, "同时进行的AI请求过多，请等待当前请求完成", 1);
+            }
+            if (user.inFlight.compareAndSet(current, current + 1)) {
+                return user;
+            }
+        }
+    }
+    
+    /**
+     * 功能并发上限 = 成本预算 / 单次积分，至少为1
+     */
+    private int getFunctionMaxConcurrent(int cost) {
+        return Math.max(1, functionCostBudget / Math.max(1, cost));
+    }
+    
+    private RateLimitExceededException reject(Long userId, String functionName, String message, long retryAfterSeconds) {
+        rejectedCount.increment();
+        log.debug("AI请求被限流 - 用户: {}, 功能: {}, 原因: {}, 重试等待: {}s", userId, functionName, message, retryAfterSeconds);
+        return new RateLimitExceededException(message, Math.max(1, retryAfterSeconds));
+    }
+    
+    private static boolean tryIncrement(AtomicInteger counter, int max) {
+        while (true) {
+            int current = counter.get();
+            if (current >= max) {
+                return false;
+            }
+            if (counter.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * 请求许可，关闭时归还并发名额，重复关闭无副作用
+     */
+    public static class Permit implements AutoCloseable {
+        
+        static final Permit NOOP = new Permit(() -> { });
+        
+        private final Runnable onRelease;
+        private final AtomicBoolean released = new AtomicBoolean();
+        
+        Permit(Runnable onRelease) {
+            this.onRelease = onRelease;
+        }
+        
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                onRelease.run();
+            }
+        }
+    }
+    
+    /**
+     * 单个用户的限流状态：令牌桶与进行中的请求数，进行中计数为RETIRED表示状态正被清理
+     */
+    private static class UserState {
+        
+        static final int RETIRED = -1;
+        
+        private final TokenBucket bucket;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        
+        UserState(long capacity) {
+            this.bucket = new TokenBucket(capacity);
+        }
+    }
+    
+    /**
+     * 令牌桶，令牌数与上次补充时间打包为不可变状态，通过CAS整体替换
+     */
+    private static class TokenBucket {
+        
+        private record State(double tokens, long refillNanos) { }
+        
+        private final AtomicReference<State> state;
+        private final AtomicLong lastAccess = new AtomicLong(System.nanoTime());
+        
+        TokenBucket(long capacity) {
+            this.state = new AtomicReference<>(new State(capacity, System.nanoTime()));
+        }
+        
+        /**
+         * 尝试消耗令牌，成功返回0，否则返回令牌补足所需的毫秒数
+         */
+        long tryConsume(long cost, long capacity, double refillPerSecond) {
+            long now = System.nanoTime();
+            lastAccess.set(now);
+            double required = Math.min(cost, capacity);
+            while (true) {
+                State current = state.get();
+                double elapsedSeconds = Math.max(0, now - current.refillNanos()) / 1_000_000_000.0;
+                double tokens = Math.min(capacity, current.tokens() + elapsedSeconds * refillPerSecond);
+                if (tokens < required) {
+                    return (long) Math.ceil((required - tokens) / refillPerSecond * 1000);
+                }
+                if (state.compareAndSet(current, new State(tokens - required, now))) {
+                    return 0;
+                }
+            }
+        }
+        
+        long lastAccessNanos() {
+            return lastAccess.get();
+        }
+        
+        /**
+         * 按当前时间补充后令牌是否已满
+         */
+        boolean isFull(long capacity, double refillPerSecond) {
+            State current = state.get();
+            double elapsedSeconds = Math.max(0, System.nanoTime() - current.refillNanos()) / 1_000_000_000.0;
+            return current.tokens() + elapsedSeconds * refillPerSecond >= capacity;
+        }
+    }
+    
+    /**
+     * 分片并发计数器，总上限平均分到各分片，线程随机选择起始分片，满则依次尝试其余分片
+     */
+    private static class StripedCounter {
+        
+        private final AtomicInteger[] stripes;
+        private final int[] limits;
+        
+        StripedCounter(int max, int stripeCount) {
+            int count = Math.max(1, Math.min(stripeCount, max));
+            this.stripes = new AtomicInteger[count];
+            this.limits = new int[count];
+            for (int i = 0; i < count; i++) {
+                stripes[i] = new AtomicInteger();
+                limits[i] = max / count + (i < max % count ? 1 : 0);
+            }
+        }
+        
+        /**
+         * 获取一个名额，返回所占分片下标，全部分片已满时返回-1
+         */
+        int tryAcquire() {
+            int start = ThreadLocalRandom.current().nextInt(stripes.length);
+            for (int i = 0; i < stripes.length; i++) {
+                int index = (start + i) % stripes.length;
+                if (tryIncrement(stripes[index], limits[index])) {
+                    return index;
+                }
+            }
+            return -1;
+        }
+        
+        void release(int index) {
+            stripes[index].decrementAndGet();
+        }
+        
+        int sum() {
+            int total = 0;
+            for (AtomicInteger stripe : stripes) {
+                total += stripe.get();
+            }
+            return total;
+        }
+    }
+}
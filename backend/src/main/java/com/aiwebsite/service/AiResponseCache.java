@@ -0,0 +1,279 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.config.AiCacheProperties;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * AI响应精确匹配缓存
+ * 以提供商、模型、功能名称、系统提示词和规范化后的输入为键。
+ * 小响应存放在堆内LRU层，大响应的内容存放在堆外直接内存中，堆内只保留索引，减少GC压力。
+ * 堆外内存在启动时按容量一次性分配并切分为分片，条目被淘汰、过期或替换后分片归还复用
+ */
+@Slf4j
+@Service
+public class AiResponseCache {
+    
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    
+    private final AiCacheProperties properties;
+    
+    private final Cache<String, HeapEntry> heapTier;
+    private final Cache<String, OffHeapEntry> offHeapTier;
+    private final OffHeapSlabPool slabPool;
+    
+    private final LongAdder heapHits = new LongAdder();
+    private final LongAdder offHeapHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder offHeapRejected = new LongAdder();
+    
+    public AiResponseCache(AiCacheProperties properties) {
+        this.properties = properties;
+        this.heapTier = Caffeine.newBuilder()
+                .maximumWeight(properties.getHeapMaxBytes())
+                .weigher((String key, HeapEntry entry) -> entry.value().length() * 2)
+                .expireAfter(new EntryExpiry<HeapEntry>())
+                .build();
+        // 未启用缓存时不占用直接内存
+        this.slabPool = properties.isEnabled() && properties.getOffHeapMaxBytes() >= properties.getOffHeapSlabBytes()
+                ? new OffHeapSlabPool(properties.getOffHeapMaxBytes(), properties.getOffHeapSlabBytes())
+                : null;
+        // 移除回调同步执行，分片在条目移除后立即归还
+        this.offHeapTier = Caffeine.newBuilder()
+                .maximumWeight(slabPool != null ? slabPool.getCapacityBytes() : 0)
+                .weigher((String key, OffHeapEntry entry) -> entry.slabs().length * properties.getOffHeapSlabBytes())
+                .expireAfter(new EntryExpiry<OffHeapEntry>())
+                .executor(Runnable::run)
+                .removalListener((String key, OffHeapEntry entry, RemovalCause cause) -> {
+                    if (entry != null) {
+                        entry.release(slabPool);
+                    }
+                })
+                .build();
+    }
+    
+    /**
+     * 是否启用响应缓存
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+    
+    /**
+     * 构建缓存键
+     */
+    public String buildKey(String provider, String model, String functionName, String systemPrompt, String input) {
+        String raw = String.join("\u0000", provider, model, functionName,
+                systemPrompt == null ? "" : systemPrompt, normalize(input));
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(raw.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * 查询缓存，依次查找堆内层和堆外层
+     */
+    public Optional<String> get(String key) {
+        HeapEntry heapEntry = heapTier.getIfPresent(key);
+        if (heapEntry != null) {
+            heapHits.increment();
+            return Optional.of(heapEntry.value());
+        }
+        
+        OffHeapEntry offHeapEntry = offHeapTier.getIfPresent(key);
+        // 读取期间持有引用，条目恰好被移除时分片在读完后才归还
+        if (offHeapEntry != null && offHeapEntry.retain()) {
+            try {
+                byte[] bytes = slabPool.read(offHeapEntry.slabs(), offHeapEntry.length());
+                offHeapHits.increment();
+                return Optional.of(new String(bytes, StandardCharsets.UTF_8));
+            } finally {
+                offHeapEntry.release(slabPool);
+            }
+        }
+        
+        misses.increment();
+        return Optional.empty();
+    }
+    
+    /**
+     * 写入缓存，按响应大小选择缓存层
+     * @param ttlSeconds 有效期（秒）
+     */
+    public void put(String key, String value, long ttlSeconds) {
+        if (value == null || value.isEmpty() || ttlSeconds <= 0) {
+            return;
+        }
+        long expiresAtNanos = System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds);
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        
+        if (slabPool != null && bytes.length >= properties.getOffHeapThresholdBytes()) {
+            if (!putOffHeap(key, bytes, expiresAtNanos)) {
+                offHeapRejected.increment();
+                return;
+            }
+        } else {
+            heapTier.put(key, new HeapEntry(value, expiresAtNanos));
+        }
+        puts.increment();
+    }
+    
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        heapTier.invalidateAll();
+        offHeapTier.invalidateAll();
+    }
+    
+    /**
+     * 缓存命中统计
+     */
+    public Map<String, Object> getStats() {
+        long hits = heapHits.sum() + offHeapHits.sum();
+        long total = hits + misses.sum();
+        
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", properties.isEnabled());
+        stats.put("hits", hits);
+        stats.put("heapHits", heapHits.sum());
+        stats.put("offHeapHits", offHeapHits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("puts", puts.sum());
+        stats.put("hitRate", total == 0 ? 0.0 : (double) hits / total);
+        stats.put("heapEntries", heapTier.estimatedSize());
+        stats.put("offHeapEntries", offHeapTier.estimatedSize());
+        stats.put("offHeapBytes", offHeapTier.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L));
+        stats.put("offHeapCapacityBytes", slabPool != null ? slabPool.getCapacityBytes() : 0L);
+        stats.put("offHeapFreeBytes", slabPool != null ? slabPool.getFreeBytes() : 0L);
+        stats.put("offHeapRejected", offHeapRejected.sum());
+        return stats;
+    }
+    
+    /**
+     * 写入堆外层；分片暂时不足时先执行一次淘汰再重试，仍不足或响应超过整个堆外容量时不缓存
+     */
+    private boolean putOffHeap(String key, byte[] bytes, long expiresAtNanos) {
+        if ((long) slabPool.slabsFor(bytes.length) * slabPool.getSlabBytes() > slabPool.getCapacityBytes()) {
+            return false;
+        }
+        int[] slabs = slabPool.write(bytes);
+        if (slabs == null) {
+            offHeapTier.cleanUp();
+            slabs = slabPool.write(bytes);
+        }
+        if (slabs == null) {
+            return false;
+        }
+        offHeapTier.put(key, new OffHeapEntry(slabs, bytes.length, expiresAtNanos));
+        return true;
+    }
+    
+    /**
+     * 规范化输入：Unicode NFC、去除首尾空白、合并连续空白
+     */
+    private String normalize(String input) {
+        String normalized = Normalizer.normalize(input, Normalizer.Form.NFC).trim();
+        return WHITESPACE.matcher(normalized).replaceAll(" ");
+    }
+    
+    private interface Expiring {
+        long expiresAtNanos();
+    }
+    
+    private record HeapEntry(String value, long expiresAtNanos) implements Expiring {
+    }
+    
+    /**
+     * 堆外条目：内容所在的分片及引用计数，缓存本身持有一个引用，计数归零时归还分片
+     */
+    private static final class OffHeapEntry implements Expiring {
+        
+        private final int[] slabs;
+        private final int length;
+        private final long expiresAtNanos;
+        private final AtomicInteger refs = new AtomicInteger(1);
+        
+        OffHeapEntry(int[] slabs, int length, long expiresAtNanos) {
+            this.slabs = slabs;
+            this.length = length;
+            this.expiresAtNanos = expiresAtNanos;
+        }
+        
+        int[] slabs() {
+            return slabs;
+        }
+        
+        int length() {
+            return length;
+        }
+        
+        @Override
+        public long expiresAtNanos() {
+            return expiresAtNanos;
+        }
+        
+        /**
+         * 读取前获取引用，分片已归还时返回false
+         */
+        boolean retain() {
+            int current;
+            do {
+                current = refs.get();
+                if (current == 0) {
+                    return false;
+                }
+            } while (!refs.compareAndSet(current, current + 1));
+            return true;
+        }
+        
+        void release(OffHeapSlabPool pool) {
+            if (refs.decrementAndGet() == 0) {
+                pool.free(slabs);
+            }
+        }
+    }
+    
+    /**
+     * 按条目各自的过期时间淘汰
+     */
+    private static class EntryExpiry<V extends Expiring> implements Expiry<String, V> {
+        
+        @Override
+        public long expireAfterCreate(String key, V value, long currentTime) {
+            return Math.max(0, value.expiresAtNanos() - System.nanoTime());
+        }
+        
+        @Override
+        public long expireAfterUpdate(String key, V value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+        
+        @Override
+        public long expireAfterRead(String key, V value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package com.aiwebsite.service;
 
-import com.aiwebsite.entity.User;
+import com.aiwebsite.dto.AiBatchItemResult;
+import com.aiwebsite.entity.PointsReservation;
 import com.aiwebsite.exception.AiFunctionException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import jakarta.annotation.PostConstruct;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.context.Context;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
@@ -22,12 +32,26 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class AiService {
     
-    private final UserService userService;
+    private static final String CHAT_FUNCTION = "chat";
+    
     private final PointsService pointsService;
     private final AuditService auditService;
     private final AiFunctionConfigService configService;
+    private final AiChatService aiChatService;
+    private final AiResponseCache responseCache;
+    private final AiMetrics aiMetrics;
+    private final UploadService uploadService;
+    private final AiRequestCoalescer requestCoalescer;
+    private final ConversationMemory conversationMemory;
+    private final AiRequestLimiter requestLimiter;
     private final List<AiProcessor> aiProcessors;
     
+    @Value("${ai.batch.max-items:100}")
+    private int batchMaxItems;
+    
+    @Value("${ai.batch.max-concurrency:8}")
+    private int batchMaxConcurrency;
+    
     // 处理器映射，提高查找效率
     private Map<String, AiProcessor> processorMap;
     
@@ -40,55 +64,323 @@ public class AiService {
     
     /**
      * 处理AI功能 - 重构版本
+     * 预留积分、调用模型、结算预留分为三步，模型调用期间不持有数据库连接和行锁
      * @param userId 用户ID
      * @param functionName 功能名称
      * @param input 输入数据
      * @return 处理结果
      */
-    @Transactional
     public String processAiFunction(Long userId, String functionName, String input) {
         long startTime = System.currentTimeMillis();
-        User user = getUserById(userId);
+        long startNanos = System.nanoTime();
         AiProcessor processor = getProcessor(functionName);
-        int requiredPoints = processor.getRequiredPoints();
         
         // 验证输入
         if (!processor.validateInput(input)) {
             throw new IllegalArgumentException("输入数据无效");
         }
+        int requiredPoints = processor.getRequiredPoints(input);
         
-        // 检查并扣除积分
-        pointsService.deductPoints(userId, requiredPoints, 
-            "使用" + configService.getFunctionConfig(functionName).getDisplayName() + "功能", 
-            functionName);
+        // 命中响应缓存时直接扣除积分返回，不调用模型
+        RequestKey cacheKey = buildCacheKey(processor, input);
+        Optional<String> cached = cacheKey != null ? responseCache.get(cacheKey.value()) : Optional.empty();
+        if (cached.isPresent()) {
+            return serveFromCache(userId, functionName, input, requiredPoints, cached.get(), startTime, startNanos);
+        }
+        
+        // 相同的并发请求共享一次上游调用，每个请求仍各自预留积分并记录使用情况
+        String requestKey = !requestCoalescer.isEnabled() ? null
+                : cacheKey != null ? cacheKey.value() : buildRequestKey(processor, input).value();
+        AiRequestCoalescer.Call call = requestCoalescer.join(requestKey, functionName, () -> processor.process(input));
+        int chargedPoints = requestCoalescer.pointsFor(call, requiredPoints);
         
+        // 检查并预留积分
+        PointsReservation reservation;
         try {
-            // 处理AI功能
-            String output = processor.process(input);
+            reservation = reservePoints(userId, functionName, chargedPoints);
+        } catch (RuntimeException e) {
+            call.leave();
+            throw e;
+        }
+        
+        AiCallContext context = AiCallContext.open(functionName);
+        try {
+            // 处理AI功能（事务之外）
+            String output = call.await();
             long executionTime = System.currentTimeMillis() - startTime;
             
-            // 记录成功使用
-            auditService.recordSuccess(user, functionName, input, output, requiredPoints, executionTime);
+            // 确认扣除并记录成功使用
+            pointsService.confirmReservation(reservation);
+            auditService.recordSuccess(userId, functionName, input, output, chargedPoints, executionTime);
+            if (!call.isJoined()) {
+                cacheResponse(cacheKey, functionName, output, context.getProvider());
+            }
             
+            aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, context.getProvider(), 
+                    call.isJoined() ? AiMetrics.OUTCOME_COALESCED : AiMetrics.OUTCOME_SUCCESS, 
+                    System.nanoTime() - startNanos);
             return output;
         } catch (Exception e) {
             long executionTime = System.currentTimeMillis() - startTime;
             
-            // 记录失败使用（不退还积分，因为已经消耗了AI资源）
-            auditService.recordFailure(user, functionName, input, requiredPoints, executionTime, e.getMessage());
+            // 释放预留并记录失败使用
+            pointsService.releaseReservation(reservation, "AI功能处理失败，退还积分");
+            auditService.recordFailure(userId, functionName, input, 0, executionTime, e.getMessage());
             
+            aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, context.getProvider(), 
+                    AiMetrics.OUTCOME_FAILURE, System.nanoTime() - startNanos);
             throw e; // 重新抛出异常
+        } finally {
+            context.close();
+        }
+    }
+    
+    /**
+     * 流式处理AI功能
+     * 积分在订阅流时预留，流正常结束或客户端断开时确认扣除，失败时释放，并记录完整输出
+     * @param userId 用户ID
+     * @param functionName 功能名称
+     * @param input 输入数据
+     * @return 按生成顺序推送的结果片段
+     */
+    public Flux<String> processAiFunctionStream(Long userId, String functionName, String input) {
+        AiProcessor processor = getProcessor(functionName);
+        
+        // 验证输入
+        if (!processor.validateInput(input)) {
+            throw new IllegalArgumentException("输入数据无效");
+        }
+        int requiredPoints = processor.getRequiredPoints(input);
+        RequestKey cacheKey = buildCacheKey(processor, input);
+        
+        // 扣费与预留都在订阅时进行，与结算处于同一订阅周期，返回的流未被订阅时不会留下无人结算的预留
+        return Flux.defer(() -> {
+            long startTime = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            
+            // 命中响应缓存时一次性推送完整结果
+            Optional<String> cached = cacheKey != null ? responseCache.get(cacheKey.value()) : Optional.empty();
+            if (cached.isPresent()) {
+                return Flux.just(serveFromCache(userId, functionName, input, requiredPoints, cached.get(), startTime, startNanos));
+            }
+            
+            // 检查并预留积分
+            PointsReservation reservation = reservePoints(userId, functionName, requiredPoints);
+            
+            AiCallContext context = AiCallContext.detached(functionName);
+            StringBuilder output = new StringBuilder();
+            return processor.processStream(input)
+                    .doOnNext(output::append)
+                    .doOnComplete(() -> {
+                        pointsService.confirmReservation(reservation);
+                        auditService.recordSuccess(userId, functionName, input, 
+                                output.toString(), requiredPoints, System.currentTimeMillis() - startTime);
+                        cacheResponse(cacheKey, functionName, output.toString(), context.getProvider());
+                        aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, context.getProvider(), 
+                                AiMetrics.OUTCOME_SUCCESS, System.nanoTime() - startNanos);
+                    })
+                    .doOnError(e -> {
+                        pointsService.releaseReservation(reservation, "AI功能处理失败，退还积分");
+                        auditService.recordFailure(userId, functionName, input, 
+                                0, System.currentTimeMillis() - startTime, e.getMessage());
+                        aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, context.getProvider(), 
+                                AiMetrics.OUTCOME_FAILURE, System.nanoTime() - startNanos);
+                    })
+                    .doOnCancel(() -> {
+                        // 已推送的内容消耗了模型资源，断开时仍确认扣除
+                        pointsService.confirmReservation(reservation);
+                        auditService.recordFailure(userId, functionName, input, 
+                                requiredPoints, System.currentTimeMillis() - startTime, "客户端已断开连接");
+                        aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, context.getProvider(), 
+                                AiMetrics.OUTCOME_CANCELLED, System.nanoTime() - startNanos);
+                    })
+                    .contextWrite(Context.of(AiCallContext.class, context));
+        });
+    }
+    
+    /**
+     * 在会话中发送一条聊天消息
+     * 提示由会话记忆按token预算组装，计费与单次聊天相同；会话上下文各不相同，不走响应缓存和请求合并
+     * @param userId 用户ID
+     * @param conversationId 会话ID
+     * @param message 本轮消息
+     * @return 模型回复
+     */
+    public String processConversation(Long userId, String conversationId, String message) {
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        AiProcessor processor = getProcessor(CHAT_FUNCTION);
+        
+        // 验证输入
+        if (!processor.validateInput(message)) {
+            throw new IllegalArgumentException("输入数据无效");
+        }
+        int requiredPoints = processor.getRequiredPoints(message);
+        Prompt prompt = conversationMemory.buildPrompt(userId, conversationId, message);
+        
+        // 检查并预留积分
+        PointsReservation reservation = reservePoints(userId, CHAT_FUNCTION, requiredPoints);
+        
+        AiCallContext context = AiCallContext.open(CHAT_FUNCTION);
+        try {
+            String output;
+            try {
+                output = aiChatService.chat(prompt);
+            } catch (AiFunctionException e) {
+                throw e;
+            } catch (RuntimeException e) {
+                throw new AiFunctionException(CHAT_FUNCTION, "AI功能处理失败: " + e.getMessage(), e);
+            }
+            conversationMemory.recordTurn(userId, conversationId, message, output);
+            
+            pointsService.confirmReservation(reservation);
+            auditService.recordSuccess(userId, CHAT_FUNCTION, message, output, requiredPoints, 
+                    System.currentTimeMillis() - startTime);
+            aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, CHAT_FUNCTION, context.getProvider(), 
+                    AiMetrics.OUTCOME_SUCCESS, System.nanoTime() - startNanos);
+            return output;
+        } catch (Exception e) {
+            pointsService.releaseReservation(reservation, "AI功能处理失败，退还积分");
+            auditService.recordFailure(userId, CHAT_FUNCTION, message, 0, 
+                    System.currentTimeMillis() - startTime, e.getMessage());
+            aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, CHAT_FUNCTION, context.getProvider(), 
+                    AiMetrics.OUTCOME_FAILURE, System.nanoTime() - startNanos);
+            throw e;
+        } finally {
+            context.close();
+        }
+    }
+    
+    /**
+     * 在会话中流式发送一条聊天消息，流结束或客户端断开时把已生成的回复记入会话
+     * @param userId 用户ID
+     * @param conversationId 会话ID
+     * @param message 本轮消息
+     * @return 按生成顺序推送的回复片段
+     */
+    public Flux<String> processConversationStream(Long userId, String conversationId, String message) {
+        AiProcessor processor = getProcessor(CHAT_FUNCTION);
+        
+        // 验证输入
+        if (!processor.validateInput(message)) {
+            throw new IllegalArgumentException("输入数据无效");
+        }
+        int requiredPoints = processor.getRequiredPoints(message);
+        Prompt prompt = conversationMemory.buildPrompt(userId, conversationId, message);
+        
+        // 预留在订阅时进行，与结算处于同一订阅周期
+        return Flux.defer(() -> {
+            long startTime = System.currentTimeMillis();
+            long startNanos = System.nanoTime();
+            
+            // 检查并预留积分
+            PointsReservation reservation = reservePoints(userId, CHAT_FUNCTION, requiredPoints);
+            
+            AiCallContext context = AiCallContext.detached(CHAT_FUNCTION);
+            StringBuilder output = new StringBuilder();
+            return aiChatService.streamChat(prompt)
+                    .onErrorMap(e -> !(e instanceof AiFunctionException), 
+                            e -> new AiFunctionException(CHAT_FUNCTION, "AI功能处理失败: " + e.getMessage(), e))
+                    .doOnNext(output::append)
+                    .doOnComplete(() -> {
+                        conversationMemory.recordTurn(userId, conversationId, message, output.toString());
+                        pointsService.confirmReservation(reservation);
+                        auditService.recordSuccess(userId, CHAT_FUNCTION, message, 
+                                output.toString(), requiredPoints, System.currentTimeMillis() - startTime);
+                        aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, CHAT_FUNCTION, context.getProvider(), 
+                                AiMetrics.OUTCOME_SUCCESS, System.nanoTime() - startNanos);
+                    })
+                    .doOnError(e -> {
+                        pointsService.releaseReservation(reservation, "AI功能处理失败，退还积分");
+                        auditService.recordFailure(userId, CHAT_FUNCTION, message, 
+                                0, System.currentTimeMillis() - startTime, e.getMessage());
+                        aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, CHAT_FUNCTION, context.getProvider(), 
+                                AiMetrics.OUTCOME_FAILURE, System.nanoTime() - startNanos);
+                    })
+                    .doOnCancel(() -> {
+                        // 已推送的内容消耗了模型资源，断开时仍确认扣除，用户已看到的部分回复也记入会话
+                        if (!output.isEmpty()) {
+                            conversationMemory.recordTurn(userId, conversationId, message, output.toString());
+                        }
+                        pointsService.confirmReservation(reservation);
+                        auditService.recordFailure(userId, CHAT_FUNCTION, message, 
+                                requiredPoints, System.currentTimeMillis() - startTime, "客户端已断开连接");
+                        aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, CHAT_FUNCTION, context.getProvider(), 
+                                AiMetrics.OUTCOME_CANCELLED, System.nanoTime() - startNanos);
+                    })
+                    .contextWrite(Context.of(AiCallContext.class, context));
+        });
+    }
+    
+    /**
+     * 批量处理AI功能
+     * 逐项校验输入，有效项的积分合计后一次预留；各项以有限并发并行处理，按完成顺序推送结果，
+     * 全部结束（或客户端断开）后按成功项的积分一次结算，其余退还
+     * @param userId 用户ID
+     * @param functionName 功能名称
+     * @param inputs 输入列表
+     * @return 各项处理结果，index为该项在inputs中的位置
+     */
+    public Flux<AiBatchItemResult> processBatch(Long userId, String functionName, List<String> inputs) {
+        AiProcessor processor = getProcessor(functionName);
+        if (inputs == null || inputs.isEmpty()) {
+            throw new IllegalArgumentException("输入列表不能为空");
+        }
+        if (inputs.size() > batchMaxItems) {
+            throw new IllegalArgumentException("单次批量请求最多" + batchMaxItems + "项");
+        }
+        // 每一项都按一次单独调用计入用户令牌桶，批量不能绕过速率限制
+        requestLimiter.chargeBatch(userId, functionName, inputs.size());
+        
+        // 无效项记为-1，不预留积分
+        int[] itemPoints = new int[inputs.size()];
+        int totalPoints = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            String input = inputs.get(i);
+            if (input == null || input.trim().isEmpty() || !processor.validateInput(input)) {
+                itemPoints[i] = -1;
+            } else {
+                itemPoints[i] = processor.getRequiredPoints(input);
+                totalPoints += itemPoints[i];
+            }
         }
+        
+        int reservedPoints = totalPoints;
+        // 预留在订阅时进行，与结算处于同一订阅周期，返回的流未被订阅时不会留下无人结算的预留
+        return Flux.defer(() -> {
+            // 检查并一次预留全部有效项的积分
+            PointsReservation reservation = reservedPoints > 0 ? reservePoints(userId, functionName, reservedPoints) : null;
+            AtomicInteger consumed = new AtomicInteger();
+            // 在结束信号到达调用方之前结算，调用方拿到结果时积分已经退还
+            AtomicBoolean settled = new AtomicBoolean();
+            Runnable settle = () -> {
+                if (reservation != null && settled.compareAndSet(false, true)) {
+                    pointsService.settleReservation(reservation, consumed.get(), "批量请求部分项未完成，退还积分");
+                }
+            };
+            
+            return Flux.range(0, inputs.size())
+                    .flatMap(index -> itemPoints[index] < 0
+                            ? Mono.just(AiBatchItemResult.failure(index, "输入数据无效"))
+                            : Mono.fromCallable(() -> processBatchItem(userId, processor, index, inputs.get(index), 
+                                            itemPoints[index], consumed))
+                                    .subscribeOn(Schedulers.boundedElastic()),
+                            batchMaxConcurrency)
+                    .doOnTerminate(settle)
+                    .doOnCancel(settle);
+        });
     }
     
     /**
-     * 电影快剪功能（特殊处理，因为有多个参数）
+     * 构建电影快剪的处理器输入（特殊处理，因为有多个参数）
+     * 视频已通过分块上传写入磁盘，这里只校验上传已完成并把uploadId传给处理器
      */
-    @Transactional
-    public String movieClip(Long userId, String description, String clipType, String style, int targetLength) {
-        // 构建输入参数
-        String input = String.format("描述:%s|类型:%s|风格:%s|时长:%d", description, clipType, style, targetLength);
-        return processAiFunction(userId, "movie-clip", input);
+    public String buildMovieClipInput(Long userId, String uploadId, String description, String clipType, 
+                                      String style, int targetLength) {
+        Path video = uploadService.getCompletedFile(userId, uploadId);
+        log.debug("电影快剪使用上传文件: {}", video);
+        return String.format("上传:%s|文件:%s|描述:%s|类型:%s|风格:%s|时长:%d", uploadId, 
+                uploadService.getFileName(userId, uploadId), description, clipType, style, targetLength);
     }
     
     /**
@@ -105,20 +397,26 @@ public class AiService {
         return configService.getAllFunctionConfigs();
     }
     
+    /**
+     * 获取响应缓存统计
+     */
+    public Map<String, Object> getCacheStats() {
+        return responseCache.getStats();
+    }
+    
     /**
      * 检查功能是否可用
      */
     public boolean isFunctionAvailable(String functionName) {
-        return processorMap.containsKey(functionName) && 
-               configService.getEnabledFunctions().contains(functionName);
+        return processorMap.containsKey(functionName) && configService.isFunctionEnabled(functionName);
     }
     
     // 私有辅助方法
     
     /**
-     * 获取处理器
+     * 获取处理器，异步任务服务也通过它查找处理器
      */
-    private AiProcessor getProcessor(String functionName) {
+    AiProcessor getProcessor(String functionName) {
         AiProcessor processor = processorMap.get(functionName);
         if (processor == null) {
             throw new AiFunctionException(functionName, "未知的AI功能: " + functionName);
@@ -127,10 +425,116 @@ public class AiService {
     }
     
     /**
-     * 获取用户信息
+     * 构建响应缓存键，缓存未启用或功能不可缓存时返回null
+     */
+    private RequestKey buildCacheKey(AiProcessor processor, String input) {
+        String functionName = processor.getFunctionName();
+        if (!responseCache.isEnabled() || !configService.getFunctionConfig(functionName).isCacheable()) {
+            return null;
+        }
+        return buildRequestKey(processor, input);
+    }
+    
+    /**
+     * 构建请求键：提供商、模型、功能、系统提示词与归一化输入，同时用作缓存键与请求合并键
+     */
+    private RequestKey buildRequestKey(AiProcessor processor, String input) {
+        String functionName = processor.getFunctionName();
+        String provider = aiChatService.getProviderFor(functionName);
+        return new RequestKey(provider, responseCache.buildKey(provider, aiChatService.getModelFor(functionName),
+                functionName, processor.getSystemPrompt(), input));
+    }
+    
+    /**
+     * 缓存成功的响应；故障转移到其他提供商生成的结果不缓存，避免以首选提供商的键返回其他模型的回答
+     */
+    private void cacheResponse(RequestKey cacheKey, String functionName, String output, String actualProvider) {
+        if (cacheKey != null && cacheKey.provider().equals(actualProvider)) {
+            responseCache.put(cacheKey.value(), output, configService.getFunctionConfig(functionName).getCacheTtlSeconds());
+        }
+    }
+    
+    /**
+     * 以缓存结果响应：正常扣除积分，并以CACHE_HIT状态记录使用情况
+     */
+    private String serveFromCache(Long userId, String functionName, String input, 
+                                  int requiredPoints, String output, long startTime, long startNanos) {
+        long pointsStart = System.nanoTime();
+        pointsService.deductPoints(userId, requiredPoints, 
+            "使用" + configService.getFunctionConfig(functionName).getDisplayName() + "功能", 
+            functionName);
+        aiMetrics.recordStage(AiMetrics.STAGE_POINTS, functionName, AiMetrics.NONE, 
+                AiMetrics.OUTCOME_SUCCESS, System.nanoTime() - pointsStart);
+        auditService.recordCacheHit(userId, functionName, input, output, requiredPoints, 
+                System.currentTimeMillis() - startTime);
+        aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, AiMetrics.PROVIDER_CACHE, 
+                AiMetrics.OUTCOME_CACHE_HIT, System.nanoTime() - startNanos);
+        return output;
+    }
+    
+    /**
+     * 处理批量请求中的一项，失败只影响本项；成功时把本项积分计入已消费
+     */
+    private AiBatchItemResult processBatchItem(Long userId, AiProcessor processor, int index, String input, 
+                                               int requiredPoints, AtomicInteger consumed) {
+        long startTime = System.currentTimeMillis();
+        long startNanos = System.nanoTime();
+        String functionName = processor.getFunctionName();
+        
+        // 命中响应缓存时不调用模型，仍照常计费
+        RequestKey cacheKey = buildCacheKey(processor, input);
+        Optional<String> cached = cacheKey != null ? responseCache.get(cacheKey.value()) : Optional.empty();
+        if (cached.isPresent()) {
+            consumed.addAndGet(requiredPoints);
+            auditService.recordCacheHit(userId, functionName, input, cached.get(), requiredPoints, 
+                    System.currentTimeMillis() - startTime);
+            aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, AiMetrics.PROVIDER_CACHE, 
+                    AiMetrics.OUTCOME_CACHE_HIT, System.nanoTime() - startNanos);
+            return AiBatchItemResult.success(index, cached.get(), requiredPoints);
+        }
+        
+        AiCallContext context = AiCallContext.open(functionName);
+        try {
+            String output = processor.process(input);
+            consumed.addAndGet(requiredPoints);
+            auditService.recordSuccess(userId, functionName, input, output, requiredPoints, 
+                    System.currentTimeMillis() - startTime);
+            cacheResponse(cacheKey, functionName, output, context.getProvider());
+            aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, context.getProvider(), 
+                    AiMetrics.OUTCOME_SUCCESS, System.nanoTime() - startNanos);
+            return AiBatchItemResult.success(index, output, requiredPoints);
+        } catch (Exception e) {
+            auditService.recordFailure(userId, functionName, input, 0, 
+                    System.currentTimeMillis() - startTime, e.getMessage());
+            aiMetrics.recordStage(AiMetrics.STAGE_TOTAL, functionName, context.getProvider(), 
+                    AiMetrics.OUTCOME_FAILURE, System.nanoTime() - startNanos);
+            return AiBatchItemResult.failure(index, e.getMessage());
+        } finally {
+            context.close();
+        }
+    }
+    
+    /**
+     * 预留功能所需积分
+     */
+    private PointsReservation reservePoints(Long userId, String functionName, int requiredPoints) {
+        long start = System.nanoTime();
+        String outcome = AiMetrics.OUTCOME_FAILURE;
+        try {
+            PointsReservation reservation = pointsService.reservePoints(userId, requiredPoints, 
+                "使用" + configService.getFunctionConfig(functionName).getDisplayName() + "功能", 
+                functionName);
+            outcome = AiMetrics.OUTCOME_SUCCESS;
+            return reservation;
+        } finally {
+            aiMetrics.recordStage(AiMetrics.STAGE_POINTS, functionName, AiMetrics.NONE, 
+                    outcome, System.nanoTime() - start);
+        }
+    }
+    
+    /**
+     * 请求键及构建它时的首选提供商
      */
-    private User getUserById(Long userId) {
-        return userService.findById(userId)
-                .orElseThrow(() -> new IllegalArgumentException("用户不存在: " + userId));
+    private record RequestKey(String provider, String value) {
     }
-} 
\ No newline at end of file
+}
@@ -1,34 +1,121 @@
 package com.aiwebsite.service;
 
+import com.aiwebsite.dto.AiUsageHistoryItem;
+import com.aiwebsite.dto.CursorPage;
+import com.aiwebsite.dto.HistoryCursor;
 import com.aiwebsite.entity.AiUsage;
-import com.aiwebsite.entity.User;
 import com.aiwebsite.mapper.AiUsageMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * 审计服务
  * 负责记录AI使用情况、性能监控等
+ * 审计记录先进入有界内存队列，由后台线程按批量大小或时间窗口合并为多行INSERT写入，
+ * 同一事务内累加使用量日汇总
  */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class AuditService {
     
+    /**
+     * 写入线程单次等待的上限，停止标记最迟在这段时间后被发现
+     */
+    private static final long STOP_CHECK_MS = 100;
+    
     private final AiUsageMapper aiUsageMapper;
+    private final AiMetrics aiMetrics;
+    private final UsageRollupService usageRollupService;
+    private final TransactionTemplate transactionTemplate;
+    
+    @Value("${ai.audit.queue-capacity:10000}")
+    private int queueCapacity;
+    
+    @Value("${ai.audit.batch-size:200}")
+    private int batchSize;
+    
+    @Value("${ai.audit.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+    
+    @Value("${ai.audit.overflow-policy:CALLER_RUNS}")
+    private OverflowPolicy overflowPolicy;
+    
+    @Value("${ai.audit.offer-timeout-ms:100}")
+    private long offerTimeoutMs;
+    
+    @Value("${ai.audit.shutdown-timeout-ms:10000}")
+    private long shutdownTimeoutMs;
+    
+    private BlockingQueue<AiUsage> queue;
+    private Thread writer;
+    private volatile boolean running;
+    private final AtomicLong droppedCount = new AtomicLong();
+    
+    /**
+     * 队列已满时的处理策略
+     */
+    public enum OverflowPolicy {
+        BLOCK,        // 等待队列空位，超时后在调用线程直接写入
+        DROP,         // 丢弃该条记录
+        CALLER_RUNS   // 在调用线程直接写入数据库
+    }
+    
+    @PostConstruct
+    public void start() {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.running = true;
+        this.writer = new Thread(this::runWriter, "ai-audit-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        aiMetrics.registerGauge("ai.audit.pending", "等待写入的审计记录数", queue, BlockingQueue::size);
+        aiMetrics.registerGauge("ai.audit.dropped", "因队列已满被丢弃的审计记录总数", droppedCount, AtomicLong::get);
+        log.info("审计写入线程已启动，队列容量: {}, 批量大小: {}, 刷新间隔: {}ms, 溢出策略: {}",
+                queueCapacity, batchSize, flushIntervalMs, overflowPolicy);
+    }
+    
+    /**
+     * 停止接收新记录并将队列中剩余记录全部写入
+     * 不中断写入线程，避免打断正在执行的JDBC写入；写入线程在有限等待后发现停止标记，
+     * 写完手中的一批后退出，队列中剩余的记录由调用线程写入
+     */
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        try {
+            writer.join(shutdownTimeoutMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("审计写入线程未能在{}ms内结束，由关闭线程写入队列中剩余的 {} 条记录", shutdownTimeoutMs, queue.size());
+        }
+        drainRemaining();
+    }
     
     /**
      * 记录AI功能使用情况
      */
-    public void recordAiUsage(User user, String functionName, String input, 
+    public void recordAiUsage(Long userId, String functionName, String input, 
                              String output, int pointsConsumed, long executionTimeMs, 
                              AiUsage.Status status, String errorMessage) {
         try {
             AiUsage aiUsage = new AiUsage();
-            aiUsage.setUserId(user.getId());
+            aiUsage.setUserId(userId);
             aiUsage.setFunctionName(functionName);
             aiUsage.setInputData(truncateText(input, 1000)); // 限制输入长度
             aiUsage.setOutputData(truncateText(output, 2000)); // 限制输出长度
@@ -38,10 +125,13 @@ public class AuditService {
             aiUsage.setErrorMessage(errorMessage);
             aiUsage.setCreatedAt(LocalDateTime.now());
             
-            aiUsageMapper.insert(aiUsage);
+            long start = System.nanoTime();
+            enqueue(aiUsage);
+            aiMetrics.recordStage(AiMetrics.STAGE_AUDIT, functionName, AiMetrics.NONE, 
+                    AiMetrics.OUTCOME_SUCCESS, System.nanoTime() - start);
             
             log.info("记录AI使用情况 - 用户: {}, 功能: {}, 状态: {}, 耗时: {}ms", 
-                    user.getId(), functionName, status, executionTimeMs);
+                    userId, functionName, status, executionTimeMs);
         } catch (Exception e) {
             log.error("记录AI使用情况失败", e);
         }
@@ -50,35 +140,173 @@ public class AuditService {
     /**
      * 记录成功的AI使用
      */
-    public void recordSuccess(User user, String functionName, String input, 
+    public void recordSuccess(Long userId, String functionName, String input, 
                              String output, int pointsConsumed, long executionTimeMs) {
-        recordAiUsage(user, functionName, input, output, pointsConsumed, 
+        recordAiUsage(userId, functionName, input, output, pointsConsumed, 
                      executionTimeMs, AiUsage.Status.SUCCESS, null);
     }
     
     /**
      * 记录失败的AI使用
      */
-    public void recordFailure(User user, String functionName, String input, 
+    public void recordFailure(Long userId, String functionName, String input, 
                              int pointsConsumed, long executionTimeMs, String errorMessage) {
-        recordAiUsage(user, functionName, input, null, pointsConsumed, 
+        recordAiUsage(userId, functionName, input, null, pointsConsumed, 
                      executionTimeMs, AiUsage.Status.FAILED, errorMessage);
     }
     
     /**
-     * 记录处理中的AI使用
+     * 记录命中响应缓存的AI使用
+     */
+    public void recordCacheHit(Long userId, String functionName, String input, 
+                              String output, int pointsConsumed, long executionTimeMs) {
+        recordAiUsage(userId, functionName, input, output, pointsConsumed, 
+                     executionTimeMs, AiUsage.Status.CACHE_HIT, null);
+    }
+    
+    /**
+     * 按游标分页查询AI使用历史，按时间倒序，不含输入输出内容
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<AiUsageHistoryItem> getUsageHistory(Long userId, String cursor, Integer size) {
+        HistoryCursor after = HistoryCursor.decode(cursor);
+        int pageSize = CursorPage.clampSize(size);
+        List<AiUsageHistoryItem> rows = aiUsageMapper.findHistoryPageByUserId(userId, 
+                after != null ? after.createdAt() : null, 
+                after != null ? after.id() : null, 
+                pageSize + 1);
+        return CursorPage.of(rows, pageSize, item -> new HistoryCursor(item.getCreatedAt(), item.getId()));
+    }
+    
+    /**
+     * 当前等待写入的记录数
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+    
+    /**
+     * 因队列已满被丢弃的记录总数
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+    
+    /**
+     * 放入写入队列，队列已满时按溢出策略处理
+     */
+    private void enqueue(AiUsage aiUsage) throws InterruptedException {
+        if (!running) {
+            persist(List.of(aiUsage));
+            return;
+        }
+        if (queue.offer(aiUsage)) {
+            // 检查与放入之间可能已开始关闭且队列已排空，此时自行取回写入；已被排空线程取走则不再重复写入
+            if (!running && queue.remove(aiUsage)) {
+                persist(List.of(aiUsage));
+            }
+            return;
+        }
+        switch (overflowPolicy) {
+            case DROP -> {
+                long dropped = droppedCount.incrementAndGet();
+                log.warn("审计队列已满，丢弃记录 - 用户: {}, 功能: {}, 累计丢弃: {}",
+                        aiUsage.getUserId(), aiUsage.getFunctionName(), dropped);
+            }
+            case BLOCK -> {
+                if (!queue.offer(aiUsage, offerTimeoutMs, TimeUnit.MILLISECONDS)) {
+                    persist(List.of(aiUsage));
+                }
+            }
+            case CALLER_RUNS -> persist(List.of(aiUsage));
+        }
+    }
+    
+    /**
+     * 后台写入循环：攒满一批或达到刷新间隔即写入，停止后写完手中的一批并退出
+     */
+    private void runWriter() {
+        List<AiUsage> batch = new ArrayList<>(batchSize);
+        long deadline = System.currentTimeMillis() + flushIntervalMs;
+        
+        while (running) {
+            try {
+                long waitMs = Math.min(deadline - System.currentTimeMillis(), STOP_CHECK_MS);
+                AiUsage aiUsage = waitMs > 0 ? queue.poll(waitMs, TimeUnit.MILLISECONDS) : null;
+                if (aiUsage != null) {
+                    batch.add(aiUsage);
+                    queue.drainTo(batch, batchSize - batch.size());
+                }
+                if (batch.size() >= batchSize || System.currentTimeMillis() >= deadline) {
+                    flush(batch);
+                    deadline = System.currentTimeMillis() + flushIntervalMs;
+                }
+            } catch (InterruptedException e) {
+                // 停止依赖running标记而不是中断，意外的中断忽略后继续
+            } catch (Exception e) {
+                log.error("审计写入线程异常", e);
+            }
+        }
+        
+        flush(batch);
+        log.info("审计写入线程已停止");
+    }
+    
+    /**
+     * 在调用线程按批写入队列中剩余的记录
+     */
+    private void drainRemaining() {
+        List<AiUsage> batch = new ArrayList<>(batchSize);
+        while (queue.drainTo(batch, batchSize) > 0) {
+            flush(batch);
+        }
+    }
+    
+    /**
+     * 以多行INSERT写入一批记录，批量失败时逐条重试
+     */
+    private void flush(List<AiUsage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            persist(batch);
+            log.debug("批量写入审计记录 {} 条", batch.size());
+        } catch (Exception e) {
+            log.error("批量写入审计记录失败，改为逐条写入，共 {} 条", batch.size(), e);
+            for (AiUsage aiUsage : batch) {
+                try {
+                    persist(List.of(aiUsage));
+                } catch (Exception ex) {
+                    log.error("写入审计记录失败 - 用户: {}, 功能: {}",
+                            aiUsage.getUserId(), aiUsage.getFunctionName(), ex);
+                }
+            }
+        } finally {
+            batch.clear();
+        }
+    }
+    
+    /**
+     * 写入原始审计记录并累加日汇总，两者在同一事务内提交
      */
-    public void recordProcessing(User user, String functionName, String input, int pointsConsumed) {
-        recordAiUsage(user, functionName, input, null, pointsConsumed, 
-                     0L, AiUsage.Status.PROCESSING, null);
+    private void persist(List<AiUsage> usages) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (usages.size() == 1) {
+                aiUsageMapper.insert(usages.get(0));
+            } else {
+                aiUsageMapper.insertBatch(usages);
+            }
+            usageRollupService.applyUsages(usages);
+        });
     }
     
     /**
      * 截断文本，防止数据过长
      */
-    private String truncateText(String text, int maxLength) {
+    String truncateText(String text, int maxLength) {
         if (text == null) return null;
         if (text.length() <= maxLength) return text;
         return text.substring(0, maxLength - 3) + "...";
     }
-}
\ No newline at end of file
+}
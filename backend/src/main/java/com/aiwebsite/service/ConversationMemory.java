@@ -0,0 +1,276 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.exception.RateLimitExceededException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 聊天会话记忆
+ * 会话保存在有界的内存缓存中，超过容量或闲置超时后淘汰。每轮对话按token预算组装提示：
+ * 系统提示 + 早期对话摘要 + 从最新往前能放进预算的若干轮 + 本轮消息，放不下的旧轮次不再原样发送。
+ * 旧轮次累积到阈值后在后台合并进摘要，单轮提示的token数不随会话变长而增长；
+ * 摘要同样是一次上游调用，以会话所属用户的名义申请限流许可，被限流时推迟到下一轮
+ */
+@Slf4j
+@Service
+public class ConversationMemory {
+    
+    private static final String FUNCTION_NAME = "chat";
+    private static final String SYSTEM_PROMPT = "你是一个友好、专业的AI助手，请结合之前的对话内容回答用户的问题。";
+    private static final String SUMMARY_SYSTEM_PROMPT = "你是一个对话摘要助手。请把已有摘要和新增的对话合并为一份简洁的摘要，" +
+            "保留用户的目标、偏好、已确认的事实和尚未解决的问题，不超过%d字。";
+    
+    private final AiChatService aiChatService;
+    private final AiRequestLimiter limiter;
+    private final Cache<String, Conversation> conversations;
+    private final int maxPromptTokens;
+    private final int recentTokens;
+    private final int summarizeThresholdTokens;
+    private final int summaryMaxChars;
+    private final int maxRetainedTurns;
+    
+    private final LongAdder summarizations = new LongAdder();
+    private final LongAdder summarizationFailures = new LongAdder();
+    private final LongAdder summarizationsDeferred = new LongAdder();
+    
+    public ConversationMemory(AiChatService aiChatService, AiRequestLimiter limiter, AiMetrics aiMetrics,
+                              @Value("${ai.conversation.max-conversations:10000}") long maxConversations,
+                              @Value("${ai.conversation.idle-ttl-minutes:60}") long idleTtlMinutes,
+                              @Value("${ai.conversation.max-prompt-tokens:4000}") int maxPromptTokens,
+                              @Value("${ai.conversation.recent-tokens:2000}") int recentTokens,
+                              @Value("${ai.conversation.summarize-threshold-tokens:1000}") int summarizeThresholdTokens,
+                              @Value("${ai.conversation.summary-max-chars:800}") int summaryMaxChars,
+                              @Value("${ai.conversation.max-retained-turns:40}") int maxRetainedTurns) {
+        this.aiChatService = aiChatService;
+        this.limiter = limiter;
+        this.conversations = Caffeine.newBuilder()
+                .maximumSize(maxConversations)
+                .expireAfterAccess(Duration.ofMinutes(idleTtlMinutes))
+                .build();
+        this.maxPromptTokens = maxPromptTokens;
+        this.recentTokens = recentTokens;
+        this.summarizeThresholdTokens = summarizeThresholdTokens;
+        this.summaryMaxChars = summaryMaxChars;
+        this.maxRetainedTurns = maxRetainedTurns;
+        aiMetrics.registerGauge("ai.conversations.active", "内存中的聊天会话数", conversations, Cache::estimatedSize);
+    }
+    
+    /**
+     * 创建会话，返回会话ID
+     */
+    public String create(Long userId) {
+        String conversationId = UUID.randomUUID().toString().replace("-", "");
+        conversations.put(conversationId, new Conversation(userId));
+        return conversationId;
+    }
+    
+    public void delete(Long userId, String conversationId) {
+        get(userId, conversationId);
+        conversations.invalidate(conversationId);
+    }
+    
+    /**
+     * 按token预算组装本轮提示，会话不存在或已过期时抛出异常
+     */
+    public Prompt buildPrompt(Long userId, String conversationId, String message) {
+        Conversation conversation = get(userId, conversationId);
+        String summary;
+        List<Turn> turns;
+        conversation.lock.lock();
+        try {
+            summary = conversation.summary;
+            turns = new ArrayList<>(conversation.turns);
+        } finally {
+            conversation.lock.unlock();
+        }
+        
+        String systemPrompt = summary == null ? SYSTEM_PROMPT
+                : SYSTEM_PROMPT + "\n\n以下是之前对话的摘要：\n" + summary;
+        int budget = maxPromptTokens - TokenEstimator.estimate(systemPrompt) - TokenEstimator.estimate(message);
+        
+        // 从最新一轮往前取，直到放不下为止
+        List<Turn> included = new ArrayList<>();
+        for (int i = turns.size() - 1; i >= 0; i--) {
+            Turn turn = turns.get(i);
+            if (turn.tokens() > budget) {
+                break;
+            }
+            budget -= turn.tokens();
+            included.add(turn);
+        }
+        Collections.reverse(included);
+        
+        List<Message> messages = new ArrayList<>(included.size() * 2 + 2);
+        messages.add(new SystemMessage(systemPrompt));
+        for (Turn turn : included) {
+            messages.add(new UserMessage(turn.user()));
+            messages.add(new AssistantMessage(turn.assistant()));
+        }
+        messages.add(new UserMessage(message));
+        return new Prompt(messages);
+    }
+    
+    /**
+     * 记录一轮完成的对话；超出近期窗口的旧轮次累积到阈值时在后台合并进摘要
+     */
+    public void recordTurn(Long userId, String conversationId, String message, String reply) {
+        Conversation conversation = conversations.getIfPresent(conversationId);
+        if (conversation == null || !conversation.userId.equals(userId)) {
+            return;
+        }
+        List<Turn> toSummarize = null;
+        String previousSummary = null;
+        conversation.lock.lock();
+        try {
+            Turn turn = new Turn(conversation.nextSeq++, message, reply,
+                    TokenEstimator.estimate(message) + TokenEstimator.estimate(reply));
+            conversation.turns.addLast(turn);
+            // 摘要持续失败时也不无限保留原文
+            while (conversation.turns.size() > maxRetainedTurns) {
+                conversation.turns.removeFirst();
+            }
+            if (!conversation.summarizing) {
+                toSummarize = overflowTurns(conversation);
+                if (toSummarize != null) {
+                    conversation.summarizing = true;
+                    previousSummary = conversation.summary;
+                }
+            }
+        } finally {
+            conversation.lock.unlock();
+        }
+        
+        if (toSummarize != null) {
+            List<Turn> turns = toSummarize;
+            String summary = previousSummary;
+            Thread.ofVirtual().name("conversation-summary").start(() -> summarize(conversation, summary, turns));
+        }
+    }
+    
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("conversations", conversations.estimatedSize());
+        stats.put("summarizations", summarizations.sum());
+        stats.put("summarizationFailures", summarizationFailures.sum());
+        stats.put("summarizationsDeferred", summarizationsDeferred.sum());
+        stats.put("maxPromptTokens", maxPromptTokens);
+        return stats;
+    }
+    
+    // 私有辅助方法
+    
+    private Conversation get(Long userId, String conversationId) {
+        Conversation conversation = conversationId != null ? conversations.getIfPresent(conversationId) : null;
+        if (conversation == null || !conversation.userId.equals(userId)) {
+            throw new IllegalArgumentException("会话不存在或已过期");
+        }
+        return conversation;
+    }
+    
+    /**
+     * 近期窗口之外的旧轮次，累计token数未达到阈值时返回null；需持有会话锁调用
+     */
+    private List<Turn> overflowTurns(Conversation conversation) {
+        int recent = 0;
+        int overflowTokens = 0;
+        List<Turn> overflow = new ArrayList<>();
+        for (var iterator = conversation.turns.descendingIterator(); iterator.hasNext(); ) {
+            Turn turn = iterator.next();
+            if (overflow.isEmpty() && recent + turn.tokens() <= recentTokens) {
+                recent += turn.tokens();
+            } else {
+                overflow.add(turn);
+                overflowTokens += turn.tokens();
+            }
+        }
+        if (overflowTokens < summarizeThresholdTokens) {
+            return null;
+        }
+        Collections.reverse(overflow);
+        return overflow;
+    }
+    
+    /**
+     * 把旧轮次与已有摘要合并为新摘要，成功后移除已合并的轮次；失败或被限流时保留原文，下一轮再试
+     */
+    private void summarize(Conversation conversation, String previousSummary, List<Turn> turns) {
+        StringBuilder input = new StringBuilder();
+        if (previousSummary != null) {
+            input.append("已有摘要：\n").append(previousSummary).append("\n\n");
+        }
+        input.append("新增对话：\n");
+        for (Turn turn : turns) {
+            input.append("用户：").append(turn.user()).append("\n助手：").append(turn.assistant()).append("\n\n");
+        }
+        
+        String summary = null;
+        try (AiRequestLimiter.Permit permit = limiter.acquire(conversation.userId, FUNCTION_NAME);
+             AiCallContext ignored = AiCallContext.open(FUNCTION_NAME)) {
+            summary = aiChatService.chatWithSystemPrompt(SUMMARY_SYSTEM_PROMPT.formatted(summaryMaxChars), input.toString());
+            if (summary.length() > summaryMaxChars) {
+                summary = summary.substring(0, summaryMaxChars);
+            }
+            summarizations.increment();
+        } catch (RateLimitExceededException e) {
+            summarizationsDeferred.increment();
+            log.debug("会话摘要被限流，推迟到下一轮: {}", e.getMessage());
+        } catch (Exception e) {
+            summarizationFailures.increment();
+            log.warn("会话摘要生成失败，保留原始轮次", e);
+        }
+        
+        long lastSeq = turns.get(turns.size() - 1).seq();
+        conversation.lock.lock();
+        try {
+            if (summary != null) {
+                conversation.summary = summary;
+                conversation.turns.removeIf(turn -> turn.seq() <= lastSeq);
+            }
+            conversation.summarizing = false;
+        } finally {
+            conversation.lock.unlock();
+        }
+    }
+    
+    /**
+     * 一轮对话，tokens为用户消息与回复的估算token数之和
+     */
+    private record Turn(long seq, String user, String assistant, int tokens) {
+    }
+    
+    /**
+     * 单个会话，turns中只保存尚未合并进摘要的轮次，按时间从旧到新排列
+     */
+    private static final class Conversation {
+        
+        private final Long userId;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final ArrayDeque<Turn> turns = new ArrayDeque<>();
+        private String summary;
+        private long nextSeq;
+        private boolean summarizing;
+        
+        Conversation(Long userId) {
+            this.userId = userId;
+        }
+    }
+}
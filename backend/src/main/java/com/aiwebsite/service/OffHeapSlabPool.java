@@ -0,0 +1,114 @@
+package com.aiwebsite.service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 堆外缓存的固定大小分片池
+ * 启动时一次性分配整块直接内存并切分为等长分片，条目按需占用若干分片，移除后分片归还复用，
+ * 直接内存总量始终等于配置的容量，不随条目增减反复申请
+ */
+class OffHeapSlabPool {
+    
+    private final ByteBuffer region;
+    private final int slabBytes;
+    private final int[] freeSlabs;
+    private final ReentrantLock lock = new ReentrantLock();
+    private int freeCount;
+    
+    OffHeapSlabPool(long capacityBytes, int slabBytes) {
+        if (slabBytes <= 0) {
+            throw new IllegalArgumentException("堆外分片大小必须大于0: " + slabBytes);
+        }
+        long slabCount = capacityBytes / slabBytes;
+        if (slabCount * slabBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("堆外缓存容量不能超过 " + Integer.MAX_VALUE + " 字节: " + capacityBytes);
+        }
+        this.slabBytes = slabBytes;
+        this.region = ByteBuffer.allocateDirect((int) (slabCount * slabBytes));
+        this.freeSlabs = new int[(int) slabCount];
+        for (int i = 0; i < freeSlabs.length; i++) {
+            freeSlabs[i] = freeSlabs.length - 1 - i;
+        }
+        this.freeCount = freeSlabs.length;
+    }
+    
+    /**
+     * 存入内容需要的分片数
+     */
+    int slabsFor(int length) {
+        return (length + slabBytes - 1) / slabBytes;
+    }
+    
+    /**
+     * 分配分片并写入内容，空闲分片不足时返回null
+     */
+    int[] write(byte[] bytes) {
+        int[] slabs = allocate(slabsFor(bytes.length));
+        if (slabs == null) {
+            return null;
+        }
+        for (int i = 0, offset = 0; i < slabs.length; i++, offset += slabBytes) {
+            region.put(slabs[i] * slabBytes, bytes, offset, Math.min(slabBytes, bytes.length - offset));
+        }
+        return slabs;
+    }
+    
+    /**
+     * 从分片读出内容；使用绝对位置读取，可并发调用
+     */
+    byte[] read(int[] slabs, int length) {
+        byte[] bytes = new byte[length];
+        for (int i = 0, offset = 0; i < slabs.length; i++, offset += slabBytes) {
+            region.get(slabs[i] * slabBytes, bytes, offset, Math.min(slabBytes, length - offset));
+        }
+        return bytes;
+    }
+    
+    /**
+     * 归还分片
+     */
+    void free(int[] slabs) {
+        lock.lock();
+        try {
+            for (int slab : slabs) {
+                freeSlabs[freeCount++] = slab;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    int getSlabBytes() {
+        return slabBytes;
+    }
+    
+    long getCapacityBytes() {
+        return region.capacity();
+    }
+    
+    long getFreeBytes() {
+        lock.lock();
+        try {
+            return (long) freeCount * slabBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    private int[] allocate(int count) {
+        lock.lock();
+        try {
+            if (count > freeCount) {
+                return null;
+            }
+            int[] slabs = new int[count];
+            for (int i = 0; i < count; i++) {
+                slabs[i] = freeSlabs[--freeCount];
+            }
+            return slabs;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
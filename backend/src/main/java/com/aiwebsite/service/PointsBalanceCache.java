@@ -0,0 +1,160 @@
+package com.aiwebsite.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 积分余额缓存与推送
+ * 余额查询优先读内存缓存，未命中时从数据库加载；每笔积分流水提交后按流水ID写入缓存，
+ * 只有比缓存中更新的流水才会覆盖，并发提交的回调乱序执行时不会用旧余额覆盖新余额。
+ * 余额变化同时推送给该用户所有在线的订阅，前端不再需要轮询
+ */
+@Slf4j
+@Service
+public class PointsBalanceCache {
+    
+    private static final Duration EMIT_RETRY = Duration.ofMillis(100);
+    
+    private final UserService userService;
+    private final Cache<Long, Balance> balances;
+    private final Map<Long, Channel> channels = new ConcurrentHashMap<>();
+    
+    public PointsBalanceCache(UserService userService, AiMetrics aiMetrics,
+                              @Value("${ai.balance.max-cached-users:100000}") long maxCachedUsers,
+                              @Value("${ai.balance.cache-ttl-seconds:300}") long cacheTtlSeconds) {
+        this.userService = userService;
+        // 有效期兜底绕过流水直接修改积分等情况，以及多实例部署时其他实例产生的变化
+        this.balances = Caffeine.newBuilder()
+                .maximumSize(maxCachedUsers)
+                .expireAfterWrite(Duration.ofSeconds(cacheTtlSeconds))
+                .build();
+        aiMetrics.registerGauge("ai.balance.cached", "缓存中的用户余额数", balances, Cache::estimatedSize);
+        aiMetrics.registerGauge("ai.balance.push.users", "有在线余额订阅的用户数", channels, Map::size);
+    }
+    
+    /**
+     * 获取用户积分余额，缓存未命中时从数据库加载
+     */
+    public Integer getBalance(Long userId) {
+        return balances.get(userId, this::load).points();
+    }
+    
+    /**
+     * 积分流水写入后调用，在事务提交后更新缓存并推送；version为流水ID，同一用户的流水ID随提交顺序递增
+     */
+    public void onLedgerChange(Long userId, int balanceAfter, long version) {
+        Balance balance = new Balance(balanceAfter, version);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(userId, balance);
+                }
+            });
+        } else {
+            apply(userId, balance);
+        }
+    }
+    
+    /**
+     * 订阅用户余额：先发送当前余额，之后每次变化推送新余额，取消订阅时释放推送通道
+     */
+    public Flux<Integer> watch(Long userId) {
+        return Flux.defer(() -> {
+            Channel channel = acquire(userId);
+            // 先订阅推送再读取当前余额，两者之间发生的变化不会丢失，乱序到达的旧余额按版本丢弃
+            Mono<Balance> current = Mono.fromCallable(() -> balances.get(userId, this::load))
+                    .subscribeOn(Schedulers.boundedElastic());
+            return Flux.merge(channel.sink.asFlux(), current)
+                    .filter(new NewerThanLast()::test)
+                    .map(Balance::points)
+                    .doFinally(signal -> release(userId, channel));
+        });
+    }
+    
+    // 私有辅助方法
+    
+    private Balance load(Long userId) {
+        return new Balance(userService.getPoints(userId), 0L);
+    }
+    
+    private void apply(Long userId, Balance balance) {
+        Balance applied = balances.asMap().compute(userId, (id, current) ->
+                current == null || current.version() < balance.version() ? balance : current);
+        if (applied != balance) {
+            return;
+        }
+        Channel channel = channels.get(userId);
+        if (channel == null) {
+            return;
+        }
+        try {
+            // 同一用户的并发提交可能同时推送，非串行失败时短暂重试
+            channel.sink.emitNext(balance, Sinks.EmitFailureHandler.busyLooping(EMIT_RETRY));
+        } catch (Exception e) {
+            // 推送失败不影响已提交的积分变更，订阅方在下次变化或重连时拿到最新余额
+            log.warn("推送用户{}的积分余额失败: {}", userId, e.getMessage());
+        }
+    }
+    
+    private Channel acquire(Long userId) {
+        return channels.compute(userId, (id, channel) -> {
+            Channel acquired = channel != null ? channel : new Channel();
+            acquired.subscribers++;
+            return acquired;
+        });
+    }
+    
+    private void release(Long userId, Channel channel) {
+        channels.computeIfPresent(userId, (id, current) -> {
+            if (current != channel) {
+                return current;
+            }
+            return --current.subscribers == 0 ? null : current;
+        });
+    }
+    
+    /**
+     * 缓存的余额，version为产生该余额的流水ID，从数据库加载的余额为0
+     */
+    private record Balance(int points, long version) {
+    }
+    
+    /**
+     * 单个订阅内只放行比已发送余额更新的版本
+     */
+    private static final class NewerThanLast {
+        
+        private long last = -1;
+        
+        boolean test(Balance balance) {
+            if (balance.version() <= last) {
+                return false;
+            }
+            last = balance.version();
+            return true;
+        }
+    }
+    
+    /**
+     * 单个用户的推送通道，subscribers只在channels的原子compute中读写
+     */
+    private static final class Channel {
+        
+        private final Sinks.Many<Balance> sink = Sinks.many().multicast().directBestEffort();
+        private int subscribers;
+    }
+}
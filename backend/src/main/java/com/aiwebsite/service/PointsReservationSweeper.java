@@ -0,0 +1,38 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.entity.PointsReservation;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 积分预留清理任务
+ * 释放节点崩溃等原因遗留的过期预留，退还用户积分；执行中的同步调用会定期续期其预留，不会被释放
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PointsReservationSweeper {
+    
+    private static final int BATCH_SIZE = 100;
+    
+    private final PointsService pointsService;
+    
+    @Scheduled(fixedDelayString = "${ai.reservation.sweep-interval-ms:60000}")
+    public void releaseExpiredReservations() {
+        List<PointsReservation> expired = pointsService.findExpiredReservations(BATCH_SIZE);
+        for (PointsReservation reservation : expired) {
+            try {
+                pointsService.releaseExpiredReservation(reservation, "积分预留过期，自动退还");
+            } catch (Exception e) {
+                log.error("释放过期积分预留{}失败", reservation.getId(), e);
+            }
+        }
+        if (!expired.isEmpty()) {
+            log.info("已处理 {} 条过期积分预留", expired.size());
+        }
+    }
+}
@@ -1,15 +1,25 @@
 package com.aiwebsite.service;
 
+import com.aiwebsite.dto.CursorPage;
+import com.aiwebsite.dto.HistoryCursor;
+import com.aiwebsite.entity.PointsReservation;
 import com.aiwebsite.entity.Transaction;
-import com.aiwebsite.entity.User;
 import com.aiwebsite.exception.InsufficientPointsException;
+import com.aiwebsite.mapper.PointsReservationMapper;
 import com.aiwebsite.mapper.TransactionMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 积分管理服务
@@ -22,12 +32,23 @@ public class PointsService {
     
     private final UserService userService;
     private final TransactionMapper transactionMapper;
+    private final PointsReservationMapper reservationMapper;
+    private final UsageRollupService usageRollupService;
+    private final PointsBalanceCache pointsBalanceCache;
+    
+    @Value("${ai.reservation.ttl-seconds:600}")
+    private long reservationTtlSeconds;
+    
+    /**
+     * 本节点执行中的同步调用持有的预留，由心跳定期续期，调用时长超过有效期也不会被清理任务释放
+     */
+    private final Set<Long> activeReservations = ConcurrentHashMap.newKeySet();
     
     /**
-     * 验证用户积分是否足够
+     * 验证用户积分是否足够，只是预检查，实际扣除时仍以条件UPDATE为准
      */
     public void validatePoints(Long userId, int requiredPoints) {
-        Integer currentPoints = userService.getPoints(userId);
+        Integer currentPoints = pointsBalanceCache.getBalance(userId);
         if (currentPoints < requiredPoints) {
             throw new InsufficientPointsException(
                 String.format("积分不足，需要%d积分，当前只有%d积分", requiredPoints, currentPoints)
@@ -37,40 +58,162 @@ public class PointsService {
     
     /**
      * 扣除用户积分
+     * 以单条条件UPDATE完成校验与扣除，并发扣除不会丢失更新，余额也不会为负
      */
     @Transactional
     public Integer deductPoints(Long userId, int points, String reason, String functionName) {
-        User user = userService.findById(userId)
-            .orElseThrow(() -> new IllegalArgumentException("用户不存在"));
-        
-        // 验证积分是否足够
-        validatePoints(userId, points);
+        if (!userService.tryDeductPoints(userId, points)) {
+            // 未更新任何行：用户不存在或积分不足
+            Integer currentPoints = userService.findById(userId)
+                .orElseThrow(() -> new IllegalArgumentException("用户不存在"))
+                .getPoints();
+            throw new InsufficientPointsException(
+                String.format("积分不足，需要%d积分，当前只有%d积分", points, currentPoints)
+            );
+        }
         
-        // 扣除积分
-        Integer newPoints = user.getPoints() - points;
-        userService.updatePoints(userId, newPoints);
+        // 同一事务内读取扣除后的余额，此时该行仍被本事务锁定
+        Integer newPoints = userService.getPoints(userId);
         
         // 记录交易
-        recordTransaction(user, Transaction.TransactionType.CONSUME, 
+        recordTransaction(userId, Transaction.TransactionType.CONSUME, 
                          -points, newPoints, reason, functionName);
         
         log.info("用户{}扣除积分{}, 原因: {}, 余额: {}", userId, points, reason, newPoints);
         return newPoints;
     }
     
+    /**
+     * 预留积分
+     * 在短事务内扣除积分并登记预留，AI调用在事务外执行，结束后再确认或释放
+     */
+    @Transactional
+    public PointsReservation reservePoints(Long userId, int points, String reason, String functionName) {
+        PointsReservation reservation = reservePoints(userId, points, reason, functionName, reservationTtlSeconds);
+        trackActive(reservation.getId());
+        return reservation;
+    }
+    
+    /**
+     * 按指定有效期预留积分，供异步任务使用，续期由任务心跳负责
+     */
+    @Transactional
+    public PointsReservation reservePoints(Long userId, int points, String reason, String functionName, long ttlSeconds) {
+        deductPoints(userId, points, reason, functionName);
+        
+        PointsReservation reservation = new PointsReservation();
+        reservation.setUserId(userId);
+        reservation.setFunctionName(functionName);
+        reservation.setAmount(points);
+        reservation.setStatus(PointsReservation.Status.RESERVED);
+        reservation.setExpiresAt(LocalDateTime.now().plusSeconds(ttlSeconds));
+        reservationMapper.insert(reservation);
+        return reservation;
+    }
+    
+    /**
+     * 确认预留，积分正式消费
+     * @return 是否确认成功，预留已过期释放时返回false
+     */
+    @Transactional
+    public boolean confirmReservation(PointsReservation reservation) {
+        activeReservations.remove(reservation.getId());
+        boolean confirmed = reservationMapper.settle(reservation.getId(), 
+                PointsReservation.Status.CONFIRMED.name()) == 1;
+        if (!confirmed) {
+            log.warn("积分预留{}已被结算，确认失败", reservation.getId());
+        }
+        return confirmed;
+    }
+    
+    /**
+     * 释放预留，退还积分
+     * @return 是否释放成功，预留已被确认或释放时返回false
+     */
+    @Transactional
+    public boolean releaseReservation(PointsReservation reservation, String reason) {
+        activeReservations.remove(reservation.getId());
+        if (reservationMapper.settle(reservation.getId(), PointsReservation.Status.RELEASED.name()) != 1) {
+            return false;
+        }
+        return refundReservation(reservation, reason);
+    }
+    
+    /**
+     * 释放已过期的预留，供清理任务使用；预留已被结算或已被心跳续期时返回false
+     */
+    @Transactional
+    public boolean releaseExpiredReservation(PointsReservation reservation, String reason) {
+        if (reservationMapper.releaseExpired(reservation.getId(), LocalDateTime.now()) != 1) {
+            return false;
+        }
+        return refundReservation(reservation, reason);
+    }
+    
+    /**
+     * 为本节点执行中的同步调用续期预留，续期后的有效期从当前时间重新计算
+     */
+    @Scheduled(fixedDelayString = "${ai.reservation.heartbeat-interval-ms:60000}")
+    public void extendActiveReservations() {
+        if (!activeReservations.isEmpty()) {
+            reservationMapper.extend(List.copyOf(activeReservations), LocalDateTime.now().plusSeconds(reservationTtlSeconds));
+        }
+    }
+    
+    /**
+     * 为排队中与执行中的异步任务续期预留，由任务心跳调用
+     */
+    public int extendJobReservations(long ttlSeconds) {
+        return reservationMapper.extendForActiveJobs(LocalDateTime.now().plusSeconds(ttlSeconds));
+    }
+    
+    /**
+     * 按实际消费结算预留：确认预留并退还未消费的部分，供批量请求一次结算
+     * @return 是否结算成功，预留已被确认或释放时返回false
+     */
+    @Transactional
+    public boolean settleReservation(PointsReservation reservation, int consumed, String reason) {
+        activeReservations.remove(reservation.getId());
+        if (consumed <= 0) {
+            return releaseReservation(reservation, reason);
+        }
+        if (reservationMapper.settle(reservation.getId(), PointsReservation.Status.CONFIRMED.name()) != 1) {
+            log.warn("积分预留{}已被结算，部分确认失败", reservation.getId());
+            return false;
+        }
+        
+        int refund = reservation.getAmount() - consumed;
+        if (refund > 0) {
+            Long userId = reservation.getUserId();
+            Integer newPoints = creditPoints(userId, refund);
+            recordTransaction(userId, Transaction.TransactionType.REFUND, 
+                             refund, newPoints, reason, reservation.getFunctionName());
+            log.info("用户{}部分确认积分预留{}, 消费{}, 退还{}, 余额: {}", 
+                    userId, reservation.getId(), consumed, refund, newPoints);
+        }
+        return true;
+    }
+    
+    public PointsReservation findReservation(Long reservationId) {
+        return reservationMapper.selectById(reservationId);
+    }
+    
+    /**
+     * 查询已过期但未结算的预留
+     */
+    public List<PointsReservation> findExpiredReservations(int limit) {
+        return reservationMapper.findExpired(LocalDateTime.now(), limit);
+    }
+    
     /**
      * 充值积分
      */
     @Transactional
     public Integer addPoints(Long userId, int points, String reason) {
-        User user = userService.findById(userId)
-            .orElseThrow(() -> new IllegalArgumentException("用户不存在"));
-        
-        Integer newPoints = user.getPoints() + points;
-        userService.updatePoints(userId, newPoints);
+        Integer newPoints = creditPoints(userId, points);
         
         // 记录交易
-        recordTransaction(user, Transaction.TransactionType.RECHARGE, 
+        recordTransaction(userId, Transaction.TransactionType.RECHARGE, 
                          points, newPoints, reason, null);
         
         log.info("用户{}充值积分{}, 原因: {}, 余额: {}", userId, points, reason, newPoints);
@@ -82,27 +225,63 @@ public class PointsService {
      */
     @Transactional
     public Integer rewardPoints(Long userId, int points, String reason) {
-        User user = userService.findById(userId)
-            .orElseThrow(() -> new IllegalArgumentException("用户不存在"));
-        
-        Integer newPoints = user.getPoints() + points;
-        userService.updatePoints(userId, newPoints);
+        Integer newPoints = creditPoints(userId, points);
         
         // 记录交易
-        recordTransaction(user, Transaction.TransactionType.BONUS, 
+        recordTransaction(userId, Transaction.TransactionType.BONUS, 
                          points, newPoints, reason, null);
         
         log.info("用户{}获得奖励积分{}, 原因: {}, 余额: {}", userId, points, reason, newPoints);
         return newPoints;
     }
     
+    /**
+     * 已释放的预留退还积分并记录交易
+     */
+    private boolean refundReservation(PointsReservation reservation, String reason) {
+        Long userId = reservation.getUserId();
+        Integer newPoints = creditPoints(userId, reservation.getAmount());
+        
+        // 记录交易
+        recordTransaction(userId, Transaction.TransactionType.REFUND, 
+                         reservation.getAmount(), newPoints, reason, reservation.getFunctionName());
+        
+        log.info("用户{}释放积分预留{}, 退还积分{}, 原因: {}, 余额: {}", 
+                userId, reservation.getId(), reservation.getAmount(), reason, newPoints);
+        return true;
+    }
+    
+    /**
+     * 登记执行中的预留，事务提交后才开始续期
+     */
+    private void trackActive(Long reservationId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    activeReservations.add(reservationId);
+                }
+            });
+        } else {
+            activeReservations.add(reservationId);
+        }
+    }
+    
+    /**
+     * 原子增加积分并返回新余额
+     */
+    private Integer creditPoints(Long userId, int points) {
+        userService.incrementPoints(userId, points);
+        return userService.getPoints(userId);
+    }
+    
     /**
      * 记录交易
      */
-    private void recordTransaction(User user, Transaction.TransactionType type, 
+    private void recordTransaction(Long userId, Transaction.TransactionType type, 
                                   int amount, int balanceAfter, String description, String functionName) {
         Transaction transaction = new Transaction();
-        transaction.setUserId(user.getId());
+        transaction.setUserId(userId);
         transaction.setType(type);
         transaction.setAmount(amount);
         transaction.setBalanceAfter(balanceAfter);
@@ -110,12 +289,28 @@ public class PointsService {
         transaction.setAiFunction(functionName);
         transaction.setCreatedAt(LocalDateTime.now());
         transactionMapper.insert(transaction);
+        usageRollupService.applyTransaction(transaction);
+        pointsBalanceCache.onLedgerChange(userId, balanceAfter, transaction.getId());
     }
     
     /**
      * 获取用户积分余额
      */
     public Integer getUserBalance(Long userId) {
-        return userService.getPoints(userId);
+        return pointsBalanceCache.getBalance(userId);
+    }
+    
+    /**
+     * 按游标分页查询积分流水，按时间倒序
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<Transaction> getTransactionHistory(Long userId, String cursor, Integer size) {
+        HistoryCursor after = HistoryCursor.decode(cursor);
+        int pageSize = CursorPage.clampSize(size);
+        List<Transaction> rows = transactionMapper.findPageByUserId(userId, 
+                after != null ? after.createdAt() : null, 
+                after != null ? after.id() : null, 
+                pageSize + 1);
+        return CursorPage.of(rows, pageSize, t -> new HistoryCursor(t.getCreatedAt(), t.getId()));
     }
 }
\ No newline at end of file
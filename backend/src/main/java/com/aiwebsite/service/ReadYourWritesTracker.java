@@ -0,0 +1,80 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.config.ReadWriteRoutingDataSource;
+import com.aiwebsite.config.ReplicaLagMonitor;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * 写后读一致性
+ * 记录用户最近一次写入（扣除积分等）的时间，窗口期内该用户的只读查询改走主库，
+ * 避免刚扣完积分就从尚未同步的副本读到旧余额。窗口为配置的固定时长加上最近观测到的副本延迟；
+ * 未启用读写分离时不做任何记录
+ */
+@Service
+public class ReadYourWritesTracker {
+    
+    private final boolean enabled;
+    private final long windowMs;
+    private final ObjectProvider<ReplicaLagMonitor> lagMonitor;
+    private final Cache<Long, Long> lastWrites;
+    
+    public ReadYourWritesTracker(ObjectProvider<ReplicaLagMonitor> lagMonitor,
+                                 @Value("${spring.datasource.replica.url:}") String replicaUrl,
+                                 @Value("${spring.datasource.replica.read-your-writes-ms:2000}") long windowMs,
+                                 @Value("${spring.datasource.replica.max-lag-ms:10000}") long maxLagMs) {
+        this.enabled = !replicaUrl.isBlank();
+        this.windowMs = windowMs;
+        this.lagMonitor = lagMonitor;
+        // 延迟超过max-lag-ms时副本整体停用，记录无需保留更久
+        this.lastWrites = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(windowMs + maxLagMs))
+                .build();
+    }
+    
+    /**
+     * 记录用户发生了写入；在事务中调用时提交后再刷新一次时间，窗口从数据真正可见时开始计算
+     */
+    public void markWritten(Long userId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        lastWrites.put(userId, System.currentTimeMillis());
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    lastWrites.put(userId, System.currentTimeMillis());
+                }
+            });
+        }
+    }
+    
+    /**
+     * 执行该用户的查询，最近写入过时强制在主库上执行
+     */
+    public <T> T read(Long userId, Supplier<T> query) {
+        if (!enabled || userId == null || !recentlyWritten(userId)) {
+            return query.get();
+        }
+        return ReadWriteRoutingDataSource.onPrimary(query);
+    }
+    
+    private boolean recentlyWritten(Long userId) {
+        Long writtenAt = lastWrites.getIfPresent(userId);
+        if (writtenAt == null) {
+            return false;
+        }
+        ReplicaLagMonitor monitor = lagMonitor.getIfAvailable();
+        long lagMs = monitor != null ? Math.min(monitor.getLagMs(), Long.MAX_VALUE - windowMs) : 0;
+        return System.currentTimeMillis() - writtenAt < windowMs + lagMs;
+    }
+}
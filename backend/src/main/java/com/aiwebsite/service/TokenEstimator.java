@@ -0,0 +1,35 @@
+package com.aiwebsite.service;
+
+/**
+ * 提示词token数估算
+ * 不依赖具体模型的分词器：中日韩等非ASCII字符按每字1个token，ASCII字符按每4个1个token，
+ * 每条消息另加固定开销。估算值偏保守，只用于控制提示词预算
+ */
+final class TokenEstimator {
+    
+    private static final int MESSAGE_OVERHEAD = 4;
+    
+    private TokenEstimator() {
+    }
+    
+    /**
+     * 估算一条消息的token数，含消息本身的固定开销
+     */
+    static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return MESSAGE_OVERHEAD;
+        }
+        int ascii = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (codePoint < 0x80) {
+                ascii++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return MESSAGE_OVERHEAD + other + (ascii + 3) / 4;
+    }
+}
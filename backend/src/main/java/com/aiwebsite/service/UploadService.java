@@ -0,0 +1,438 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.dto.UploadStatus;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * 分块断点续传服务
+ * 每个上传在存储目录下占一个子目录：data为按总大小预分配的目标文件，各分块按偏移直接写入；
+ * chunks下每个校验通过的分块留一个标记文件，服务重启后据此恢复已接收的分块；
+ * parts存放正在接收、尚未校验的分块。
+ * 分块内容经FileChannel从请求流直接写盘，不在堆中缓存整个分块
+ */
+@Slf4j
+@Service
+public class UploadService {
+    
+    private static final String META_FILE = "upload.properties";
+    private static final String DATA_FILE = "data";
+    private static final String CHUNKS_DIR = "chunks";
+    private static final String PARTS_DIR = "parts";
+    private static final long MIN_CHUNK_SIZE = 1024 * 1024;
+    private static final HexFormat HEX = HexFormat.of();
+    
+    @Value("${ai.upload.dir:${java.io.tmpdir}/ai-uploads}")
+    private String uploadDir;
+    
+    @Value("${ai.upload.chunk-size:8388608}")
+    private long defaultChunkSize;
+    
+    @Value("${ai.upload.max-chunk-size:67108864}")
+    private long maxChunkSize;
+    
+    @Value("${ai.upload.max-file-size:10737418240}")
+    private long maxFileSize;
+    
+    @Value("${ai.upload.ttl-hours:24}")
+    private long ttlHours;
+    
+    private Path baseDir;
+    private final ConcurrentHashMap<String, Upload> uploads = new ConcurrentHashMap<>();
+    
+    @PostConstruct
+    public void init() throws IOException {
+        this.baseDir = Paths.get(uploadDir).toAbsolutePath();
+        Files.createDirectories(baseDir);
+        log.info("分块上传存储目录: {}, 默认分块大小: {}字节", baseDir, defaultChunkSize);
+    }
+    
+    /**
+     * 创建上传会话，按总大小预分配目标文件
+     */
+    public UploadStatus create(Long userId, String fileName, long totalSize, Long requestedChunkSize) throws IOException {
+        if (fileName == null || fileName.isBlank()) {
+            throw new IllegalArgumentException("文件名不能为空");
+        }
+        if (totalSize <= 0 || totalSize > maxFileSize) {
+            throw new IllegalArgumentException("文件大小必须在1到" + maxFileSize + "字节之间");
+        }
+        long chunkSize = requestedChunkSize != null
+                ? Math.max(MIN_CHUNK_SIZE, Math.min(requestedChunkSize, maxChunkSize))
+                : defaultChunkSize;
+        
+        Upload upload = new Upload(UUID.randomUUID().toString(), userId, fileName, totalSize, chunkSize, Instant.now());
+        Path dir = baseDir.resolve(upload.uploadId);
+        Files.createDirectories(dir.resolve(CHUNKS_DIR));
+        try (RandomAccessFile data = new RandomAccessFile(dir.resolve(DATA_FILE).toFile(), "rw")) {
+            data.setLength(totalSize);
+        }
+        Properties meta = new Properties();
+        meta.setProperty("userId", String.valueOf(userId));
+        meta.setProperty("fileName", fileName);
+        meta.setProperty("totalSize", String.valueOf(totalSize));
+        meta.setProperty("chunkSize", String.valueOf(chunkSize));
+        meta.setProperty("createdAt", upload.createdAt.toString());
+        try (Writer writer = Files.newBufferedWriter(dir.resolve(META_FILE))) {
+            meta.store(writer, null);
+        }
+        uploads.put(upload.uploadId, upload);
+        log.info("创建分块上传 - 用户: {}, 上传: {}, 文件: {}, 大小: {}, 分块数: {}",
+                userId, upload.uploadId, fileName, totalSize, upload.totalChunks);
+        return upload.toStatus();
+    }
+    
+    /**
+     * 写入一个分块
+     * 请求体经摘要计算后由FileChannel.transferFrom写入该分块的临时文件，长度与SHA-256校验值都一致后
+     * 再从临时文件零拷贝复制到目标文件的偏移处并标记为已接收，校验失败不会改动目标文件中已校验的内容。
+     * 同一分块同时只允许一个请求写入；重传已接收的分块时校验值相同直接返回，不同则先撤销标记再覆盖
+     */
+    public UploadStatus writeChunk(Long userId, String uploadId, int index, String checksum, InputStream body) throws IOException {
+        Upload upload = require(userId, uploadId);
+        if (index < 0 || index >= upload.totalChunks) {
+            throw new IllegalArgumentException("分块序号超出范围");
+        }
+        if (checksum == null || checksum.isBlank()) {
+            throw new IllegalArgumentException("缺少分块校验值");
+        }
+        
+        String normalizedChecksum = checksum.trim().toLowerCase();
+        Path dir = baseDir.resolve(uploadId);
+        Path marker = dir.resolve(CHUNKS_DIR).resolve(String.valueOf(index));
+        if (upload.isReceived(index) && normalizedChecksum.equals(readMarker(marker))) {
+            return upload.toStatus();
+        }
+        if (!upload.tryClaim(index)) {
+            throw new IllegalArgumentException("分块正在上传，请稍后重试");
+        }
+        
+        Path part = Files.createDirectories(dir.resolve(PARTS_DIR)).resolve(String.valueOf(index));
+        try {
+            long offset = index * upload.chunkSize;
+            long expected = Math.min(upload.chunkSize, upload.totalSize - offset);
+            receiveChunk(part, body, expected, normalizedChecksum);
+            
+            // 覆盖前撤销已接收状态，复制中途失败时该分块会被要求重传
+            upload.unmarkReceived(index);
+            Files.deleteIfExists(marker);
+            try (FileChannel source = FileChannel.open(part, StandardOpenOption.READ);
+                 FileChannel target = FileChannel.open(dir.resolve(DATA_FILE), StandardOpenOption.WRITE)) {
+                long copied = 0;
+                while (copied < expected) {
+                    long transferred = target.transferFrom(source, offset + copied, expected - copied);
+                    if (transferred <= 0) {
+                        throw new IOException("分块复制不完整: " + index);
+                    }
+                    copied += transferred;
+                }
+                target.force(false);
+            }
+            Files.writeString(marker, normalizedChecksum);
+            upload.markReceived(index);
+        } finally {
+            Files.deleteIfExists(part);
+            upload.release(index);
+        }
+        return upload.toStatus();
+    }
+    
+    /**
+     * 查询上传状态
+     */
+    public UploadStatus getStatus(Long userId, String uploadId) {
+        return require(userId, uploadId).toStatus();
+    }
+    
+    /**
+     * 获取已完成上传的文件，未传完时抛出异常
+     */
+    public Path getCompletedFile(Long userId, String uploadId) {
+        Upload upload = require(userId, uploadId);
+        if (!upload.isComplete()) {
+            throw new IllegalArgumentException("文件尚未上传完成");
+        }
+        return baseDir.resolve(uploadId).resolve(DATA_FILE);
+    }
+    
+    /**
+     * 获取上传文件名
+     */
+    public String getFileName(Long userId, String uploadId) {
+        return require(userId, uploadId).fileName;
+    }
+    
+    /**
+     * 取消上传并删除已写入的数据
+     */
+    public void abort(Long userId, String uploadId) throws IOException {
+        require(userId, uploadId);
+        uploads.remove(uploadId);
+        deleteRecursively(baseDir.resolve(uploadId));
+    }
+    
+    /**
+     * 清理超过有效期的上传
+     */
+    @Scheduled(fixedDelayString = "${ai.upload.sweep-interval-ms:3600000}")
+    public void removeExpiredUploads() {
+        Instant cutoff = Instant.now().minus(Duration.ofHours(ttlHours));
+        int removed = 0;
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(baseDir, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                Upload upload = load(dir.getFileName().toString());
+                Instant createdAt = upload != null ? upload.createdAt : Files.getLastModifiedTime(dir).toInstant();
+                if (!createdAt.isBefore(cutoff)) {
+                    continue;
+                }
+                try {
+                    uploads.remove(dir.getFileName().toString());
+                    deleteRecursively(dir);
+                    removed++;
+                } catch (IOException | UncheckedIOException e) {
+                    log.warn("删除过期上传失败: {}", dir, e);
+                }
+            }
+        } catch (IOException e) {
+            log.error("清理过期上传失败", e);
+        }
+        if (removed > 0) {
+            log.info("已清理 {} 个过期上传", removed);
+        }
+    }
+    
+    /**
+     * 获取上传会话，不存在或不属于该用户时统一报不存在；内存中没有时从磁盘恢复
+     */
+    private Upload require(Long userId, String uploadId) {
+        Upload upload = isValidId(uploadId) ? uploads.computeIfAbsent(uploadId, this::load) : null;
+        if (upload == null || !upload.userId.equals(userId)) {
+            throw new IllegalArgumentException("上传不存在或已过期");
+        }
+        return upload;
+    }
+    
+    private Upload load(String uploadId) {
+        Path dir = baseDir.resolve(uploadId);
+        Path metaFile = dir.resolve(META_FILE);
+        if (!Files.isRegularFile(metaFile)) {
+            return null;
+        }
+        Properties meta = new Properties();
+        try (Reader reader = Files.newBufferedReader(metaFile)) {
+            meta.load(reader);
+            Upload upload = new Upload(uploadId,
+                    Long.valueOf(meta.getProperty("userId")),
+                    meta.getProperty("fileName"),
+                    Long.parseLong(meta.getProperty("totalSize")),
+                    Long.parseLong(meta.getProperty("chunkSize")),
+                    Instant.parse(meta.getProperty("createdAt")));
+            try (DirectoryStream<Path> markers = Files.newDirectoryStream(dir.resolve(CHUNKS_DIR))) {
+                for (Path marker : markers) {
+                    upload.markReceived(Integer.parseInt(marker.getFileName().toString()));
+                }
+            }
+            return upload;
+        } catch (IOException | RuntimeException e) {
+            log.warn("读取上传元数据失败: {}", uploadId, e);
+            return null;
+        }
+    }
+    
+    private boolean isValidId(String uploadId) {
+        try {
+            return uploadId != null && UUID.fromString(uploadId).toString().equals(uploadId);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+    
+    private void deleteRecursively(Path dir) throws IOException {
+        if (!Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+    
+    /**
+     * 把请求体写入分块临时文件并校验长度与SHA-256，不一致时抛出异常
+     */
+    private void receiveChunk(Path part, InputStream body, long expected, String checksum) throws IOException {
+        MessageDigest digest = sha256();
+        try (FileChannel target = FileChannel.open(part, StandardOpenOption.CREATE, 
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+             ReadableByteChannel source = Channels.newChannel(new DigestInputStream(body, digest))) {
+            long written = 0;
+            while (written < expected) {
+                long transferred = target.transferFrom(source, written, expected - written);
+                if (transferred <= 0) {
+                    break;
+                }
+                written += transferred;
+            }
+            if (written != expected || body.read() != -1) {
+                throw new IllegalArgumentException("分块长度不正确，应为" + expected + "字节");
+            }
+            if (!HEX.formatHex(digest.digest()).equals(checksum)) {
+                throw new IllegalArgumentException("分块校验失败，请重新上传该分块");
+            }
+        }
+    }
+    
+    private String readMarker(Path marker) throws IOException {
+        return Files.isRegularFile(marker) ? Files.readString(marker).trim() : null;
+    }
+    
+    private MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    /**
+     * 上传会话，已接收与正在写入的分块集合由锁保护
+     */
+    private static final class Upload {
+        
+        private final String uploadId;
+        private final Long userId;
+        private final String fileName;
+        private final long totalSize;
+        private final long chunkSize;
+        private final int totalChunks;
+        private final Instant createdAt;
+        private final BitSet received;
+        private final BitSet writing;
+        private final ReentrantLock lock = new ReentrantLock();
+        
+        private Upload(String uploadId, Long userId, String fileName, long totalSize, long chunkSize, Instant createdAt) {
+            this.uploadId = uploadId;
+            this.userId = userId;
+            this.fileName = fileName;
+            this.totalSize = totalSize;
+            this.chunkSize = chunkSize;
+            this.totalChunks = (int) ((totalSize + chunkSize - 1) / chunkSize);
+            this.createdAt = createdAt;
+            this.received = new BitSet(totalChunks);
+            this.writing = new BitSet(totalChunks);
+        }
+        
+        /**
+         * 占用分块的写入权，已有请求在写入该分块时返回false
+         */
+        private boolean tryClaim(int index) {
+            lock.lock();
+            try {
+                if (writing.get(index)) {
+                    return false;
+                }
+                writing.set(index);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private void release(int index) {
+            lock.lock();
+            try {
+                writing.clear(index);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private boolean isReceived(int index) {
+            lock.lock();
+            try {
+                return received.get(index);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private void unmarkReceived(int index) {
+            lock.lock();
+            try {
+                received.clear(index);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private void markReceived(int index) {
+            lock.lock();
+            try {
+                received.set(index);
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private boolean isComplete() {
+            lock.lock();
+            try {
+                return received.cardinality() == totalChunks;
+            } finally {
+                lock.unlock();
+            }
+        }
+        
+        private UploadStatus toStatus() {
+            lock.lock();
+            try {
+                List<Integer> missing = new ArrayList<>(totalChunks - received.cardinality());
+                for (int i = received.nextClearBit(0); i < totalChunks; i = received.nextClearBit(i + 1)) {
+                    missing.add(i);
+                }
+                return new UploadStatus(uploadId, fileName, totalSize, chunkSize, totalChunks,
+                        received.cardinality(), missing, missing.isEmpty());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.entity.AiUsage;
+import com.aiwebsite.entity.AiUsageDaily;
+import com.aiwebsite.entity.Transaction;
+import com.aiwebsite.entity.TransactionDaily;
+import com.aiwebsite.mapper.UsageRollupMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 使用量汇总服务
+ * 原始记录写入时在同一事务内增量累加日汇总，统计查询只读汇总表；
+ * 回填任务按天从原始记录重算汇总，用于首次上线或修复偏差
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UsageRollupService {
+    
+    private static final Comparator<AiUsageDaily> USAGE_KEY_ORDER = Comparator
+            .comparing(AiUsageDaily::getUserId)
+            .thenComparing(AiUsageDaily::getFunctionName)
+            .thenComparing(AiUsageDaily::getUsageDate);
+    
+    private final UsageRollupMapper usageRollupMapper;
+    private final TransactionTemplate transactionTemplate;
+    
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    
+    /**
+     * 将一批AI使用记录累加到日汇总，需与原始记录写入处于同一事务
+     */
+    public void applyUsages(List<AiUsage> usages) {
+        Map<String, AiUsageDaily> deltas = new HashMap<>();
+        for (AiUsage usage : usages) {
+            LocalDate day = usage.getCreatedAt().toLocalDate();
+            AiUsageDaily delta = deltas.computeIfAbsent(usage.getUserId() + "|" + usage.getFunctionName() + "|" + day,
+                    key -> new AiUsageDaily(usage.getUserId(), usage.getFunctionName(), day, 0L, 0L, 0L));
+            delta.setUsageCount(delta.getUsageCount() + 1);
+            delta.setPointsConsumed(delta.getPointsConsumed() + valueOf(usage.getPointsConsumed()));
+            delta.setExecutionTimeMs(delta.getExecutionTimeMs() + valueOf(usage.getExecutionTimeMs()));
+        }
+        // 按主键顺序加锁，调用线程直接写入与后台批量写入并发时不会互相死锁
+        List<AiUsageDaily> ordered = new ArrayList<>(deltas.values());
+        ordered.sort(USAGE_KEY_ORDER);
+        usageRollupMapper.upsertUsageDaily(ordered);
+    }
+    
+    /**
+     * 将一笔积分流水累加到日汇总，需与流水写入处于同一事务
+     */
+    public void applyTransaction(Transaction transaction) {
+        usageRollupMapper.upsertTransactionDaily(new TransactionDaily(transaction.getUserId(), transaction.getType(),
+                transaction.getCreatedAt().toLocalDate(), 1L, (long) transaction.getAmount()));
+    }
+    
+    /**
+     * 用户各功能的累计调用次数与消耗积分
+     */
+    @Transactional(readOnly = true)
+    public List<Map<String, Object>> getUsageStatistics(Long userId) {
+        return usageRollupMapper.getUsageStatisticsByUserId(userId);
+    }
+    
+    /**
+     * 用户在日期区间内（含首尾两天）消耗的积分
+     */
+    @Transactional(readOnly = true)
+    public int getPointsConsumed(Long userId, LocalDate startDate, LocalDate endDate) {
+        Integer points = usageRollupMapper.sumPointsConsumedByUserIdAndDateRange(userId, startDate, endDate);
+        return points != null ? points : 0;
+    }
+    
+    /**
+     * 用户某功能的累计调用次数
+     */
+    @Transactional(readOnly = true)
+    public long getUsageCount(Long userId, String functionName) {
+        Long count = usageRollupMapper.countByUserIdAndFunctionName(userId, functionName);
+        return count != null ? count : 0L;
+    }
+    
+    /**
+     * 用户某类积分流水的累计金额
+     */
+    @Transactional(readOnly = true)
+    public int getTransactionTotal(Long userId, Transaction.TransactionType type) {
+        Integer amount = usageRollupMapper.sumAmountByUserIdAndType(userId, type.name());
+        return amount != null ? amount : 0;
+    }
+    
+    /**
+     * 在后台虚拟线程中回填日汇总，已有回填任务在运行时返回false
+     * from为空时从最早的原始记录开始，to为空时回填到昨天；
+     * 当天的汇总由写入路径增量维护，重算当天时与并发写入存在竞争，应在低峰期显式指定
+     */
+    public boolean startBackfill(LocalDate from, LocalDate to) {
+        if (!backfillRunning.compareAndSet(false, true)) {
+            return false;
+        }
+        Thread.ofVirtual().name("usage-rollup-backfill").start(() -> {
+            try {
+                backfill(from, to);
+            } catch (Exception e) {
+                log.error("使用量汇总回填失败", e);
+            } finally {
+                backfillRunning.set(false);
+            }
+        });
+        return true;
+    }
+    
+    public boolean isBackfillRunning() {
+        return backfillRunning.get();
+    }
+    
+    /**
+     * 逐天重算，每天一个事务，单次事务只扫描一天的原始记录
+     */
+    void backfill(LocalDate from, LocalDate to) {
+        LocalDate start = from != null ? from : earliestDay();
+        LocalDate end = to != null ? to : LocalDate.now().minusDays(1);
+        if (start == null || start.isAfter(end)) {
+            log.info("无需回填使用量汇总");
+            return;
+        }
+        log.info("开始回填使用量汇总: {} ~ {}", start, end);
+        for (LocalDate day = start; !day.isAfter(end); day = day.plusDays(1)) {
+            LocalDate current = day;
+            LocalDateTime dayStart = current.atStartOfDay();
+            LocalDateTime dayEnd = current.plusDays(1).atStartOfDay();
+            transactionTemplate.executeWithoutResult(status -> {
+                usageRollupMapper.deleteUsageDaily(current);
+                usageRollupMapper.rebuildUsageDaily(current, dayStart, dayEnd);
+                usageRollupMapper.deleteTransactionDaily(current);
+                usageRollupMapper.rebuildTransactionDaily(current, dayStart, dayEnd);
+            });
+        }
+        log.info("使用量汇总回填完成: {} ~ {}", start, end);
+    }
+    
+    private LocalDate earliestDay() {
+        LocalDateTime usage = usageRollupMapper.findEarliestUsageTime();
+        LocalDateTime transaction = usageRollupMapper.findEarliestTransactionTime();
+        if (usage == null && transaction == null) {
+            return null;
+        }
+        if (usage == null || (transaction != null && transaction.isBefore(usage))) {
+            return transaction.toLocalDate();
+        }
+        return usage.toLocalDate();
+    }
+    
+    private long valueOf(Number value) {
+        return value != null ? value.longValue() : 0L;
+    }
+}
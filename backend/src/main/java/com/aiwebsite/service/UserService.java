@@ -5,6 +5,7 @@ import com.aiwebsite.dto.UserUpdateDto;
 import com.aiwebsite.entity.User;
 import com.aiwebsite.mapper.UserMapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -13,6 +14,7 @@ import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 /**
@@ -25,11 +27,13 @@ public class UserService implements UserDetailsService {
     
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final ReadYourWritesTracker readYourWrites;
     
     /**
      * 实现UserDetailsService接口，用于Spring Security认证
      */
     @Override
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         return userMapper.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("用户不存在: " + username));
@@ -53,6 +57,7 @@ public class UserService implements UserDetailsService {
     /**
      * 根据用户名查找用户
      */
+    @Transactional(readOnly = true)
     public Optional<User> findByUsername(String username) {
         return userMapper.findByUsername(username);
     }
@@ -65,10 +70,11 @@ public class UserService implements UserDetailsService {
     }
     
     /**
-     * 根据ID查找用户
+     * 根据ID查找用户，最近写入过的用户从主库读取
      */
+    @Transactional(readOnly = true)
     public Optional<User> findById(Long id) {
-        return Optional.ofNullable(userMapper.selectById(id));
+        return Optional.ofNullable(readYourWrites.read(id, () -> userMapper.selectById(id)));
     }
     
     /**
@@ -80,7 +86,8 @@ public class UserService implements UserDetailsService {
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
         
         updateUserFields(user, userDto);
-        userMapper.updateById(user);
+        updateProfileColumns(user);
+        readYourWrites.markWritten(userId);
         return user;
     }
     
@@ -93,31 +100,46 @@ public class UserService implements UserDetailsService {
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
         
         updateUserFieldsFromUpdateDto(user, userUpdateDto);
-        userMapper.updateById(user);
+        updateProfileColumns(user);
+        readYourWrites.markWritten(userId);
         return user;
     }
     
     /**
-     * 更新用户积分
+     * 原子扣除用户积分，余额不足时不做任何修改
+     * @return 是否扣除成功
      */
     @Transactional
-    public void updatePoints(Long userId, Integer points) {
-        User user = findById(userId)
-                .orElseThrow(() -> new RuntimeException("用户不存在"));
-        user.setPoints(points);
-        userMapper.updateById(user);
+    public boolean tryDeductPoints(Long userId, int points) {
+        if (userMapper.deductPoints(userId, points) != 1) {
+            return false;
+        }
+        readYourWrites.markWritten(userId);
+        return true;
     }
     
     /**
-     * 获取用户积分
+     * 原子增加用户积分
      */
+    @Transactional
+    public void incrementPoints(Long userId, int points) {
+        if (userMapper.addPoints(userId, points) != 1) {
+            throw new RuntimeException("用户不存在");
+        }
+        readYourWrites.markWritten(userId);
+    }
+    
+    /**
+     * 获取用户积分，扣除或增加积分后的窗口期内从主库读取
+     */
+    @Transactional(readOnly = true)
     public Integer getPoints(Long userId) {
-        return userMapper.findPointsByUserId(userId)
+        return readYourWrites.read(userId, () -> userMapper.findPointsByUserId(userId))
                 .orElseThrow(() -> new RuntimeException("用户不存在"));
     }
     
     /**
-     * 保存用户
+     * 保存用户，更新时不写积分列，积分只能经由原子增减修改
      */
     @Transactional
     public User save(User user) {
@@ -125,6 +147,7 @@ public class UserService implements UserDetailsService {
             userMapper.insert(user);
         } else {
             userMapper.updateById(user);
+            readYourWrites.markWritten(user.getId());
         }
         return user;
     }
@@ -142,6 +165,19 @@ public class UserService implements UserDetailsService {
         }
     }
     
+    /**
+     * 只写回资料列，不覆盖并发扣除或退还后的积分
+     */
+    private void updateProfileColumns(User user) {
+        userMapper.update(null, new LambdaUpdateWrapper<User>()
+                .eq(User::getId, user.getId())
+                .set(User::getEmail, user.getEmail())
+                .set(User::getFullName, user.getFullName())
+                .set(User::getPhoneNumber, user.getPhoneNumber())
+                .set(User::getAvatarUrl, user.getAvatarUrl())
+                .set(User::getUpdatedAt, LocalDateTime.now()));
+    }
+    
     /**
      * 从DTO创建用户实体
      */
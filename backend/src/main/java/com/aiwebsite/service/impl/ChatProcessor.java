@@ -4,6 +4,7 @@ import com.aiwebsite.service.AbstractAiProcessor;
 import com.aiwebsite.service.AiChatService;
 import com.aiwebsite.service.AiFunctionConfigService;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 
 @Component
 public class ChatProcessor extends AbstractAiProcessor {
@@ -22,6 +23,11 @@ public class ChatProcessor extends AbstractAiProcessor {
         return aiChatService.chat(input);
     }
     
+    @Override
+    protected Flux<String> processStreamInternal(String input) {
+        return aiChatService.streamChat(input);
+    }
+    
     @Override
     protected boolean validateInputInternal(String input) {
         // 聊天输入长度限制
@@ -1,10 +1,17 @@
 package com.aiwebsite.service.impl;
 
-import com.aiwebsite.service.AiProcessor;
+import com.aiwebsite.service.AbstractAiProcessor;
+import com.aiwebsite.service.AiChatService;
+import com.aiwebsite.service.AiFunctionConfigService;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 
 @Component
-public class CodeGenerationProcessor implements AiProcessor {
+public class CodeGenerationProcessor extends AbstractAiProcessor {
+    
+    public CodeGenerationProcessor(AiFunctionConfigService configService, AiChatService aiChatService) {
+        super(configService, aiChatService);
+    }
     
     @Override
     public String getFunctionName() {
@@ -12,17 +19,17 @@ public class CodeGenerationProcessor implements AiProcessor {
     }
     
     @Override
-    public int getRequiredPoints() {
-        return 40;
+    protected String processInternal(String input) {
+        return aiChatService.generateCode(input);
     }
     
     @Override
-    public boolean validateInput(String input) {
-        return input != null && !input.trim().isEmpty();
+    protected Flux<String> processStreamInternal(String input) {
+        return aiChatService.streamCode(input);
     }
     
     @Override
-    public String process(String input) {
-        return "代码生成功能 - 已处理输入: " + input;
+    protected String buildSystemPrompt() {
+        return AiChatService.CODE_GENERATION_SYSTEM_PROMPT;
     }
 } 
\ No newline at end of file
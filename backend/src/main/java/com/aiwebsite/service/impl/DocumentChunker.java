@@ -0,0 +1,90 @@
+package com.aiwebsite.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 文档分块器
+ * 依次按段落、行、句子边界切分，仍超长的片段才按字符硬切，
+ * 再把相邻片段贪心合并为不超过上限的块，尽量不把一句话拆到两个块中
+ */
+final class DocumentChunker {
+    
+    private static final Pattern[] BOUNDARIES = {
+            Pattern.compile("\\n\\s*\\n"),                 // 段落
+            Pattern.compile("\\n"),                        // 行
+            Pattern.compile("[。！？；]|[.!?;](?=\\s)")     // 句子，英文标点后需跟空白以避开小数和缩写
+    };
+    
+    private final int maxChars;
+    
+    DocumentChunker(int maxChars) {
+        this.maxChars = maxChars;
+    }
+    
+    /**
+     * 将文本切分为若干块，每块长度不超过maxChars，空白块被丢弃
+     */
+    List<String> split(String text) {
+        List<String> pieces = new ArrayList<>();
+        collectPieces(text, 0, pieces);
+        
+        List<String> chunks = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        for (String piece : pieces) {
+            if (current.length() + piece.length() > maxChars) {
+                addChunk(chunks, current);
+            }
+            current.append(piece);
+        }
+        addChunk(chunks, current);
+        return chunks;
+    }
+    
+    /**
+     * 按第level级边界切分，超长片段递归使用下一级边界
+     */
+    private void collectPieces(String text, int level, List<String> pieces) {
+        if (text.length() <= maxChars) {
+            pieces.add(text);
+            return;
+        }
+        if (level == BOUNDARIES.length) {
+            hardSplit(text, pieces);
+            return;
+        }
+        Matcher matcher = BOUNDARIES[level].matcher(text);
+        int start = 0;
+        while (matcher.find()) {
+            collectPieces(text.substring(start, matcher.end()), level + 1, pieces);
+            start = matcher.end();
+        }
+        if (start < text.length()) {
+            collectPieces(text.substring(start), level + 1, pieces);
+        }
+    }
+    
+    /**
+     * 没有任何边界可用时按长度硬切，不拆开代理对
+     */
+    private void hardSplit(String text, List<String> pieces) {
+        int start = 0;
+        while (start < text.length()) {
+            int end = Math.min(start + maxChars, text.length());
+            if (end < text.length() && Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            pieces.add(text.substring(start, end));
+            start = end;
+        }
+    }
+    
+    private void addChunk(List<String> chunks, StringBuilder current) {
+        if (!current.toString().isBlank()) {
+            chunks.add(current.toString());
+        }
+        current.setLength(0);
+    }
+}
@@ -1,28 +1,157 @@
 package com.aiwebsite.service.impl;
 
-import com.aiwebsite.service.AiProcessor;
+import com.aiwebsite.service.AbstractAiProcessor;
+import com.aiwebsite.service.AiChatService;
+import com.aiwebsite.service.AiFunctionConfigService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * 文档摘要处理器
+ * 短文档直接摘要；长文档按语义边界分块后并行摘要各块（map），
+ * 再把相邻的部分摘要分组逐层合并（reduce），直到剩下一组时生成最终摘要。
+ * 并发足够时总耗时约为单块耗时乘以合并层数，积分随分块数增加
+ */
 @Component
-public class DocumentSummaryProcessor implements AiProcessor {
+public class DocumentSummaryProcessor extends AbstractAiProcessor {
+    
+    private static final String SYSTEM_PROMPT = "你是一个专业的文档摘要助手，请对给定的文档进行简洁而全面的摘要。";
+    private static final String CHUNK_SYSTEM_PROMPT = "你是一个专业的文档摘要助手。你将看到一篇长文档中的一部分，" +
+            "请提炼这一部分的关键信息、数据和结论，不要补充原文没有的内容。";
+    private static final String MERGE_SYSTEM_PROMPT = "你是一个专业的文档摘要助手。你将看到同一文档中连续几个部分的摘要，" +
+            "请按原有顺序把它们合并为一份连贯的摘要，去除重复，保留关键信息。";
+    // 分块摘要阶段占总进度的比例，合并完成、开始最终摘要时进度为REDUCED_PROGRESS
+    private static final int MAP_PROGRESS = 80;
+    private static final int REDUCED_PROGRESS = 90;
+    
+    private final DocumentChunker chunker;
+    private final int chunkChars;
+    private final int maxInputChars;
+    private final int pointsPerExtraChunk;
+    // 所有摘要请求共享，限制同时发往提供商的分块调用数
+    private final Semaphore providerPermits;
+    
+    public DocumentSummaryProcessor(AiFunctionConfigService configService, AiChatService aiChatService,
+                                    @Value("${ai.document-summary.chunk-chars:8000}") int chunkChars,
+                                    @Value("${ai.document-summary.max-input-chars:5000000}") int maxInputChars,
+                                    @Value("${ai.document-summary.max-concurrency:8}") int maxConcurrency,
+                                    @Value("${ai.document-summary.points-per-extra-chunk:5}") int pointsPerExtraChunk) {
+        super(configService, aiChatService);
+        this.chunker = new DocumentChunker(chunkChars);
+        this.chunkChars = chunkChars;
+        this.maxInputChars = maxInputChars;
+        this.pointsPerExtraChunk = pointsPerExtraChunk;
+        this.providerPermits = new Semaphore(maxConcurrency, true);
+    }
     
     @Override
     public String getFunctionName() {
         return "document-summary";
     }
     
+    /**
+     * 首块按功能配置计费，之后每多一块增加固定积分
+     */
+    @Override
+    public int getRequiredPoints(String input) {
+        int chunks = input.length() <= chunkChars ? 1 : chunker.split(input).size();
+        return getRequiredPoints() + pointsPerExtraChunk * Math.max(0, chunks - 1);
+    }
+    
+    @Override
+    protected int getMaxInputLength() {
+        return maxInputChars;
+    }
+    
     @Override
-    public int getRequiredPoints() {
-        return 35;
+    protected String processInternal(String input) {
+        List<String> chunks = chunker.split(input);
+        if (chunks.size() <= 1) {
+            return aiChatService.chatWithSystemPrompt(SYSTEM_PROMPT, documentPrompt(input));
+        }
+        return aiChatService.chatWithSystemPrompt(SYSTEM_PROMPT, finalPrompt(reduceToFinalGroup(chunks)));
     }
     
     @Override
-    public boolean validateInput(String input) {
-        return input != null && !input.trim().isEmpty();
+    protected Flux<String> processStreamInternal(String input) {
+        List<String> chunks = chunker.split(input);
+        if (chunks.size() <= 1) {
+            return aiChatService.streamWithSystemPrompt(SYSTEM_PROMPT, documentPrompt(input));
+        }
+        // 分块摘要与中间合并都完成后，只有最终摘要以流式输出
+        return callBlocking(() -> reduceToFinalGroup(chunks))
+                .flatMapMany(summaries -> aiChatService.streamWithSystemPrompt(SYSTEM_PROMPT, finalPrompt(summaries)));
     }
     
     @Override
-    public String process(String input) {
-        return "文档总结功能 - 已处理输入: " + input;
+    protected String buildSystemPrompt() {
+        return SYSTEM_PROMPT;
+    }
+    
+    /**
+     * 并行摘要各块，再逐层合并，直到剩余摘要可以放进一次最终调用
+     */
+    private List<String> reduceToFinalGroup(List<String> chunks) {
+        int total = chunks.size();
+        AtomicInteger completed = new AtomicInteger();
+        List<String> summaries = mapInParallel(IntStream.range(0, total).boxed().toList(), providerPermits, index -> {
+            String summary = aiChatService.chatWithSystemPrompt(CHUNK_SYSTEM_PROMPT,
+                    "以下是文档的第" + (index + 1) + "/" + total + "部分：\n\n" + chunks.get(index));
+            reportProgress(MAP_PROGRESS * completed.incrementAndGet() / total);
+            return summary;
+        });
+        
+        List<List<String>> groups = group(summaries);
+        while (groups.size() > 1) {
+            summaries = mapInParallel(groups, providerPermits, group -> group.size() == 1
+                    ? group.get(0)
+                    : aiChatService.chatWithSystemPrompt(MERGE_SYSTEM_PROMPT, joinSummaries(group)));
+            groups = group(summaries);
+        }
+        reportProgress(REDUCED_PROGRESS);
+        return groups.get(0);
+    }
+    
+    /**
+     * 把相邻摘要按长度分组，每组总长不超过分块上限，且至少包含两项以保证每层都在收敛
+     */
+    private List<List<String>> group(List<String> summaries) {
+        List<List<String>> groups = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        int length = 0;
+        for (String summary : summaries) {
+            if (current.size() >= 2 && length + summary.length() > chunkChars) {
+                groups.add(current);
+                current = new ArrayList<>();
+                length = 0;
+            }
+            current.add(summary);
+            length += summary.length();
+        }
+        groups.add(current);
+        return groups;
+    }
+    
+    private String documentPrompt(String document) {
+        return "请对以下文档进行摘要：\n\n" + document;
+    }
+    
+    private String finalPrompt(List<String> summaries) {
+        return "以下是一篇长文档各部分按顺序排列的摘要，请据此写出整篇文档的摘要：\n\n" + joinSummaries(summaries);
+    }
+    
+    private String joinSummaries(List<String> summaries) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < summaries.size(); i++) {
+            builder.append("【第").append(i + 1).append("段】\n").append(summaries.get(i)).append("\n\n");
+        }
+        return builder.toString();
     }
-} 
\ No newline at end of file
+}
@@ -4,6 +4,7 @@ import com.aiwebsite.service.AbstractAiProcessor;
 import com.aiwebsite.service.AiChatService;
 import com.aiwebsite.service.AiFunctionConfigService;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
 
 @Component
 public class TextGenerationProcessor extends AbstractAiProcessor {
@@ -24,7 +25,12 @@ public class TextGenerationProcessor extends AbstractAiProcessor {
     
     @Override
     protected String buildSystemPrompt() {
-        return "你是一个专业的文本生成助手，请根据用户的需求生成高质量、富有创意的文本内容。注重内容的逻辑性和可读性。";
+        return AiChatService.TEXT_GENERATION_SYSTEM_PROMPT;
+    }
+    
+    @Override
+    protected Flux<String> processStreamInternal(String input) {
+        return aiChatService.streamText(input);
     }
     
     @Override
@@ -0,0 +1,13 @@
+-- AI功能配置表：积分、启停、缓存有效期等，修改时version加1，各实例轮询版本变化后热加载，无需重新部署
+CREATE TABLE IF NOT EXISTS ai_function_configs (
+    name              VARCHAR(50)  PRIMARY KEY,
+    display_name      VARCHAR(100) NOT NULL,
+    description       VARCHAR(500),
+    category          VARCHAR(50)  NOT NULL,
+    points            INT          NOT NULL,
+    enabled           BOOLEAN      NOT NULL DEFAULT TRUE,
+    cache_ttl_seconds BIGINT       NOT NULL DEFAULT 0,
+    version           INT          NOT NULL DEFAULT 1,
+    created_at        DATETIME     NOT NULL,
+    updated_at        DATETIME     NOT NULL
+);
@@ -0,0 +1,22 @@
+-- 异步任务表：长耗时AI功能提交后立即返回任务ID，由后台工作线程执行，重启后未完成的任务会被重新调度
+CREATE TABLE IF NOT EXISTS ai_jobs (
+    id             BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id        BIGINT       NOT NULL,
+    function_name  VARCHAR(50)  NOT NULL,
+    input_data     LONGTEXT     NOT NULL,
+    output_data    MEDIUMTEXT,
+    status         VARCHAR(20)  NOT NULL DEFAULT 'QUEUED',
+    progress       INT          NOT NULL DEFAULT 0,
+    error_message  TEXT,
+    points         INT          NOT NULL,
+    reservation_id BIGINT       NOT NULL,
+    attempts       INT          NOT NULL DEFAULT 0,
+    created_at     DATETIME     NOT NULL,
+    started_at     DATETIME,
+    finished_at    DATETIME,
+    heartbeat_at   DATETIME,
+    updated_at     DATETIME     NOT NULL,
+    INDEX idx_ai_jobs_status_id (status, id),
+    INDEX idx_ai_jobs_status_heartbeat (status, heartbeat_at),
+    INDEX idx_ai_jobs_user_status (user_id, status)
+);
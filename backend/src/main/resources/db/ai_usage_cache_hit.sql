@@ -0,0 +1,2 @@
+-- ai_usage.status 新增 CACHE_HIT 状态（命中响应缓存的调用）
+ALTER TABLE ai_usage MODIFY COLUMN status VARCHAR(20) NOT NULL DEFAULT 'SUCCESS';
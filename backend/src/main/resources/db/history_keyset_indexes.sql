@@ -0,0 +1,3 @@
+-- 积分流水与AI使用历史的游标分页索引：WHERE user_id = ? 按 (created_at, id) 倒序扫描，无需文件排序
+CREATE INDEX idx_transactions_user_created ON transactions (user_id, created_at, id);
+CREATE INDEX idx_ai_usage_user_created ON ai_usage (user_id, created_at, id);
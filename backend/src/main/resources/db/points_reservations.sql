@@ -0,0 +1,13 @@
+-- 积分预留表：AI调用前预留积分，调用结束后确认或释放
+CREATE TABLE IF NOT EXISTS points_reservations (
+    id            BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id       BIGINT       NOT NULL,
+    function_name VARCHAR(50)  NOT NULL,
+    amount        INT          NOT NULL,
+    status        VARCHAR(20)  NOT NULL DEFAULT 'RESERVED',
+    expires_at    DATETIME     NOT NULL,
+    created_at    DATETIME     NOT NULL,
+    updated_at    DATETIME     NOT NULL,
+    INDEX idx_points_reservations_status_expires (status, expires_at),
+    INDEX idx_points_reservations_user (user_id)
+);
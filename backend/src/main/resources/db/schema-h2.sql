@@ -0,0 +1,114 @@
+-- 基准测试与本地压测使用的H2建表脚本（MySQL兼容模式），表结构与MySQL库保持一致
+CREATE TABLE IF NOT EXISTS users (
+    id            BIGINT AUTO_INCREMENT PRIMARY KEY,
+    username      VARCHAR(50)  NOT NULL UNIQUE,
+    password      VARCHAR(255) NOT NULL,
+    email         VARCHAR(100) NOT NULL UNIQUE,
+    full_name     VARCHAR(100),
+    phone_number  VARCHAR(20),
+    points        INT          NOT NULL DEFAULT 100,
+    avatar_url    VARCHAR(255),
+    role          VARCHAR(20)  NOT NULL DEFAULT 'USER',
+    is_active     BOOLEAN      NOT NULL DEFAULT TRUE,
+    created_at    DATETIME,
+    updated_at    DATETIME
+);
+
+CREATE TABLE IF NOT EXISTS transactions (
+    id            BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id       BIGINT       NOT NULL,
+    type          VARCHAR(20)  NOT NULL,
+    amount        INT          NOT NULL,
+    balance_after INT,
+    description   VARCHAR(255),
+    ai_function   VARCHAR(50),
+    created_at    DATETIME,
+    INDEX idx_transactions_user_created (user_id, created_at, id),
+    INDEX idx_transactions_created (created_at)
+);
+
+CREATE TABLE IF NOT EXISTS ai_usage (
+    id                BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id           BIGINT       NOT NULL,
+    function_name     VARCHAR(50)  NOT NULL,
+    input_data        TEXT,
+    output_data       TEXT,
+    points_consumed   INT          NOT NULL DEFAULT 0,
+    execution_time_ms BIGINT,
+    status            VARCHAR(20)  NOT NULL DEFAULT 'SUCCESS',
+    error_message     TEXT,
+    created_at        DATETIME,
+    INDEX idx_ai_usage_user_created (user_id, created_at, id),
+    INDEX idx_ai_usage_created (created_at)
+);
+
+CREATE TABLE IF NOT EXISTS points_reservations (
+    id            BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id       BIGINT       NOT NULL,
+    function_name VARCHAR(50)  NOT NULL,
+    amount        INT          NOT NULL,
+    status        VARCHAR(20)  NOT NULL DEFAULT 'RESERVED',
+    expires_at    DATETIME     NOT NULL,
+    created_at    DATETIME     NOT NULL,
+    updated_at    DATETIME     NOT NULL,
+    INDEX idx_points_reservations_status_expires (status, expires_at),
+    INDEX idx_points_reservations_user (user_id)
+);
+
+CREATE TABLE IF NOT EXISTS ai_usage_daily (
+    user_id           BIGINT       NOT NULL,
+    function_name     VARCHAR(50)  NOT NULL,
+    usage_date        DATE         NOT NULL,
+    usage_count       BIGINT       NOT NULL DEFAULT 0,
+    points_consumed   BIGINT       NOT NULL DEFAULT 0,
+    execution_time_ms BIGINT       NOT NULL DEFAULT 0,
+    updated_at        DATETIME     NOT NULL,
+    PRIMARY KEY (user_id, function_name, usage_date),
+    INDEX idx_ai_usage_daily_date (usage_date)
+);
+
+CREATE TABLE IF NOT EXISTS transaction_daily (
+    user_id           BIGINT       NOT NULL,
+    type              VARCHAR(20)  NOT NULL,
+    transaction_date  DATE         NOT NULL,
+    transaction_count BIGINT       NOT NULL DEFAULT 0,
+    total_amount      BIGINT       NOT NULL DEFAULT 0,
+    updated_at        DATETIME     NOT NULL,
+    PRIMARY KEY (user_id, type, transaction_date),
+    INDEX idx_transaction_daily_date (transaction_date)
+);
+
+CREATE TABLE IF NOT EXISTS ai_jobs (
+    id             BIGINT AUTO_INCREMENT PRIMARY KEY,
+    user_id        BIGINT       NOT NULL,
+    function_name  VARCHAR(50)  NOT NULL,
+    input_data     LONGTEXT     NOT NULL,
+    output_data    MEDIUMTEXT,
+    status         VARCHAR(20)  NOT NULL DEFAULT 'QUEUED',
+    progress       INT          NOT NULL DEFAULT 0,
+    error_message  TEXT,
+    points         INT          NOT NULL,
+    reservation_id BIGINT       NOT NULL,
+    attempts       INT          NOT NULL DEFAULT 0,
+    created_at     DATETIME     NOT NULL,
+    started_at     DATETIME,
+    finished_at    DATETIME,
+    heartbeat_at   DATETIME,
+    updated_at     DATETIME     NOT NULL,
+    INDEX idx_ai_jobs_status_id (status, id),
+    INDEX idx_ai_jobs_status_heartbeat (status, heartbeat_at),
+    INDEX idx_ai_jobs_user_status (user_id, status)
+);
+
+CREATE TABLE IF NOT EXISTS ai_function_configs (
+    name              VARCHAR(50)  PRIMARY KEY,
+    display_name      VARCHAR(100) NOT NULL,
+    description       VARCHAR(500),
+    category          VARCHAR(50)  NOT NULL,
+    points            INT          NOT NULL,
+    enabled           BOOLEAN      NOT NULL DEFAULT TRUE,
+    cache_ttl_seconds BIGINT       NOT NULL DEFAULT 0,
+    version           INT          NOT NULL DEFAULT 1,
+    created_at        DATETIME     NOT NULL,
+    updated_at        DATETIME     NOT NULL
+);
@@ -0,0 +1,27 @@
+-- 使用量日汇总表：原始记录写入时增量累加，统计查询只读汇总表
+CREATE TABLE IF NOT EXISTS ai_usage_daily (
+    user_id           BIGINT       NOT NULL,
+    function_name     VARCHAR(50)  NOT NULL,
+    usage_date        DATE         NOT NULL,
+    usage_count       BIGINT       NOT NULL DEFAULT 0,
+    points_consumed   BIGINT       NOT NULL DEFAULT 0,
+    execution_time_ms BIGINT       NOT NULL DEFAULT 0,
+    updated_at        DATETIME     NOT NULL,
+    PRIMARY KEY (user_id, function_name, usage_date),
+    INDEX idx_ai_usage_daily_date (usage_date)
+);
+
+CREATE TABLE IF NOT EXISTS transaction_daily (
+    user_id           BIGINT       NOT NULL,
+    type              VARCHAR(20)  NOT NULL,
+    transaction_date  DATE         NOT NULL,
+    transaction_count BIGINT       NOT NULL DEFAULT 0,
+    total_amount      BIGINT       NOT NULL DEFAULT 0,
+    updated_at        DATETIME     NOT NULL,
+    PRIMARY KEY (user_id, type, transaction_date),
+    INDEX idx_transaction_daily_date (transaction_date)
+);
+
+-- 回填按天扫描原始记录
+CREATE INDEX idx_ai_usage_created ON ai_usage (created_at);
+CREATE INDEX idx_transactions_created ON transactions (created_at);
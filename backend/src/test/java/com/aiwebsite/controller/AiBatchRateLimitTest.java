@@ -0,0 +1,99 @@
+package com.aiwebsite.controller;
+
+import com.aiwebsite.entity.User;
+import com.aiwebsite.mapper.UserMapper;
+import com.aiwebsite.security.JwtTokenProvider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 批量请求按项数计入用户令牌桶：不能以一次批量绕过单用户速率限制
+ */
+@SpringBootTest(properties = {
+        "ai.limiter.user.bucket-capacity=200",
+        "ai.limiter.user.refill-per-second=5"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AiBatchRateLimitTest {
+    
+    private static final int INITIAL_POINTS = 100_000;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private UserMapper userMapper;
+    
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+    
+    private User user;
+    private String token;
+    
+    @BeforeEach
+    void setUp() {
+        user = new User();
+        user.setUsername("batch-" + System.nanoTime());
+        user.setPassword("password");
+        user.setEmail(user.getUsername() + "@example.com");
+        user.setPoints(INITIAL_POINTS);
+        userMapper.insert(user);
+        token = tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+    
+    @Test
+    void batchCostingMoreThanBucketCapacityIsRejectedWithoutReservingPoints() throws Exception {
+        // chat每项10积分，100项共1000，超过桶容量200
+        mockMvc.perform(batch(100))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+        
+        assertThat(userMapper.findPointsByUserId(user.getId())).contains(INITIAL_POINTS);
+    }
+    
+    @Test
+    void batchItemsAreChargedAgainstTheBucket() throws Exception {
+        // 15项共150，第一次放行，桶中只剩约50，第二次同样大小的批量被限流
+        mockMvc.perform(batch(15)).andExpect(status().isOk());
+        mockMvc.perform(batch(15))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+    
+    @Test
+    void streamingBatchOverCapacityIsAlsoRejected() throws Exception {
+        mockMvc.perform(batch(100, MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().exists(HttpHeaders.RETRY_AFTER));
+    }
+    
+    private MockHttpServletRequestBuilder batch(int items) {
+        return batch(items, MediaType.APPLICATION_JSON);
+    }
+    
+    private MockHttpServletRequestBuilder batch(int items, MediaType accept) {
+        String inputs = String.join(",", Collections.nCopies(items, "\"hello\""));
+        return post("/api/ai/chat/batch")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token)
+                .contentType(MediaType.APPLICATION_JSON)
+                .accept(accept)
+                .content("{\"inputs\":[" + inputs + "]}");
+    }
+}
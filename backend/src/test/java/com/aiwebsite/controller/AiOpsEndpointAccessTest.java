@@ -0,0 +1,72 @@
+package com.aiwebsite.controller;
+
+import com.aiwebsite.entity.User;
+import com.aiwebsite.mapper.UserMapper;
+import com.aiwebsite.security.JwtTokenProvider;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 运维统计与全局路由切换接口只对管理员开放
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AiOpsEndpointAccessTest {
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private UserMapper userMapper;
+    
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+    
+    @ParameterizedTest
+    @ValueSource(strings = {"/api/ai/cache/stats", "/api/ai/limiter/stats",
+            "/api/ai/provider/routing", "/api/ai/chat/conversations/stats"})
+    void opsEndpointsAreAdminOnly(String path) throws Exception {
+        mockMvc.perform(get(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenFor(User.Role.USER)))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get(path).header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenFor(User.Role.ADMIN)))
+                .andExpect(status().isOk());
+    }
+    
+    @Test
+    void providerSwitchIsAdminOnly() throws Exception {
+        mockMvc.perform(post("/api/ai/provider/switch")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenFor(User.Role.USER))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"provider\":\"ollama\"}"))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(post("/api/ai/provider/switch")
+                        .header(HttpHeaders.AUTHORIZATION, "Bearer " + tokenFor(User.Role.ADMIN))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"provider\":\"openai\"}"))
+                .andExpect(status().isOk());
+    }
+    
+    private String tokenFor(User.Role role) {
+        User user = new User();
+        user.setUsername("ops-" + role.name().toLowerCase() + "-" + System.nanoTime());
+        user.setPassword("password");
+        user.setEmail(user.getUsername() + "@example.com");
+        user.setRole(role);
+        userMapper.insert(user);
+        return tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+    }
+}
@@ -0,0 +1,182 @@
+package com.aiwebsite.controller;
+
+import com.aiwebsite.entity.User;
+import com.aiwebsite.mapper.UserMapper;
+import com.aiwebsite.security.JwtTokenProvider;
+import com.aiwebsite.service.AiProviderRouter;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 每个请求的数据库往返次数：认证主体来自JWT声明，认证本身不查询用户，
+ * 各接口在一次请求内最多查询一次用户表
+ */
+@SpringBootTest(properties = "ai.limiter.enabled=false")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class UserLookupCountTest {
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private UserMapper userMapper;
+    
+    @Autowired
+    private JwtTokenProvider tokenProvider;
+    
+    @Autowired
+    private StatementRecorder statementRecorder;
+    
+    @MockitoBean
+    private AiProviderRouter providerRouter;
+    
+    private String token;
+    
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("lookup-" + System.nanoTime());
+        user.setPassword("password");
+        user.setEmail(user.getUsername() + "@example.com");
+        user.setPoints(1000);
+        userMapper.insert(user);
+        token = tokenProvider.generateToken(new UsernamePasswordAuthenticationToken(user, null, user.getAuthorities()));
+        when(providerRouter.getPreferredProvider(anyString())).thenReturn("openai");
+        when(providerRouter.call(any(Prompt.class))).thenReturn("answer");
+    }
+    
+    @Test
+    void authMeLooksUpTheUserOnce() throws Exception {
+        List<String> statements = perform(get("/api/auth/me"));
+        
+        assertThat(userSelects(statements)).hasSize(1);
+        assertThat(statements).hasSize(1);
+    }
+    
+    @Test
+    void profileLooksUpTheUserOnce() throws Exception {
+        List<String> statements = perform(get("/api/user/profile"));
+        
+        assertThat(userSelects(statements)).hasSize(1);
+        assertThat(statements).hasSize(1);
+    }
+    
+    @Test
+    void pointsReadsTheBalanceAtMostOnce() throws Exception {
+        List<String> statements = perform(get("/api/user/points"));
+        
+        assertThat(userSelects(statements)).hasSizeLessThanOrEqualTo(1);
+        assertThat(statements).hasSizeLessThanOrEqualTo(1);
+    }
+    
+    @Test
+    void aiFunctionCallLooksUpTheUserAtMostOnce() throws Exception {
+        List<String> statements = perform(post("/api/ai/text-generation")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"prompt\":\"lookup-" + System.nanoTime() + "\"}"));
+        
+        assertThat(userSelects(statements)).hasSizeLessThanOrEqualTo(1);
+        // 预留：扣减、读余额、记交易、累加交易日汇总、登记预留；确认：结算预留
+        assertThat(statements).hasSize(6);
+    }
+    
+    /**
+     * 执行请求，返回请求线程上执行的SQL
+     */
+    private List<String> perform(RequestBuilder request) throws Exception {
+        statementRecorder.start();
+        try {
+            mockMvc.perform(withToken(request)).andExpect(status().isOk());
+        } finally {
+            statementRecorder.stop();
+        }
+        return statementRecorder.statements();
+    }
+    
+    private RequestBuilder withToken(RequestBuilder request) {
+        return servletContext -> {
+            var built = request.buildRequest(servletContext);
+            built.addHeader(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+            return built;
+        };
+    }
+    
+    private List<String> userSelects(List<String> statements) {
+        return statements.stream()
+                .filter(sql -> sql.startsWith("select ") && sql.matches(".* from users( .*)?"))
+                .toList();
+    }
+    
+    @TestConfiguration
+    static class Config {
+        
+        @Bean
+        StatementRecorder statementRecorder() {
+            return new StatementRecorder();
+        }
+    }
+    
+    /**
+     * 记录指定线程上执行的SQL，审计写入线程等后台线程的语句不计入
+     */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+    static class StatementRecorder implements Interceptor {
+        
+        private final List<String> statements = new CopyOnWriteArrayList<>();
+        private volatile Thread recordingThread;
+        
+        void start() {
+            statements.clear();
+            recordingThread = Thread.currentThread();
+        }
+        
+        void stop() {
+            recordingThread = null;
+        }
+        
+        List<String> statements() {
+            return List.copyOf(statements);
+        }
+        
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            if (Thread.currentThread() == recordingThread) {
+                String sql = ((StatementHandler) invocation.getTarget()).getBoundSql().getSql();
+                statements.add(sql.replaceAll("\\s+", " ").trim().toLowerCase(Locale.ROOT));
+            }
+            return invocation.proceed();
+        }
+    }
+}
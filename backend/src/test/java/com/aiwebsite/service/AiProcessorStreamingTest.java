@@ -0,0 +1,96 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.service.impl.CodeGenerationProcessor;
+import com.aiwebsite.service.impl.TextGenerationProcessor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 处理器流式输出：代码生成与文本生成按token推送，缓存键使用的系统提示词与实际发送的一致；
+ * 无法流式的处理器不在订阅线程上阻塞
+ */
+class AiProcessorStreamingTest {
+    
+    private AiProviderRouter providerRouter;
+    private AiChatService aiChatService;
+    private AiFunctionConfigService configService;
+    
+    @BeforeEach
+    void setUp() {
+        providerRouter = mock(AiProviderRouter.class);
+        configService = mock(AiFunctionConfigService.class);
+        aiChatService = new AiChatService();
+        ReflectionTestUtils.setField(aiChatService, "providerRouter", providerRouter);
+        when(providerRouter.stream(any(Prompt.class))).thenReturn(Flux.just("a", "b", "c"));
+        when(providerRouter.call(any(Prompt.class))).thenReturn("abc");
+    }
+    
+    @Test
+    void codeGenerationStreamsTokensWithItsCacheKeyPrompt() {
+        AiProcessor processor = new CodeGenerationProcessor(configService, aiChatService);
+        
+        assertThat(processor.processStream("写一个排序函数").collectList().block()).containsExactly("a", "b", "c");
+        
+        assertThat(sentStreamPrompt().getSystemMessage().getText()).isEqualTo(processor.getSystemPrompt());
+    }
+    
+    @Test
+    void textGenerationSendsTheSystemPromptUsedForItsCacheKey() {
+        AiProcessor processor = new TextGenerationProcessor(configService, aiChatService);
+        
+        processor.process("写一段产品介绍文字");
+        assertThat(processor.processStream("写一段产品介绍文字").collectList().block()).containsExactly("a", "b", "c");
+        
+        ArgumentCaptor<Prompt> called = ArgumentCaptor.forClass(Prompt.class);
+        verify(providerRouter).call(called.capture());
+        assertThat(called.getValue().getSystemMessage().getText()).isEqualTo(processor.getSystemPrompt());
+        assertThat(sentStreamPrompt().getSystemMessage().getText()).isEqualTo(processor.getSystemPrompt());
+    }
+    
+    @Test
+    void nonStreamingProcessorDoesNotBlockTheSubscribingThread() {
+        Thread caller = Thread.currentThread();
+        Thread[] processing = new Thread[1];
+        AiProcessor processor = new AiProcessor() {
+            @Override
+            public String process(String input) {
+                processing[0] = Thread.currentThread();
+                return input;
+            }
+            
+            @Override
+            public String getFunctionName() {
+                return "blocking";
+            }
+            
+            @Override
+            public int getRequiredPoints() {
+                return 1;
+            }
+            
+            @Override
+            public boolean validateInput(String input) {
+                return true;
+            }
+        };
+        
+        assertThat(processor.processStream("input").collectList().block()).containsExactly("input");
+        assertThat(processing[0]).isNotSameAs(caller);
+    }
+    
+    private Prompt sentStreamPrompt() {
+        ArgumentCaptor<Prompt> captor = ArgumentCaptor.forClass(Prompt.class);
+        verify(providerRouter).stream(captor.capture());
+        return captor.getValue();
+    }
+}
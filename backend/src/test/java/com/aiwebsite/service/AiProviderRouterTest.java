@@ -0,0 +1,197 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.config.AiModelRoutingProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.openai.OpenAiChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.ai.openai.api.OpenAiApi;
+import org.springframework.ai.openai.api.OpenAiApi.ChatCompletionRequest;
+import org.springframework.ai.retry.NonTransientAiException;
+import org.springframework.test.util.ReflectionTestUtils;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 提供商路由：没有样本的提供商不抢占流量，熔断恢复后逐步增加流量，调用方错误不计入提供商健康度；
+ * 流式调用发往上游的模型与配置一致
+ */
+class AiProviderRouterTest {
+    
+    private static final long LATENCY_MS = 20;
+    
+    private final AtomicInteger openAiCalls = new AtomicInteger();
+    private final AtomicInteger ollamaCalls = new AtomicInteger();
+    private final AtomicBoolean ollamaFailing = new AtomicBoolean();
+    private ChatClient openAiClient;
+    private AiProviderRouter router;
+    
+    @BeforeEach
+    void setUp() {
+        openAiClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        ChatClient ollamaClient = mock(ChatClient.class, RETURNS_DEEP_STUBS);
+        when(openAiClient.prompt(any(Prompt.class)).call().chatResponse()).thenAnswer(invocation -> {
+            openAiCalls.incrementAndGet();
+            Thread.sleep(LATENCY_MS);
+            return response();
+        });
+        when(ollamaClient.prompt(any(Prompt.class)).call().chatResponse()).thenAnswer(invocation -> {
+            ollamaCalls.incrementAndGet();
+            if (ollamaFailing.get()) {
+                throw new RuntimeException("connection refused");
+            }
+            Thread.sleep(LATENCY_MS);
+            return response();
+        });
+        
+        OpenAiChatModel openAiModel = mock(OpenAiChatModel.class);
+        when(openAiModel.getDefaultOptions()).thenReturn(OpenAiChatOptions.builder().build());
+        router = configure(new AiProviderRouter(openAiClient, ollamaClient, openAiModel, "openai", 
+                new AiModelRoutingProperties(), mock(AiMetrics.class)));
+    }
+    
+    private static AiProviderRouter configure(AiProviderRouter router) {
+        ReflectionTestUtils.setField(router, "windowSize", 50);
+        ReflectionTestUtils.setField(router, "minCalls", 5);
+        ReflectionTestUtils.setField(router, "failureRateThreshold", 0.5);
+        ReflectionTestUtils.setField(router, "slowCallMs", 30_000L);
+        ReflectionTestUtils.setField(router, "slowCallRateThreshold", 0.8);
+        ReflectionTestUtils.setField(router, "openDurationMs", 0L);
+        ReflectionTestUtils.setField(router, "preferredWeight", 3.0);
+        ReflectionTestUtils.setField(router, "defaultLatencyMs", 2000.0);
+        return router;
+    }
+    
+    @Test
+    void providerWithoutSamplesDoesNotOutweighPreferredProviderWithHistory() {
+        // 预热期间几乎只选首选提供商，使其积累样本而ollama没有样本
+        ReflectionTestUtils.setField(router, "preferredWeight", 1_000_000.0);
+        callRounds(10);
+        assertThat(provider("ollama").get("calls")).isEqualTo(0);
+        ReflectionTestUtils.setField(router, "preferredWeight", 3.0);
+        
+        // 没有样本的ollama按先验（首选提供商的平均延迟）计权，只得到其基础权重对应的份额
+        double openAiWeight = weight("openai");
+        double ollamaWeight = weight("ollama");
+        assertThat(ollamaWeight).isLessThan(openAiWeight);
+        assertThat(ollamaWeight / openAiWeight).isBetween(0.2, 0.5);
+    }
+    
+    @Test
+    void recoveredProviderRampsUpInsteadOfTakingAllTraffic() {
+        ReflectionTestUtils.setField(router, "preferredWeight", 1_000_000.0);
+        callRounds(10);
+        ReflectionTestUtils.setField(router, "preferredWeight", 3.0);
+        
+        ollamaFailing.set(true);
+        while (!"OPEN".equals(circuitState("ollama"))) {
+            router.call(new Prompt("hi"));
+        }
+        
+        // 冷却期为0，下一次选中ollama即为半开试探，试探成功后熔断关闭
+        ollamaFailing.set(false);
+        while (!"CLOSED".equals(circuitState("ollama"))) {
+            router.call(new Prompt("hi"));
+        }
+        
+        // 熔断前的失败仍在窗口中，恢复的提供商权重远低于首选提供商
+        assertThat(weight("ollama")).isLessThan(weight("openai") / 3);
+        
+        // 恢复后继续成功不会因为熔断前的旧失败立即再次熔断
+        ReflectionTestUtils.setField(router, "preferredWeight", 0.000_001);
+        callRounds(10);
+        assertThat(circuitState("ollama")).isEqualTo("CLOSED");
+    }
+    
+    @Test
+    void callerErrorsAreNotFailedOverOrCountedAgainstProvider() {
+        when(openAiClient.prompt(any(Prompt.class)).call().chatResponse())
+                .thenThrow(new NonTransientAiException("400 - context_length_exceeded"));
+        ReflectionTestUtils.setField(router, "preferredWeight", 1_000_000.0);
+        
+        for (int i = 0; i < 20; i++) {
+            assertThatThrownBy(() -> router.call(new Prompt("hi"))).isInstanceOf(NonTransientAiException.class);
+        }
+        
+        assertThat(circuitState("openai")).isEqualTo("CLOSED");
+        assertThat(provider("openai").get("errorRate")).isEqualTo(0.0);
+        assertThat(ollamaCalls.get()).isZero();
+    }
+    
+    @Test
+    void streamedCallsSendTheConfiguredModelUpstream() {
+        OpenAiApi api = mock(OpenAiApi.class);
+        when(api.chatCompletionStream(any(ChatCompletionRequest.class), any())).thenReturn(Flux.empty());
+        OpenAiChatModel model = OpenAiChatModel.builder()
+                .openAiApi(api)
+                .defaultOptions(OpenAiChatOptions.builder().model("gpt-configured").maxTokens(123).build())
+                .build();
+        AiModelRoutingProperties routing = new AiModelRoutingProperties();
+        AiModelRoutingProperties.FunctionRoute route = new AiModelRoutingProperties.FunctionRoute();
+        route.setProvider("openai");
+        route.setModel("gpt-routed");
+        routing.getFunctions().put("code-generation", route);
+        AiProviderRouter streaming = configure(new AiProviderRouter(ChatClient.builder(model).build(),
+                mock(ChatClient.class, RETURNS_DEEP_STUBS), model, "openai", routing, mock(AiMetrics.class)));
+        ReflectionTestUtils.setField(streaming, "preferredWeight", 1_000_000.0);
+        
+        streaming.stream(new Prompt("hi")).collectList().block();
+        try (AiCallContext ignored = AiCallContext.open("code-generation")) {
+            streaming.stream(new Prompt("hi")).collectList().block();
+        }
+        
+        ArgumentCaptor<ChatCompletionRequest> requests = ArgumentCaptor.forClass(ChatCompletionRequest.class);
+        verify(api, times(2)).chatCompletionStream(requests.capture(), any());
+        ChatCompletionRequest unrouted = requests.getAllValues().get(0);
+        assertThat(unrouted.model()).isEqualTo("gpt-configured");
+        assertThat(unrouted.maxTokens()).isEqualTo(123);
+        assertThat(unrouted.streamOptions()).isNotNull();
+        ChatCompletionRequest routed = requests.getAllValues().get(1);
+        assertThat(routed.model()).isEqualTo("gpt-routed");
+        assertThat(routed.maxTokens()).isEqualTo(123);
+        assertThat(routed.streamOptions()).isNotNull();
+    }
+    
+    private void callRounds(int rounds) {
+        for (int i = 0; i < rounds; i++) {
+            router.call(new Prompt("hi"));
+        }
+    }
+    
+    private double weight(String name) {
+        return (double) provider(name).get("weight");
+    }
+    
+    private String circuitState(String name) {
+        return (String) provider(name).get("circuitState");
+    }
+    
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> provider(String name) {
+        List<Map<String, Object>> providers = (List<Map<String, Object>>) router.getRoutingState().get("providers");
+        return providers.stream().filter(provider -> name.equals(provider.get("name"))).findFirst().orElseThrow();
+    }
+    
+    private static ChatResponse response() {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage("ok"))));
+    }
+}
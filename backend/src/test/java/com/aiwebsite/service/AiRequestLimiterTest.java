@@ -0,0 +1,124 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.exception.RateLimitExceededException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 限流器空闲清理：只清理没有进行中请求且令牌已回满的用户，清理与并发申请许可交错时不丢失计数
+ */
+class AiRequestLimiterTest {
+    
+    private static final long USER_ID = 1L;
+    private static final String FUNCTION = "chat";
+    
+    private AiRequestLimiter limiter;
+    
+    @BeforeEach
+    void setUp() {
+        AiFunctionConfigService configService = mock(AiFunctionConfigService.class);
+        when(configService.getFunctionConfig(FUNCTION))
+                .thenReturn(AiFunctionConfigService.AiFunctionConfig.builder().name(FUNCTION).points(100).build());
+        limiter = new AiRequestLimiter(configService);
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        ReflectionTestUtils.setField(limiter, "bucketCapacity", 200L);
+        ReflectionTestUtils.setField(limiter, "refillPerSecond", 0.001);
+        ReflectionTestUtils.setField(limiter, "userMaxConcurrent", 1);
+        ReflectionTestUtils.setField(limiter, "globalMaxConcurrent", 100);
+        ReflectionTestUtils.setField(limiter, "globalStripes", 4);
+        ReflectionTestUtils.setField(limiter, "functionCostBudget", 10_000);
+        // 任何状态都视为已空闲
+        ReflectionTestUtils.setField(limiter, "idleEvictMs", -1L);
+        limiter.init();
+    }
+    
+    @Test
+    void drainedBucketIsNotResetByEviction() {
+        limiter.acquire(USER_ID, FUNCTION).close();
+        limiter.acquire(USER_ID, FUNCTION).close();
+        
+        limiter.evictIdleUsers();
+        
+        assertThat(limiter.getStats()).containsEntry("trackedUsers", 1);
+        assertThatThrownBy(() -> limiter.acquire(USER_ID, FUNCTION))
+                .isInstanceOf(RateLimitExceededException.class)
+                .hasMessage("请求过于频繁，请稍后再试");
+    }
+    
+    @Test
+    void userWithARequestInFlightIsNotEvicted() {
+        limiter.acquireForBatch(USER_ID, FUNCTION);
+        
+        limiter.evictIdleUsers();
+        
+        assertThat(limiter.getStats()).containsEntry("trackedUsers", 1);
+        assertThatThrownBy(() -> limiter.acquireForBatch(USER_ID, FUNCTION))
+                .isInstanceOf(RateLimitExceededException.class)
+                .hasMessage("同时进行的AI请求过多，请等待当前请求完成");
+    }
+    
+    @Test
+    void idleUserWithAFullBucketIsEvicted() {
+        limiter.acquireForBatch(USER_ID, FUNCTION).close();
+        
+        limiter.evictIdleUsers();
+        
+        assertThat(limiter.getStats()).containsEntry("trackedUsers", 0);
+    }
+    
+    @Test
+    void concurrentEvictionNeverLetsAUserExceedTheConcurrencyLimit() throws Exception {
+        int threads = 4;
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxObserved = new AtomicInteger();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch done = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    for (int n = 0; n < 20_000; n++) {
+                        AiRequestLimiter.Permit permit;
+                        try {
+                            permit = limiter.acquireForBatch(USER_ID, FUNCTION);
+                        } catch (RateLimitExceededException e) {
+                            continue;
+                        }
+                        maxObserved.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                        inFlight.decrementAndGet();
+                        permit.close();
+                    }
+                } finally {
+                    done.countDown();
+                }
+            }));
+        }
+        Thread evictor = Thread.ofPlatform().start(() -> {
+            while (!stop.get()) {
+                limiter.evictIdleUsers();
+            }
+        });
+        
+        done.await();
+        stop.set(true);
+        evictor.join();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        
+        assertThat(maxObserved.get()).isEqualTo(1);
+        limiter.acquireForBatch(USER_ID, FUNCTION).close();
+    }
+}
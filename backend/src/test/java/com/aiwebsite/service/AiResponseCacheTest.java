@@ -0,0 +1,101 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.config.AiCacheProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 响应缓存堆外层：内容存放在预分配的分片中，条目移除后分片归还复用，直接内存不超过配置容量
+ */
+class AiResponseCacheTest {
+    
+    private static final int SLAB_BYTES = 1024;
+    private static final long OFF_HEAP_BYTES = 16 * SLAB_BYTES;
+    
+    private AiResponseCache cache;
+    
+    @BeforeEach
+    void setUp() {
+        AiCacheProperties properties = new AiCacheProperties();
+        properties.setEnabled(true);
+        properties.setOffHeapMaxBytes(OFF_HEAP_BYTES);
+        properties.setOffHeapSlabBytes(SLAB_BYTES);
+        properties.setOffHeapThresholdBytes(512);
+        cache = new AiResponseCache(properties);
+    }
+    
+    @Test
+    void largeResponsesRoundTripThroughSlabsAndAreFreedOnRemoval() {
+        String value = text('a', 2500);
+        
+        cache.put("k", value, 60);
+        
+        assertThat(cache.get("k")).contains(value);
+        assertThat(stats().get("offHeapEntries")).isEqualTo(1L);
+        assertThat(stats().get("offHeapFreeBytes")).isEqualTo(OFF_HEAP_BYTES - 3 * SLAB_BYTES);
+        
+        cache.clear();
+        
+        assertThat(cache.get("k")).isEmpty();
+        assertThat(stats().get("offHeapFreeBytes")).isEqualTo(OFF_HEAP_BYTES);
+    }
+    
+    @Test
+    void replacingAnEntryReturnsTheOldSlabs() {
+        cache.put("k", text('a', 3000), 60);
+        cache.put("k", text('b', 1500), 60);
+        
+        assertThat(cache.get("k")).contains(text('b', 1500));
+        assertThat(stats().get("offHeapFreeBytes")).isEqualTo(OFF_HEAP_BYTES - 2 * SLAB_BYTES);
+    }
+    
+    @Test
+    void fillingPastCapacityEvictsInsteadOfAllocatingMore() {
+        for (int i = 0; i < 100; i++) {
+            cache.put("k" + i, text((char) ('a' + i % 26), 2000), 60);
+        }
+        
+        assertThat(stats().get("offHeapCapacityBytes")).isEqualTo(OFF_HEAP_BYTES);
+        assertThat((Long) stats().get("offHeapBytes")).isLessThanOrEqualTo(OFF_HEAP_BYTES);
+        assertThat((Long) stats().get("offHeapFreeBytes")).isGreaterThanOrEqualTo(0L);
+        // 仍在缓存中的条目内容完整，没有被复用的分片覆盖
+        int present = 0;
+        for (int i = 0; i < 100; i++) {
+            Optional<String> value = cache.get("k" + i);
+            if (value.isPresent()) {
+                assertThat(value.get()).isEqualTo(text((char) ('a' + i % 26), 2000));
+                present++;
+            }
+        }
+        assertThat(present).isPositive();
+    }
+    
+    @Test
+    void responseLargerThanTheOffHeapTierIsNotCached() {
+        cache.put("huge", text('x', (int) OFF_HEAP_BYTES + 1), 60);
+        
+        assertThat(cache.get("huge")).isEmpty();
+        assertThat(stats().get("offHeapRejected")).isEqualTo(1L);
+        assertThat(stats().get("offHeapFreeBytes")).isEqualTo(OFF_HEAP_BYTES);
+    }
+    
+    @Test
+    void disabledCacheAllocatesNoDirectMemory() {
+        AiResponseCache disabled = new AiResponseCache(new AiCacheProperties());
+        
+        assertThat(disabled.getStats().get("offHeapCapacityBytes")).isEqualTo(0L);
+    }
+    
+    private Map<String, Object> stats() {
+        return cache.getStats();
+    }
+    
+    private String text(char c, int length) {
+        return String.valueOf(c).repeat(length);
+    }
+}
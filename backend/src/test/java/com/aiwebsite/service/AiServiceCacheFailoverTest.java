@@ -0,0 +1,96 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.entity.User;
+import com.aiwebsite.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import reactor.core.publisher.Flux;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 响应缓存只保存首选提供商生成的结果，故障转移到其他提供商的回答不会以首选提供商的键被缓存
+ */
+@SpringBootTest(properties = "ai.cache.enabled=true")
+@ActiveProfiles("test")
+class AiServiceCacheFailoverTest {
+    
+    @Autowired
+    private AiService aiService;
+    
+    @Autowired
+    private UserMapper userMapper;
+    
+    @MockitoBean
+    private AiProviderRouter providerRouter;
+    
+    private Long userId;
+    
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("cache-" + System.nanoTime());
+        user.setPassword("password");
+        user.setEmail(user.getUsername() + "@example.com");
+        user.setPoints(100_000);
+        userMapper.insert(user);
+        userId = user.getId();
+        when(providerRouter.getPreferredProvider(anyString())).thenReturn("openai");
+    }
+    
+    @Test
+    void answerFromThePreferredProviderIsCached() {
+        answerFrom("openai");
+        String input = "preferred-" + System.nanoTime();
+        
+        aiService.processAiFunction(userId, "chat", input);
+        aiService.processAiFunction(userId, "chat", input);
+        
+        verify(providerRouter, times(1)).call(any(Prompt.class));
+    }
+    
+    @Test
+    void failoverAnswerIsNotCached() {
+        answerFrom("ollama");
+        String input = "failover-" + System.nanoTime();
+        
+        aiService.processAiFunction(userId, "chat", input);
+        aiService.processAiFunction(userId, "chat", input);
+        
+        verify(providerRouter, times(2)).call(any(Prompt.class));
+    }
+    
+    @Test
+    void streamedFailoverAnswerIsNotCached() {
+        when(providerRouter.stream(any(Prompt.class))).thenAnswer(invocation -> Flux.deferContextual(view -> {
+            view.get(AiCallContext.class).setProvider("ollama");
+            return Flux.just("answer");
+        }));
+        String input = "stream-failover-" + System.nanoTime();
+        
+        assertThat(aiService.processAiFunctionStream(userId, "chat", input).collectList().block()).containsExactly("answer");
+        assertThat(aiService.processAiFunctionStream(userId, "chat", input).collectList().block()).containsExactly("answer");
+        
+        verify(providerRouter, times(2)).stream(any(Prompt.class));
+    }
+    
+    /**
+     * 模拟路由器由指定提供商完成调用，并把实际提供商回传给调用上下文
+     */
+    private void answerFrom(String provider) {
+        when(providerRouter.call(any(Prompt.class))).thenAnswer(invocation -> {
+            AiCallContext.current().setProvider(provider);
+            return "answer";
+        });
+    }
+}
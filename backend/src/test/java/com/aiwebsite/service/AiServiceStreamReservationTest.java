@@ -0,0 +1,87 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.entity.PointsReservation;
+import com.aiwebsite.entity.User;
+import com.aiwebsite.mapper.PointsReservationMapper;
+import com.aiwebsite.mapper.UserMapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import reactor.core.publisher.Flux;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * 流式与批量调用的积分预留在订阅时进行：返回的流未被订阅时不扣积分、不留下预留，订阅后照常结算
+ */
+@SpringBootTest(properties = "ai.limiter.enabled=false")
+@ActiveProfiles("test")
+class AiServiceStreamReservationTest {
+    
+    private static final int INITIAL_POINTS = 1000;
+    
+    @Autowired
+    private AiService aiService;
+    
+    @Autowired
+    private UserMapper userMapper;
+    
+    @Autowired
+    private PointsReservationMapper reservationMapper;
+    
+    @MockitoBean
+    private AiProviderRouter providerRouter;
+    
+    private Long userId;
+    
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("stream-" + System.nanoTime());
+        user.setPassword("password");
+        user.setEmail(user.getUsername() + "@example.com");
+        user.setPoints(INITIAL_POINTS);
+        userMapper.insert(user);
+        userId = user.getId();
+        when(providerRouter.getPreferredProvider(anyString())).thenReturn("openai");
+        when(providerRouter.call(any(Prompt.class))).thenReturn("answer");
+        when(providerRouter.stream(any(Prompt.class))).thenReturn(Flux.just("ans", "wer"));
+    }
+    
+    @Test
+    void unsubscribedStreamsReserveNothing() {
+        aiService.processAiFunctionStream(userId, "chat", "hello-" + System.nanoTime());
+        aiService.processBatch(userId, "chat", List.of("a-" + System.nanoTime(), "b-" + System.nanoTime()));
+        
+        assertThat(reservations()).isEmpty();
+        assertThat(userMapper.findPointsByUserId(userId)).contains(INITIAL_POINTS);
+    }
+    
+    @Test
+    void subscribedStreamReservesAndSettles() {
+        Flux<String> stream = aiService.processAiFunctionStream(userId, "chat", "hello-" + System.nanoTime());
+        assertThat(reservations()).isEmpty();
+        
+        assertThat(stream.collectList().block()).containsExactly("ans", "wer");
+        
+        assertThat(reservations()).singleElement()
+                .extracting(PointsReservation::getStatus)
+                .isEqualTo(PointsReservation.Status.CONFIRMED);
+        assertThat(userMapper.findPointsByUserId(userId).orElseThrow()).isLessThan(INITIAL_POINTS);
+    }
+    
+    private List<PointsReservation> reservations() {
+        return reservationMapper.selectList(new LambdaQueryWrapper<PointsReservation>()
+                .eq(PointsReservation::getUserId, userId));
+    }
+}
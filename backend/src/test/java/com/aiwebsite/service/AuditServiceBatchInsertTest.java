@@ -0,0 +1,104 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.entity.AiUsage;
+import com.aiwebsite.mapper.AiUsageMapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.BoundSql;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 审计记录批量写入：超过批量大小的记录按批合并为多行INSERT，关闭时写入剩余记录，不丢失任何一条
+ */
+@SpringBootTest(properties = {
+        "ai.audit.batch-size=50",
+        "ai.audit.flush-interval-ms=60000"
+})
+@ActiveProfiles("test")
+@DirtiesContext
+class AuditServiceBatchInsertTest {
+    
+    private static final int BATCH_SIZE = 50;
+    private static final int RECORDS = 130;
+    private static final int COLUMNS = 9;
+    private static final long USER_ID = 424242L;
+    
+    @Autowired
+    private AuditService auditService;
+    
+    @Autowired
+    private AiUsageMapper aiUsageMapper;
+    
+    @Autowired
+    private InsertRecorder insertRecorder;
+    
+    @Test
+    void recordsAreWrittenAsOneMultiRowInsertPerBatch() throws Exception {
+        for (int i = 0; i < RECORDS; i++) {
+            auditService.recordSuccess(USER_ID, "chat", "input-" + i, "output-" + i, 10, 5);
+        }
+        
+        // 刷新间隔足够长，只有攒满的两批会被写入
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (insertRecorder.rowsPerInsert().size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertThat(insertRecorder.rowsPerInsert()).containsExactly(BATCH_SIZE, BATCH_SIZE);
+        
+        // 关闭时写入不足一批的剩余记录
+        auditService.shutdown();
+        
+        assertThat(insertRecorder.rowsPerInsert()).containsExactly(BATCH_SIZE, BATCH_SIZE, RECORDS - 2 * BATCH_SIZE);
+        assertThat(aiUsageMapper.selectCount(new LambdaQueryWrapper<AiUsage>().eq(AiUsage::getUserId, USER_ID)))
+                .isEqualTo(RECORDS);
+    }
+    
+    @TestConfiguration
+    static class Config {
+        
+        @Bean
+        InsertRecorder insertRecorder() {
+            return new InsertRecorder();
+        }
+    }
+    
+    /**
+     * 记录每条写入ai_usage的INSERT语句包含的行数
+     */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+    static class InsertRecorder implements Interceptor {
+        
+        private final List<Integer> rowsPerInsert = new CopyOnWriteArrayList<>();
+        
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            BoundSql boundSql = ((StatementHandler) invocation.getTarget()).getBoundSql();
+            String sql = boundSql.getSql().replaceAll("\\s+", " ").trim().toLowerCase(Locale.ROOT);
+            if (sql.startsWith("insert into ai_usage ")) {
+                rowsPerInsert.add(boundSql.getParameterMappings().size() / COLUMNS);
+            }
+            return invocation.proceed();
+        }
+        
+        List<Integer> rowsPerInsert() {
+            return rowsPerInsert;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.entity.AiUsage;
+import com.aiwebsite.mapper.AiUsageMapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 审计服务关闭：不打断正在执行的写入，关闭期间仍在并发写入的记录不能丢失
+ */
+@SpringBootTest(properties = {
+        "ai.audit.batch-size=20",
+        "ai.audit.flush-interval-ms=50"
+})
+@ActiveProfiles("test")
+@DirtiesContext(classMode = DirtiesContext.ClassMode.AFTER_EACH_TEST_METHOD)
+class AuditServiceShutdownTest {
+    
+    private static final int THREADS = 8;
+    private static final int RECORDS_PER_THREAD = 300;
+    private static final long USER_ID = 515151L;
+    
+    @Autowired
+    private AuditService auditService;
+    
+    @Autowired
+    private AiUsageMapper aiUsageMapper;
+    
+    @Autowired
+    private SlowInsert slowInsert;
+    
+    @Test
+    void shutdownWaitsForTheInFlightBatchWithoutInterruptingIt() throws Exception {
+        slowInsert.enable();
+        for (int i = 0; i < 20; i++) {
+            auditService.recordSuccess(USER_ID, "chat", "input-" + i, "output-" + i, 10, 5);
+        }
+        assertThat(slowInsert.inFlight.await(10, TimeUnit.SECONDS)).isTrue();
+        
+        auditService.shutdown();
+        
+        assertThat(slowInsert.interrupted.get()).isFalse();
+        assertThat(aiUsageMapper.selectCount(new LambdaQueryWrapper<AiUsage>().eq(AiUsage::getUserId, USER_ID)))
+                .isEqualTo(20L);
+    }
+    
+    @Test
+    void recordsEnqueuedDuringShutdownAreAllWritten() throws Exception {
+        CountDownLatch started = new CountDownLatch(THREADS);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(executor.submit(() -> {
+                started.countDown();
+                for (int i = 0; i < RECORDS_PER_THREAD; i++) {
+                    auditService.recordSuccess(USER_ID, "chat", "input-" + i, "output-" + i, 10, 5);
+                }
+            }));
+        }
+        started.await();
+        Thread.sleep(20);
+        
+        auditService.shutdown();
+        
+        for (Future<?> future : futures) {
+            future.get(30, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        
+        assertThat(auditService.getPendingCount()).isZero();
+        assertThat(aiUsageMapper.selectCount(new LambdaQueryWrapper<AiUsage>().eq(AiUsage::getUserId, USER_ID)))
+                .isEqualTo((long) THREADS * RECORDS_PER_THREAD);
+    }
+    
+    @TestConfiguration
+    static class Config {
+        
+        @Bean
+        SlowInsert slowInsert() {
+            return new SlowInsert();
+        }
+    }
+    
+    /**
+     * 让写入线程的审计INSERT停留一段时间，并记录执行期间是否被中断
+     */
+    @Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+    static class SlowInsert implements Interceptor {
+        
+        private final CountDownLatch inFlight = new CountDownLatch(1);
+        private final AtomicBoolean interrupted = new AtomicBoolean();
+        private volatile boolean enabled;
+        
+        void enable() {
+            enabled = true;
+        }
+        
+        @Override
+        public Object intercept(Invocation invocation) throws Throwable {
+            String sql = ((StatementHandler) invocation.getTarget()).getBoundSql().getSql().trim().toLowerCase(Locale.ROOT);
+            if (enabled && sql.startsWith("insert into ai_usage ")
+                    && Thread.currentThread().getName().equals("ai-audit-writer")) {
+                inFlight.countDown();
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    interrupted.set(true);
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+            return invocation.proceed();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.exception.RateLimitExceededException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 会话摘要：后台摘要以会话所属用户的名义申请限流许可，被限流时不调用上游，保留原始轮次到下一轮
+ */
+class ConversationMemoryTest {
+    
+    private static final long USER_ID = 1L;
+    
+    private AiChatService aiChatService;
+    private AiRequestLimiter limiter;
+    private ConversationMemory memory;
+    
+    @BeforeEach
+    void setUp() {
+        aiChatService = mock(AiChatService.class);
+        limiter = mock(AiRequestLimiter.class);
+        // 近期窗口与摘要阈值都设为1个token，每轮对话都会触发摘要
+        memory = new ConversationMemory(aiChatService, limiter, mock(AiMetrics.class),
+                100, 60, 4000, 1, 1, 800, 40);
+        when(aiChatService.chatWithSystemPrompt(anyString(), anyString())).thenReturn("摘要");
+    }
+    
+    @Test
+    void summaryRunsUnderTheOwnersLimiterPermit() {
+        when(limiter.acquire(USER_ID, "chat")).thenReturn(AiRequestLimiter.Permit.NOOP);
+        String conversationId = memory.create(USER_ID);
+        
+        memory.recordTurn(USER_ID, conversationId, "你好，请介绍一下你自己", "我是AI助手，很高兴为你服务");
+        
+        verify(aiChatService, timeout(2000)).chatWithSystemPrompt(anyString(), anyString());
+        verify(limiter).acquire(USER_ID, "chat");
+    }
+    
+    @Test
+    void rateLimitedSummaryIsDeferredWithoutCallingUpstream() {
+        when(limiter.acquire(USER_ID, "chat")).thenThrow(new RateLimitExceededException("请求过于频繁，请稍后再试", 1));
+        String conversationId = memory.create(USER_ID);
+        
+        memory.recordTurn(USER_ID, conversationId, "你好，请介绍一下你自己", "我是AI助手，很高兴为你服务");
+        
+        verify(limiter, timeout(2000)).acquire(USER_ID, "chat");
+        verify(aiChatService, after(200).never()).chatWithSystemPrompt(anyString(), anyString());
+        assertThat(memory.getStats()).containsEntry("summarizationsDeferred", 1L)
+                .containsEntry("summarizations", 0L);
+        assertThat(memory.buildPrompt(USER_ID, conversationId, "继续").getInstructions())
+                .anySatisfy(message -> assertThat(message.getText()).isEqualTo("你好，请介绍一下你自己"));
+    }
+}
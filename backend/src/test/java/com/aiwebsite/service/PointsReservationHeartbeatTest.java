@@ -0,0 +1,123 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.entity.AiJob;
+import com.aiwebsite.entity.PointsReservation;
+import com.aiwebsite.entity.User;
+import com.aiwebsite.mapper.AiJobMapper;
+import com.aiwebsite.mapper.PointsReservationMapper;
+import com.aiwebsite.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDateTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 积分预留续期：执行时间超过有效期的同步调用与未结束的异步任务，其预留由心跳续期，不会被清理任务释放而变成免费调用
+ */
+@SpringBootTest(properties = {
+        "ai.reservation.ttl-seconds=1",
+        "ai.reservation.heartbeat-interval-ms=3600000",
+        "ai.reservation.sweep-interval-ms=3600000"
+})
+@ActiveProfiles("test")
+class PointsReservationHeartbeatTest {
+    
+    private static final int INITIAL_POINTS = 1000;
+    
+    @Autowired
+    private PointsService pointsService;
+    
+    @Autowired
+    private PointsReservationSweeper sweeper;
+    
+    @Autowired
+    private AiJobService aiJobService;
+    
+    @Autowired
+    private AiJobMapper jobMapper;
+    
+    @Autowired
+    private PointsReservationMapper reservationMapper;
+    
+    @Autowired
+    private UserMapper userMapper;
+    
+    private Long userId;
+    
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("reservation-" + System.nanoTime());
+        user.setPassword("password");
+        user.setEmail(user.getUsername() + "@example.com");
+        user.setPoints(INITIAL_POINTS);
+        userMapper.insert(user);
+        userId = user.getId();
+    }
+    
+    @Test
+    void activeReservationOutlivingItsTtlIsExtendedAndStillCharged() throws Exception {
+        PointsReservation reservation = pointsService.reservePoints(userId, 100, "长时间调用", "chat");
+        
+        Thread.sleep(2100);
+        pointsService.extendActiveReservations();
+        sweeper.releaseExpiredReservations();
+        
+        assertThat(reservationMapper.selectById(reservation.getId()).getStatus())
+                .isEqualTo(PointsReservation.Status.RESERVED);
+        assertThat(pointsService.confirmReservation(reservation)).isTrue();
+        assertThat(userMapper.findPointsByUserId(userId)).contains(INITIAL_POINTS - 100);
+    }
+    
+    @Test
+    void settledReservationIsNoLongerExtended() throws Exception {
+        PointsReservation reservation = pointsService.reservePoints(userId, 100, "已完成调用", "chat");
+        pointsService.confirmReservation(reservation);
+        PointsReservation abandoned = pointsService.reservePoints(userId, 50, "未被跟踪的预留", "chat", 1);
+        
+        Thread.sleep(2100);
+        pointsService.extendActiveReservations();
+        sweeper.releaseExpiredReservations();
+        
+        assertThat(reservationMapper.selectById(reservation.getId()).getStatus())
+                .isEqualTo(PointsReservation.Status.CONFIRMED);
+        assertThat(reservationMapper.selectById(abandoned.getId()).getStatus())
+                .isEqualTo(PointsReservation.Status.RELEASED);
+        assertThat(userMapper.findPointsByUserId(userId)).contains(INITIAL_POINTS - 100);
+    }
+    
+    @Test
+    void unfinishedJobReservationIsExtendedByTheJobHeartbeat() throws Exception {
+        PointsReservation running = pointsService.reservePoints(userId, 100, "执行中的任务", "movie-clip", 1);
+        PointsReservation finished = pointsService.reservePoints(userId, 50, "已结束的任务", "movie-clip", 1);
+        insertJob(running, AiJob.Status.RUNNING);
+        insertJob(finished, AiJob.Status.SUCCEEDED);
+        
+        Thread.sleep(2100);
+        aiJobService.heartbeat();
+        sweeper.releaseExpiredReservations();
+        
+        assertThat(reservationMapper.selectById(running.getId()).getStatus())
+                .isEqualTo(PointsReservation.Status.RESERVED);
+        assertThat(reservationMapper.selectById(finished.getId()).getStatus())
+                .isEqualTo(PointsReservation.Status.RELEASED);
+        assertThat(userMapper.findPointsByUserId(userId)).contains(INITIAL_POINTS - 100);
+    }
+    
+    private void insertJob(PointsReservation reservation, AiJob.Status status) {
+        AiJob job = new AiJob();
+        job.setUserId(userId);
+        job.setFunctionName(reservation.getFunctionName());
+        job.setInputData("{}");
+        job.setStatus(status);
+        job.setPoints(reservation.getAmount());
+        job.setReservationId(reservation.getId());
+        job.setHeartbeatAt(LocalDateTime.now());
+        jobMapper.insert(job);
+    }
+}
@@ -0,0 +1,97 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.entity.Transaction;
+import com.aiwebsite.entity.User;
+import com.aiwebsite.exception.InsufficientPointsException;
+import com.aiwebsite.mapper.TransactionMapper;
+import com.aiwebsite.mapper.UserMapper;
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 并发扣除积分：大量并行扣除同一用户时，余额、成功次数与积分流水必须一致，余额不能为负
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class PointsServiceConcurrencyTest {
+    
+    private static final int INITIAL_POINTS = 10_000;
+    private static final int DEDUCTIONS = 3_000;
+    private static final int POINTS_PER_DEDUCTION = 7;
+    private static final int THREADS = 32;
+    
+    @Autowired
+    private PointsService pointsService;
+    
+    @Autowired
+    private UserMapper userMapper;
+    
+    @Autowired
+    private TransactionMapper transactionMapper;
+    
+    @Test
+    void parallelDeductionsNeverLoseUpdatesOrOverdraw() throws Exception {
+        User user = new User();
+        user.setUsername("concurrent");
+        user.setPassword("password");
+        user.setEmail("concurrent@example.com");
+        user.setPoints(INITIAL_POINTS);
+        userMapper.insert(user);
+        Long userId = user.getId();
+        
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger insufficient = new AtomicInteger();
+        AtomicInteger minReturnedBalance = new AtomicInteger(Integer.MAX_VALUE);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        List<Future<?>> futures = new ArrayList<>(DEDUCTIONS);
+        try {
+            for (int i = 0; i < DEDUCTIONS; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        int balance = pointsService.deductPoints(userId, POINTS_PER_DEDUCTION, "并发测试", "chat");
+                        succeeded.incrementAndGet();
+                        minReturnedBalance.accumulateAndGet(balance, Math::min);
+                    } catch (InsufficientPointsException e) {
+                        insufficient.incrementAndGet();
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        int finalBalance = userMapper.findPointsByUserId(userId).orElseThrow();
+        long ledgerRows = transactionMapper.selectCount(new LambdaQueryWrapper<Transaction>()
+                .eq(Transaction::getUserId, userId)
+                .eq(Transaction::getType, Transaction.TransactionType.CONSUME));
+        
+        assertThat(succeeded.get() + insufficient.get()).isEqualTo(DEDUCTIONS);
+        // 积分足够扣除的次数全部成功，其余因余额不足失败
+        assertThat(succeeded.get()).isEqualTo(INITIAL_POINTS / POINTS_PER_DEDUCTION);
+        assertThat(finalBalance).isEqualTo(INITIAL_POINTS - succeeded.get() * POINTS_PER_DEDUCTION);
+        assertThat(finalBalance).isGreaterThanOrEqualTo(0);
+        assertThat(minReturnedBalance.get()).isGreaterThanOrEqualTo(0);
+        assertThat(ledgerRows).isEqualTo(succeeded.get());
+    }
+}
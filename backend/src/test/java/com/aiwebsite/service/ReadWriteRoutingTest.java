@@ -0,0 +1,116 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.entity.User;
+import com.aiwebsite.mapper.UserMapper;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.sql.Connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 读写分离路由：主库与副本是两个内容不同的H2库，
+ * 只读事务读副本，写入落主库，扣除积分后的写后读窗口内余额读主库
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.replica.url=jdbc:h2:mem:replica-${random.uuid};MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.replica.username=sa",
+        "spring.datasource.replica.password=",
+        "spring.datasource.replica.driver-class-name=org.h2.Driver",
+        "spring.datasource.replica.read-your-writes-ms=500"
+})
+@ActiveProfiles("test")
+class ReadWriteRoutingTest {
+    
+    private static final int PRIMARY_POINTS = 1000;
+    private static final int REPLICA_POINTS = 500;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private UserMapper userMapper;
+    
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private HikariDataSource primaryDataSource;
+    
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private HikariDataSource replicaDataSource;
+    
+    private JdbcTemplate primary;
+    private JdbcTemplate replica;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        primary = new JdbcTemplate(primaryDataSource);
+        replica = new JdbcTemplate(replicaDataSource);
+        try (Connection connection = replicaDataSource.getConnection()) {
+            ScriptUtils.executeSqlScript(connection, new ClassPathResource("db/schema-h2.sql"));
+        }
+    }
+    
+    @Test
+    void readOnlyQueriesHitTheReplica() {
+        Long userId = insertOnBoth("reader");
+        
+        assertThat(userService.findById(userId)).get()
+                .extracting(User::getFullName).isEqualTo("replica");
+        assertThat(userService.getPoints(userId)).isEqualTo(REPLICA_POINTS);
+    }
+    
+    @Test
+    void writesGoToThePrimary() {
+        Long userId = insertOnBoth("writer");
+        
+        assertThat(userService.tryDeductPoints(userId, 100)).isTrue();
+        
+        assertThat(pointsOn(primary, userId)).isEqualTo(PRIMARY_POINTS - 100);
+        assertThat(pointsOn(replica, userId)).isEqualTo(REPLICA_POINTS);
+    }
+    
+    @Test
+    void balanceIsReadFromThePrimaryWithinTheReadYourWritesWindow() throws Exception {
+        Long userId = insertOnBoth("deducted");
+        Long untouchedId = insertOnBoth("untouched");
+        
+        userService.tryDeductPoints(userId, 100);
+        
+        assertThat(userService.getPoints(userId)).isEqualTo(PRIMARY_POINTS - 100);
+        assertThat(userService.getPoints(untouchedId)).isEqualTo(REPLICA_POINTS);
+        
+        // 窗口过后重新读副本
+        Thread.sleep(800);
+        assertThat(userService.getPoints(userId)).isEqualTo(REPLICA_POINTS);
+    }
+    
+    /**
+     * 在主库与副本写入同一ID、不同内容的用户
+     */
+    private Long insertOnBoth(String username) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        user.setEmail(username + "@example.com");
+        user.setFullName("primary");
+        user.setPoints(PRIMARY_POINTS);
+        userMapper.insert(user);
+        replica.update("INSERT INTO users (id, username, password, email, full_name, points) VALUES (?, ?, ?, ?, ?, ?)",
+                user.getId(), username, "password", username + "@example.com", "replica", REPLICA_POINTS);
+        return user.getId();
+    }
+    
+    private Integer pointsOn(JdbcTemplate jdbcTemplate, Long userId) {
+        return jdbcTemplate.queryForObject("SELECT points FROM users WHERE id = ?", Integer.class, userId);
+    }
+}
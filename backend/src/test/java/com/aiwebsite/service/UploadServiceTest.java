@@ -0,0 +1,114 @@
+package com.aiwebsite.service;
+
+import com.aiwebsite.dto.UploadStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 分块上传：分块校验通过后才写入目标文件，错误或不完整的重传不会破坏已校验的内容
+ */
+class UploadServiceTest {
+    
+    private static final long USER_ID = 1L;
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    
+    @TempDir
+    private Path dir;
+    
+    private UploadService uploadService;
+    
+    @BeforeEach
+    void setUp() throws Exception {
+        uploadService = new UploadService();
+        ReflectionTestUtils.setField(uploadService, "uploadDir", dir.toString());
+        ReflectionTestUtils.setField(uploadService, "defaultChunkSize", (long) CHUNK_SIZE);
+        ReflectionTestUtils.setField(uploadService, "maxChunkSize", (long) CHUNK_SIZE);
+        ReflectionTestUtils.setField(uploadService, "maxFileSize", 1L << 30);
+        ReflectionTestUtils.setField(uploadService, "ttlHours", 24L);
+        uploadService.init();
+    }
+    
+    @Test
+    void chunksAreWrittenAtTheirOffsets() throws Exception {
+        byte[] first = filled('a', CHUNK_SIZE);
+        byte[] second = filled('b', 100);
+        String uploadId = uploadService.create(USER_ID, "video.mp4", CHUNK_SIZE + 100L, null).getUploadId();
+        
+        uploadService.writeChunk(USER_ID, uploadId, 1, sha256(second), new ByteArrayInputStream(second));
+        UploadStatus status = uploadService.writeChunk(USER_ID, uploadId, 0, sha256(first), new ByteArrayInputStream(first));
+        
+        assertThat(status.isComplete()).isTrue();
+        byte[] data = Files.readAllBytes(uploadService.getCompletedFile(USER_ID, uploadId));
+        assertThat(Arrays.copyOfRange(data, 0, CHUNK_SIZE)).isEqualTo(first);
+        assertThat(Arrays.copyOfRange(data, CHUNK_SIZE, CHUNK_SIZE + 100)).isEqualTo(second);
+    }
+    
+    @Test
+    void corruptResendOfAReceivedChunkKeepsTheVerifiedBytes() throws Exception {
+        byte[] chunk = filled('a', 100);
+        String uploadId = uploadService.create(USER_ID, "video.mp4", 100L, null).getUploadId();
+        uploadService.writeChunk(USER_ID, uploadId, 0, sha256(chunk), new ByteArrayInputStream(chunk));
+        
+        byte[] corrupt = filled('x', 100);
+        // 校验值与请求体不符
+        assertThatThrownBy(() -> uploadService.writeChunk(USER_ID, uploadId, 0, sha256(filled('y', 100)),
+                new ByteArrayInputStream(corrupt)))
+                .isInstanceOf(IllegalArgumentException.class);
+        // 请求体不完整
+        assertThatThrownBy(() -> uploadService.writeChunk(USER_ID, uploadId, 0, sha256(corrupt),
+                new ByteArrayInputStream(Arrays.copyOf(corrupt, 50))))
+                .isInstanceOf(IllegalArgumentException.class);
+        
+        assertThat(uploadService.getStatus(USER_ID, uploadId).isComplete()).isTrue();
+        assertThat(Files.readAllBytes(uploadService.getCompletedFile(USER_ID, uploadId))).isEqualTo(chunk);
+    }
+    
+    @Test
+    void resendWithTheSameChecksumIsNotRewritten() throws Exception {
+        byte[] chunk = filled('a', 100);
+        String uploadId = uploadService.create(USER_ID, "video.mp4", 100L, null).getUploadId();
+        uploadService.writeChunk(USER_ID, uploadId, 0, sha256(chunk), new ByteArrayInputStream(chunk));
+        
+        UploadStatus status = uploadService.writeChunk(USER_ID, uploadId, 0, sha256(chunk),
+                new ByteArrayInputStream(filled('x', 100)));
+        
+        assertThat(status.isComplete()).isTrue();
+        assertThat(Files.readAllBytes(uploadService.getCompletedFile(USER_ID, uploadId))).isEqualTo(chunk);
+    }
+    
+    @Test
+    void verifiedResendReplacesTheChunk() throws Exception {
+        byte[] chunk = filled('a', 100);
+        byte[] replacement = filled('b', 100);
+        String uploadId = uploadService.create(USER_ID, "video.mp4", 100L, null).getUploadId();
+        uploadService.writeChunk(USER_ID, uploadId, 0, sha256(chunk), new ByteArrayInputStream(chunk));
+        
+        UploadStatus status = uploadService.writeChunk(USER_ID, uploadId, 0, sha256(replacement),
+                new ByteArrayInputStream(replacement));
+        
+        assertThat(status.isComplete()).isTrue();
+        assertThat(Files.readAllBytes(uploadService.getCompletedFile(USER_ID, uploadId))).isEqualTo(replacement);
+    }
+    
+    private byte[] filled(char c, int length) {
+        byte[] bytes = new byte[length];
+        Arrays.fill(bytes, (byte) c);
+        return bytes;
+    }
+    
+    private String sha256(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+    }
+}
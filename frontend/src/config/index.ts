@@ -37,7 +37,7 @@ interface AppConfig {
   };
   points: {
     lowBalanceThreshold: number;
-    refreshInterval: number;
+    reconnectMaxDelay: number;
   };
 }
 
@@ -75,7 +75,7 @@ export const config: AppConfig = {
   },
   points: {
     lowBalanceThreshold: 50,
-    refreshInterval: 30000, // 30秒
+    reconnectMaxDelay: 30000, // 积分推送断线重连的最长间隔，30秒
   },
 };
 
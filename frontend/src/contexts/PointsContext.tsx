@@ -1,5 +1,6 @@
 import React, { createContext, useContext, useState, useEffect, ReactNode } from 'react';
 import { userAPI } from '../services/api';
+import { config } from '../config';
 import { message } from 'antd';
 
 interface PointsContextType {
@@ -44,18 +45,34 @@ export const PointsProvider: React.FC<PointsProviderProps> = ({ children }) => {
     setPoints(prev => Math.max(0, prev - amount));
   };
 
-  // 组件挂载时获取积分
+  // 订阅服务端推送的积分余额，连接结束或出错后自动重连，不再定时轮询
   useEffect(() => {
-    refreshPoints();
-  }, []);
+    const controller = new AbortController();
+    let retryDelay = 1000;
 
-  // 每30秒自动刷新一次积分（可选）
-  useEffect(() => {
-    const interval = setInterval(() => {
-      refreshPoints();
-    }, 30000); // 30秒
+    const subscribe = async () => {
+      while (!controller.signal.aborted) {
+        try {
+          await userAPI.subscribePoints((newPoints) => {
+            setPoints(newPoints);
+            setLoading(false);
+            retryDelay = 1000;
+          }, controller.signal);
+        } catch (error: any) {
+          if (controller.signal.aborted || error?.status === 401) {
+            return;
+          }
+          console.error('积分推送连接失败:', error);
+          // 推送不可用时先拉取一次，再按指数退避重连
+          await refreshPoints();
+          await new Promise(resolve => setTimeout(resolve, retryDelay));
+          retryDelay = Math.min(retryDelay * 2, config.points.reconnectMaxDelay);
+        }
+      }
+    };
 
-    return () => clearInterval(interval);
+    subscribe();
+    return () => controller.abort();
   }, []);
 
   const value: PointsContextType = {
@@ -12,6 +12,8 @@ const Chat: React.FC = () => {
   const [input, setInput] = useState('');
   const [loading, setLoading] = useState(false);
   const messagesEndRef = useRef<HTMLDivElement>(null);
+  // 服务端会话ID，首条消息时创建，离开页面时结束
+  const conversationIdRef = useRef<string | null>(null);
 
   const scrollToBottom = () => {
     messagesEndRef.current?.scrollIntoView({ behavior: 'smooth' });
@@ -21,6 +23,23 @@ const Chat: React.FC = () => {
     scrollToBottom();
   }, [messages]);
 
+  useEffect(() => {
+    return () => {
+      if (conversationIdRef.current) {
+        aiAPI.deleteConversation(conversationIdRef.current).catch(() => undefined);
+      }
+    };
+  }, []);
+
+  const ensureConversation = async (): Promise<string> => {
+    if (conversationIdRef.current) {
+      return conversationIdRef.current;
+    }
+    const response = await aiAPI.createConversation();
+    conversationIdRef.current = response.data.conversationId;
+    return response.data.conversationId;
+  };
+
   const handleSend = async () => {
     if (!input.trim()) return;
 
@@ -36,7 +55,8 @@ const Chat: React.FC = () => {
     setLoading(true);
 
     try {
-      const response = await aiAPI.processFunction('chat', input);
+      const conversationId = await ensureConversation();
+      const response = await aiAPI.sendConversationMessage(conversationId, userMessage.content);
       
       if (response.success) {
         const aiMessage: ChatMessage = {
@@ -48,6 +68,8 @@ const Chat: React.FC = () => {
         setMessages(prev => [...prev, aiMessage]);
       }
     } catch (error: any) {
+      // 会话可能已过期，下一条消息重新创建
+      conversationIdRef.current = null;
       message.error(error.response?.data?.error || '发送失败，请重试');
     } finally {
       setLoading(false);
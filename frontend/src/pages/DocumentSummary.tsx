@@ -20,14 +20,18 @@ const DocumentSummary: React.FC = () => {
 
     setLoading(true);
     try {
-      const response = await aiAPI.processFunction('document-summary', input);
-      
-      if (response.success) {
-        setOutput(response.data);
-        message.success('文档总结完成！');
+      // 长文档分段总结耗时较长，以异步任务执行，提交后轮询结果
+      const response = await aiAPI.submitJob('document-summary', { input });
+      if (!response.success) {
+        message.error(response.error || '提交失败');
+        return;
       }
+
+      const summary = await aiAPI.waitForJob(response.data.id);
+      setOutput(summary);
+      message.success('文档总结完成！');
     } catch (error: any) {
-      message.error(error.response?.data?.error || '总结失败，请重试');
+      message.error(error.response?.data?.error || error.message || '总结失败，请重试');
     } finally {
       setLoading(false);
     }
@@ -23,7 +23,7 @@ import {
   DownloadOutlined,
   InfoCircleOutlined
 } from '@ant-design/icons';
-import { aiAPI } from '../services/api';
+import { aiAPI, uploadAPI } from '../services/api';
 
 const { Title, Text, Paragraph } = Typography;
 const { TextArea } = Input;
@@ -43,6 +43,8 @@ const MovieClip: React.FC = () => {
   const [loading, setLoading] = useState(false);
   const [result, setResult] = useState<string>('');
   const [uploadedFile, setUploadedFile] = useState<any>(null);
+  const [uploadProgress, setUploadProgress] = useState<number | null>(null);
+  const [jobProgress, setJobProgress] = useState(0);
 
   const handleSubmit = async (values: MovieClipForm) => {
     if (!uploadedFile) {
@@ -52,25 +54,29 @@ const MovieClip: React.FC = () => {
 
     setLoading(true);
     try {
-      const formData = new FormData();
-      formData.append('videoFile', uploadedFile);
-      formData.append('description', values.description);
-      formData.append('clipType', values.clipType);
-      formData.append('duration', values.duration.toString());
-      formData.append('style', values.style);
-      formData.append('targetLength', values.targetLength.toString());
+      // 视频分块上传，中断后再次提交会从未完成的分块继续
+      const uploadId = await uploadAPI.uploadFile(uploadedFile, setUploadProgress);
 
-      const response = await aiAPI.movieClip(formData);
-      
-      if (response.success) {
-        setResult(response.data);
-        message.success('电影快剪处理成功！');
-      } else {
-        message.error(response.message || '处理失败');
+      // 剪辑以异步任务执行，提交后轮询进度，页面请求不会因处理时间过长而超时
+      setJobProgress(0);
+      const response = await aiAPI.submitJob('movie-clip', {
+        uploadId,
+        description: values.description,
+        clipType: values.clipType,
+        style: values.style,
+        targetLength: values.targetLength,
+      });
+      if (!response.success) {
+        message.error(response.error || '提交失败');
+        return;
       }
+
+      const clipPlan = await aiAPI.waitForJob(response.data.id, setJobProgress);
+      setResult(clipPlan);
+      message.success('电影快剪处理成功！');
     } catch (error: any) {
       console.error('电影快剪处理失败:', error);
-      message.error(error.response?.data?.message || '处理失败，请稍后重试');
+      message.error(error.response?.data?.message || error.message || '处理失败，请稍后重试');
     } finally {
       setLoading(false);
     }
@@ -93,9 +99,9 @@ const MovieClip: React.FC = () => {
         message.error('只能上传视频文件！');
         return false;
       }
-      const isLt100M = file.size / 1024 / 1024 < 100;
-      if (!isLt100M) {
-        message.error('视频文件大小不能超过100MB！');
+      const isLt10G = file.size / 1024 / 1024 / 1024 < 10;
+      if (!isLt10G) {
+        message.error('视频文件大小不能超过10GB！');
         return false;
       }
       return false; // 阻止自动上传
@@ -140,8 +146,9 @@ const MovieClip: React.FC = () => {
                   </Button>
                 </Upload>
                 <Text type="secondary" className="text-sm">
-                  支持格式：MP4, AVI, MOV, MKV，最大100MB
+                  支持格式：MP4, AVI, MOV, MKV，最大10GB，支持断点续传
                 </Text>
+                {uploadProgress !== null && <Progress percent={uploadProgress} size="small" />}
               </Form.Item>
 
               <Form.Item
@@ -224,7 +231,7 @@ const MovieClip: React.FC = () => {
           <Card className="glass" title="处理结果">
             {loading && (
               <div className="text-center py-8">
-                <Progress type="circle" percent={75} />
+                <Progress type="circle" percent={jobProgress} />
                 <Text className="block mt-4">AI正在分析视频内容...</Text>
                 <Text type="secondary" className="text-sm">
                   这可能需要几分钟时间，请耐心等待
@@ -151,6 +151,73 @@ export class ApiManager {
     });
   }
 
+  /**
+   * 以原始字节PUT上传二进制数据（分块上传）
+   */
+  async putBinary<T>(url: string, data: Blob, headers: Record<string, string> = {}): Promise<AxiosResponse<T>> {
+    return this.instance.put(url, data, {
+      headers: {
+        'Content-Type': 'application/octet-stream',
+        ...headers,
+      },
+    });
+  }
+
+  /**
+   * 订阅服务端事件流（SSE）
+   * EventSource无法携带Authorization头，这里用fetch读取并按SSE格式解析，忽略注释行（心跳）。
+   * 服务端正常结束连接时resolve，请求失败时reject，状态码附在错误的status属性上
+   */
+  async subscribeEvents(
+    url: string,
+    onEvent: (event: string, data: string) => void,
+    signal?: AbortSignal
+  ): Promise<void> {
+    const token = this.getAuthToken();
+    const response = await fetch(`${this.config.baseURL}${url}`, {
+      headers: {
+        Accept: 'text/event-stream',
+        ...(token ? { Authorization: `Bearer ${token}` } : {}),
+      },
+      signal,
+    });
+    if (!response.ok || !response.body) {
+      if (response.status === 401) {
+        this.handleAuthError();
+      }
+      throw Object.assign(new Error(`事件流连接失败: ${response.status}`), { status: response.status });
+    }
+
+    const reader = response.body.getReader();
+    const decoder = new TextDecoder();
+    let buffer = '';
+    let event = 'message';
+    let data: string[] = [];
+    for (;;) {
+      const { done, value } = await reader.read();
+      if (done) {
+        return;
+      }
+      buffer += decoder.decode(value, { stream: true });
+      const lines = buffer.split(/\r?\n/);
+      buffer = lines.pop() || '';
+      for (const line of lines) {
+        if (line === '') {
+          // 空行结束一个事件
+          if (data.length > 0) {
+            onEvent(event, data.join('\n'));
+          }
+          event = 'message';
+          data = [];
+        } else if (line.indexOf('event:') === 0) {
+          event = line.substring(6).trim();
+        } else if (line.indexOf('data:') === 0) {
+          data.push(line.substring(5).replace(/^ /, ''));
+        }
+      }
+    }
+  }
+
   /**
    * 批量请求
    */
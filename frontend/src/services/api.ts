@@ -1,4 +1,4 @@
-import { ApiResponse } from '../types';
+import { ApiResponse, AiBatchItemResult, AiJob, AiUsageHistoryItem, CursorPage, Transaction, UploadStatus } from '../types';
 import { apiManager } from './ApiManager';
 import { handleError } from '../utils/ErrorHandler';
 
@@ -21,6 +21,17 @@ class BaseApiService {
     }
   }
 
+  /**
+   * 拼接游标分页查询参数，游标为空时从第一页开始
+   */
+  protected pageQuery(cursor?: string | null, size?: number): string {
+    const params = new URLSearchParams();
+    if (cursor) params.set('cursor', cursor);
+    if (size) params.set('size', String(size));
+    const query = params.toString();
+    return query ? `?${query}` : '';
+  }
+
   protected async upload<T>(url: string, formData: FormData): Promise<ApiResponse<T>> {
     try {
       const response = await apiManager.upload<ApiResponse<T>>(url, formData);
@@ -69,6 +80,17 @@ class UserService extends BaseApiService {
   async getPoints(): Promise<ApiResponse<number>> {
     return this.request('get', '/user/points');
   }
+
+  /**
+   * 订阅积分余额推送，连接后先收到当前余额，之后每次变化收到新余额；服务端定期结束连接，调用方需重新订阅
+   */
+  async subscribePoints(onPoints: (points: number) => void, signal?: AbortSignal): Promise<void> {
+    return apiManager.subscribeEvents('/user/points/events', (event, data) => {
+      if (event === 'balance') {
+        onPoints(Number(data));
+      }
+    }, signal);
+  }
 }
 
 /**
@@ -87,6 +109,28 @@ class AiService extends BaseApiService {
     return this.request('post', `/ai/${functionName}`, { input });
   }
 
+  /**
+   * 批量处理，全部完成后按输入顺序返回各项结果，单项失败不影响其他项
+   */
+  async processBatch(functionName: string, inputs: string[]): Promise<ApiResponse<AiBatchItemResult[]>> {
+    return this.request('post', `/ai/${functionName}/batch`, { inputs });
+  }
+
+  /**
+   * 聊天会话：服务端保留上下文并按token预算组装提示，会话闲置过期后需重新创建
+   */
+  async createConversation(): Promise<ApiResponse<{ conversationId: string }>> {
+    return this.request('post', '/ai/chat/conversations');
+  }
+
+  async sendConversationMessage(conversationId: string, message: string): Promise<ApiResponse<string>> {
+    return this.request('post', `/ai/chat/conversations/${conversationId}/messages`, { message });
+  }
+
+  async deleteConversation(conversationId: string): Promise<ApiResponse<void>> {
+    return this.request('delete', `/ai/chat/conversations/${conversationId}`);
+  }
+
   // 兼容旧接口的方法
   async chat(message: string): Promise<ApiResponse<string>> {
     return this.request('post', '/ai/chat', { message });
@@ -100,12 +144,59 @@ class AiService extends BaseApiService {
     return this.request('post', '/ai/text-generation', { prompt });
   }
 
-  async summarizeDocument(document: string): Promise<ApiResponse<string>> {
+  // 文档总结与电影快剪以异步任务执行，返回任务，结果通过waitForJob获取
+  async summarizeDocument(document: string): Promise<ApiResponse<AiJob>> {
     return this.request('post', '/ai/document-summary', { document });
   }
 
-  async movieClip(formData: FormData): Promise<ApiResponse<string>> {
-    return this.upload('/ai/movie-clip', formData);
+  async movieClip(params: {
+    uploadId: string;
+    description: string;
+    clipType: string;
+    style: string;
+    targetLength: number;
+  }): Promise<ApiResponse<AiJob>> {
+    return this.request('post', '/ai/movie-clip', params);
+  }
+
+  /**
+   * 提交异步任务，立即返回任务ID，电影快剪的参数与movieClip相同，其余功能使用input
+   */
+  async submitJob(functionName: string, params: Record<string, any>): Promise<ApiResponse<AiJob>> {
+    return this.request('post', `/ai/jobs/${functionName}`, params);
+  }
+
+  async getJob(jobId: number): Promise<ApiResponse<AiJob>> {
+    return this.request('get', `/ai/jobs/${jobId}`);
+  }
+
+  /**
+   * 轮询任务直到结束，成功时返回结果，失败时抛出任务的错误信息
+   */
+  async waitForJob(jobId: number, onProgress?: (percent: number) => void, intervalMs = 2000): Promise<string> {
+    for (;;) {
+      const response = await this.getJob(jobId);
+      if (!response.success) {
+        throw new Error(response.error || '查询任务失败');
+      }
+      const job = response.data;
+      onProgress?.(job.progress);
+      if (job.status === 'SUCCEEDED') {
+        return job.outputData || '';
+      }
+      if (job.status === 'FAILED') {
+        throw new Error(job.errorMessage || '任务处理失败');
+      }
+      await new Promise(resolve => setTimeout(resolve, intervalMs));
+    }
+  }
+
+  async getUsageHistory(cursor?: string | null, size?: number): Promise<ApiResponse<CursorPage<AiUsageHistoryItem>>> {
+    return this.request('get', `/ai/usage/history${this.pageQuery(cursor, size)}`);
+  }
+
+  async getUsageStatistics(): Promise<ApiResponse<Record<string, any>[]>> {
+    return this.request('get', '/ai/usage/statistics');
   }
 
   // AI提供商管理
@@ -126,8 +217,12 @@ class PointsService extends BaseApiService {
     return this.request('get', `/points/balance/${userId}`);
   }
 
-  async getTransactionHistory(userId: number): Promise<ApiResponse<any[]>> {
-    return this.request('get', `/points/transactions/${userId}`);
+  async getTransactionHistory(
+    userId: number,
+    cursor?: string | null,
+    size?: number
+  ): Promise<ApiResponse<CursorPage<Transaction>>> {
+    return this.request('get', `/points/transactions/${userId}${this.pageQuery(cursor, size)}`);
   }
 
   async recharge(amount: number, paymentMethod: string): Promise<ApiResponse<any>> {
@@ -135,11 +230,89 @@ class PointsService extends BaseApiService {
   }
 }
 
+/**
+ * 分块断点续传服务
+ * 每个分块附带SHA-256校验值，中断后根据服务端返回的缺失分块续传
+ */
+class UploadService extends BaseApiService {
+  async createUpload(fileName: string, totalSize: number): Promise<ApiResponse<UploadStatus>> {
+    return this.request('post', '/uploads', { fileName, totalSize });
+  }
+
+  async getUploadStatus(uploadId: string): Promise<ApiResponse<UploadStatus>> {
+    return this.request('get', `/uploads/${uploadId}`);
+  }
+
+  async abortUpload(uploadId: string): Promise<ApiResponse<string>> {
+    return this.request('delete', `/uploads/${uploadId}`);
+  }
+
+  async uploadChunk(uploadId: string, index: number, chunk: Blob): Promise<ApiResponse<UploadStatus>> {
+    try {
+      const digest = await crypto.subtle.digest('SHA-256', await chunk.arrayBuffer());
+      const checksum = Array.from(new Uint8Array(digest))
+        .map(b => b.toString(16).padStart(2, '0'))
+        .join('');
+      const response = await apiManager.putBinary<ApiResponse<UploadStatus>>(
+        `/uploads/${uploadId}/chunks/${index}`,
+        chunk,
+        { 'X-Chunk-Checksum': checksum }
+      );
+      return response.data;
+    } catch (error) {
+      throw handleError(error);
+    }
+  }
+
+  /**
+   * 上传整个文件，同一文件再次上传时从未完成的分块继续，返回uploadId
+   */
+  async uploadFile(file: File, onProgress?: (percent: number) => void): Promise<string> {
+    const resumeKey = `upload:${file.name}:${file.size}:${file.lastModified}`;
+    let status: UploadStatus | null = null;
+
+    const savedId = localStorage.getItem(resumeKey);
+    if (savedId) {
+      try {
+        const response = await this.getUploadStatus(savedId);
+        status = response.success ? response.data : null;
+      } catch {
+        status = null;
+      }
+    }
+    if (!status) {
+      const response = await this.createUpload(file.name, file.size);
+      if (!response.success) {
+        throw new Error(response.error || '创建上传失败');
+      }
+      status = response.data;
+      localStorage.setItem(resumeKey, status.uploadId);
+    }
+
+    const { uploadId, chunkSize, totalChunks } = status;
+    let received = status.receivedChunks;
+    onProgress?.(Math.round((received / totalChunks) * 100));
+    for (const index of status.missingChunks) {
+      const chunk = file.slice(index * chunkSize, Math.min(file.size, (index + 1) * chunkSize));
+      const response = await this.uploadChunk(uploadId, index, chunk);
+      if (!response.success) {
+        throw new Error(response.error || `分块${index}上传失败`);
+      }
+      received = response.data.receivedChunks;
+      onProgress?.(Math.round((received / totalChunks) * 100));
+    }
+
+    localStorage.removeItem(resumeKey);
+    return uploadId;
+  }
+}
+
 // 创建服务实例
 export const authAPI = new AuthService();
 export const userAPI = new UserService();
 export const aiAPI = new AiService();
 export const pointsAPI = new PointsService();
+export const uploadAPI = new UploadService();
 
 // 向后兼容的默认导出
 export default apiManager; 
\ No newline at end of file
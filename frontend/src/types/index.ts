@@ -69,4 +69,54 @@ export interface AiUsage {
   status: 'SUCCESS' | 'FAILED' | 'PROCESSING';
   errorMessage?: string;
   createdAt: string;
-} 
\ No newline at end of file
+} 
+
+export interface AiUsageHistoryItem {
+  id: number;
+  functionName: string;
+  pointsConsumed: number;
+  executionTimeMs: number;
+  status: 'SUCCESS' | 'FAILED' | 'PROCESSING';
+  createdAt: string;
+}
+
+export interface CursorPage<T> {
+  items: T[];
+  nextCursor: string | null;
+  hasMore: boolean;
+}
+
+export interface UploadStatus {
+  uploadId: string;
+  fileName: string;
+  totalSize: number;
+  chunkSize: number;
+  totalChunks: number;
+  receivedChunks: number;
+  missingChunks: number[];
+  complete: boolean;
+}
+
+export interface AiJob {
+  id: number;
+  userId: number;
+  functionName: string;
+  outputData: string | null;
+  status: 'QUEUED' | 'RUNNING' | 'SUCCEEDED' | 'FAILED';
+  progress: number;
+  errorMessage: string | null;
+  points: number;
+  attempts: number;
+  createdAt: string;
+  startedAt: string | null;
+  finishedAt: string | null;
+  updatedAt: string;
+}
+
+export interface AiBatchItemResult {
+  index: number;
+  success: boolean;
+  output: string | null;
+  error: string | null;
+  pointsConsumed: number;
+}
\ No newline at end of file
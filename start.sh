@@ -4,7 +4,7 @@ echo "🚀 启动AI功能网站..."
 
 # 检查是否安装了必要的工具
 if ! command -v java &> /dev/null; then
-    echo "❌ 请先安装Java 17或更高版本"
+    echo "❌ 请先安装Java 21或更高版本"
     exit 1
 fi
 